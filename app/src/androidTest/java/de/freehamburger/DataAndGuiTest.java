@@ -813,18 +813,19 @@ public class DataAndGuiTest {
         try {
             for (SearchHelper.Inserter inserter : inserters) inserter.join();
             for (SearchHelper.Inserter inserter : inserters) {
-                assertFalse(inserter.isAlive());
+                assertTrue(inserter.isDone());
                 ContentValues[] cv = inserter.cv;
                 assertNotNull(cv);
                 assertTrue(cv.length > 0);
                 for (ContentValues c : cv) {
                     assertNotNull(c);
-                    assertEquals(5, c.size());
+                    assertEquals(6, c.size());
                     assertNotNull(c.getAsLong("date"));
                     assertNotNull(c.getAsString("display1"));
                     assertNotNull(c.getAsString("display2"));
                     assertNotNull(c.getAsString("query"));
                     assertNotNull(c.getAsString("symbol"));
+                    assertTrue(c.getAsInteger("freq") > 0);
                 }
             }
         } catch (InterruptedException e) {
@@ -28,6 +28,7 @@ import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
+import androidx.annotation.Size;
 import androidx.annotation.StringDef;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
@@ -53,6 +54,7 @@ import java.io.File;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.SocketAddress;
@@ -69,12 +71,17 @@ import java.util.concurrent.TimeUnit;
 import de.freehamburger.exo.ExoFactory;
 import de.freehamburger.exo.ExoSupply;
 import de.freehamburger.exo.Mp34ExtractorsFactory;
+import de.freehamburger.model.BlobCache;
 import de.freehamburger.model.Source;
 import de.freehamburger.prefs.ButtonPreference;
 import de.freehamburger.prefs.PrefsHelper;
 import de.freehamburger.supp.SearchHelper;
+import de.freehamburger.supp.SearchIndex;
+import de.freehamburger.util.Downloader;
 import de.freehamburger.util.FileDeleter;
+import de.freehamburger.util.ImageQualityPolicy;
 import de.freehamburger.util.Log;
+import de.freehamburger.util.OkHttpDownloader;
 import de.freehamburger.util.ResourceUtil;
 import de.freehamburger.util.Util;
 import okhttp3.ConnectionSpec;
@@ -149,6 +156,9 @@ public class App extends Application implements Application.ActivityLifecycleCal
     /** boolean */
     public static final String PREF_FILTERS_APPLY = "pref_filters_apply";
     public static final boolean PREF_FILTERS_APPLY_DEFAULT = true;
+    /** boolean: apply the filters already while parsing, so that rejected News are not kept at all (effective only if {@link #PREF_FILTERS_APPLY} is set, too) */
+    public static final String PREF_FILTERS_AT_PARSE = "pref_filters_at_parse";
+    public static final boolean PREF_FILTERS_AT_PARSE_DEFAULT = false;
     /** int: percentage value (range between @integer/min_magnification_text and @integer/max_magnification_text) */
     public static final String PREF_FONT_ZOOM = "pref_font_zoom";
     public static final int PREF_FONT_ZOOM_DEFAULT = 100;
@@ -232,6 +242,10 @@ public class App extends Application implements Application.ActivityLifecycleCal
     /** boolean */
     public static final String PREF_WARN_MUTE = "pref_warn_mute";
     public static final boolean PREF_WARN_MUTE_DEFAULT = true;
+    /** the directory that {@link de.freehamburger.util.ThumbnailCache thumbnails} are stored in (in the {@link #getCacheDir() cache dir}) */
+    public static final String THUMBNAILS_DIR = "thumbs";
+    /** the maximum size in bytes of the {@link de.freehamburger.util.ThumbnailCache thumbnail cache}; independent of {@link #PREF_CACHE_MAX_SIZE} */
+    public static final long THUMBNAILS_MAX_SIZE = 8L << 20;
     public static final TimeZone TIMEZONE = TimeZone.getTimeZone("Europe/Berlin");
     public static final String URL_PREFIX = "https://www.tagesschau.de/api2u/";
     /** the user agent to be used in the http requests */
@@ -267,6 +281,8 @@ public class App extends Application implements Application.ActivityLifecycleCal
     private static final String PREFS_PREFIX_MOST_RECENT_MANUAL_UPDATE = "latest_manual_";
     /** used to build a preferences key to store the most recent update of a {@link Source} */
     private static final String PREFS_PREFIX_MOST_RECENT_UPDATE = "latest_";
+    /** used to build a preferences key to store the HTTP cache validators of a {@link Source}; see {@link #getValidators(Source, String)} */
+    private static final String PREFS_PREFIX_VALIDATORS = "validators_";
     /** long: last known value of {@link BuildConfig#BUILD_TIME}; defaults to 0 */
     private static final String PREF_LAST_KNOWN_BUILD_DATE = "pref_last_known_build_date";
     private static final String TAG = "App";
@@ -293,6 +309,12 @@ public class App extends Application implements Application.ActivityLifecycleCal
     private final Handler handler = new Handler();
     private final ScheduleChecker scheduleChecker = new ScheduleChecker();
     long appStart = 0L;
+    /** parsed Blobs; the maximum size is 1/32 of the heap in kilobytes of json data (the parsed data needs several times as much) */
+    private final BlobCache blobCache = new BlobCache((int)Math.min(Integer.MAX_VALUE, Math.max(1024L, Runtime.getRuntime().maxMemory() >> 15)));
+    /** decides which image variants to load */
+    private final ImageQualityPolicy imageQualityPolicy = new ImageQualityPolicy();
+    /** full-text index of all Sources and of the archive */
+    private SearchIndex searchIndex;
     @Nullable
     private NotificationChannel notificationChannel;
     @Nullable
@@ -528,7 +550,7 @@ public class App extends Application implements Application.ActivityLifecycleCal
      * @return current cache size in bytes
      */
     long getCurrentCacheSize() {
-        return Util.getOccupiedSpace(Util.listFiles(getCacheDir()));
+        return Util.getOccupiedSpace(Util.listCacheFiles(this, false));
     }
 
     @NonNull
@@ -536,6 +558,14 @@ public class App extends Application implements Application.ActivityLifecycleCal
         return this;
     }
 
+    /**
+     * @return the app-wide policy for the selection of image variants
+     */
+    @NonNull
+    public ImageQualityPolicy getImageQualityPolicy() {
+        return this.imageQualityPolicy;
+    }
+
     @NonNull @Override public ExtractorsFactory getExtractorsFactory() {
         if (this.exo_ef == null) {
             this.exo_ef = new Mp34ExtractorsFactory();
@@ -557,6 +587,23 @@ public class App extends Application implements Application.ActivityLifecycleCal
         return this.exo_lc;
     }
 
+    /**
+     * @return the app-wide cache of parsed Blobs
+     */
+    @NonNull
+    public BlobCache getBlobCache() {
+        return this.blobCache;
+    }
+
+    /**
+     * @return the full-text index of all Sources and of the archive
+     */
+    @NonNull
+    public synchronized SearchIndex getSearchIndex() {
+        if (this.searchIndex == null) this.searchIndex = new SearchIndex(this);
+        return this.searchIndex;
+    }
+
     /**
      * @param source Source
      * @return the local file that the json data is stored in (does not necessarily exist)
@@ -619,6 +666,25 @@ public class App extends Application implements Application.ActivityLifecycleCal
         return PreferenceManager.getDefaultSharedPreferences(this).getLong(PREFS_PREFIX_MOST_RECENT_UPDATE + source, 0L);
     }
 
+    /**
+     * Returns the "ETag" and "Last-Modified" values that had been received together with the local data of the given Source.
+     * @param source Source
+     * @param url the url that the data is going to be requested from
+     * @return array of "ETag" and "Last-Modified" (elements may be {@code null}), or {@code null} if there are no validators for this url
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @Nullable
+    @Size(2)
+    String[] getValidators(@NonNull Source source, @NonNull String url) {
+        final String stored = PreferenceManager.getDefaultSharedPreferences(this).getString(PREFS_PREFIX_VALIDATORS + source, null);
+        if (stored == null) return null;
+        // header values cannot contain line breaks
+        final String[] parts = stored.split("\n", -1);
+        // the url of the regional Source depends on the regions selected
+        if (parts.length != 3 || !url.equals(parts[0])) return null;
+        return new String[] {parts[1].length() > 0 ? parts[1] : null, parts[2].length() > 0 ? parts[2] : null};
+    }
+
     /**
      * @return NotificationChannel for standard notifications
      */
@@ -892,6 +958,14 @@ public class App extends Application implements Application.ActivityLifecycleCal
     /** {@inheritDoc} */
     @Override
     public void onTrimMemory(int level) {
+        if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            this.blobCache.evictAll();
+            synchronized (this) {
+                if (this.searchIndex != null) this.searchIndex.close();
+            }
+        } else if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            this.blobCache.trim(0.5f);
+        }
         if (level > android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
             closeClient();
             this.exo_ef = null;
@@ -908,6 +982,14 @@ public class App extends Application implements Application.ActivityLifecycleCal
     @WorkerThread
     private void postCreate() {
         clearSearchSuggestionsOnNewBuild();
+        // remove remnants of downloads that had been interrupted (but not the ones of downloads that are running right now)
+        final File[] parts = getFilesDir().listFiles((dir, name) -> name.endsWith(OkHttpDownloader.TMP_SUFFIX));
+        if (parts != null) {
+            final long maxTs = System.currentTimeMillis() - 300_000L;
+            for (File part : parts) {
+                if (part.lastModified() < maxTs) Util.deleteFile(part);
+            }
+        }
         Util.clearExports(this, 120_000L);
         Util.clearAppWebview(this);
         // new DefaultExtractorsFactory() is fast
@@ -1008,6 +1090,25 @@ public class App extends Application implements Application.ActivityLifecycleCal
         ed.apply();
     }
 
+    /**
+     * Stores the "ETag" and "Last-Modified" values that have been received together with the data of the given Source.<br>
+     * Removes the stored values if a full response did not contain any.
+     * @param source Source
+     * @param result Downloader.Result of a successful (200) or a conditional (304) request
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    void setValidators(@NonNull Source source, @NonNull Downloader.Result result) {
+        // a 304 response does not necessarily repeat the validators
+        if (result.rc == HttpURLConnection.HTTP_NOT_MODIFIED && result.etag == null && result.lastModified == null) return;
+        SharedPreferences.Editor ed = PreferenceManager.getDefaultSharedPreferences(this).edit();
+        if (result.sourceUri != null && (result.etag != null || result.lastModified != null)) {
+            ed.putString(PREFS_PREFIX_VALIDATORS + source, result.sourceUri + '\n' + (result.etag != null ? result.etag : "") + '\n' + (result.lastModified != null ? result.lastModified : ""));
+        } else {
+            ed.remove(PREFS_PREFIX_VALIDATORS + source);
+        }
+        ed.apply();
+    }
+
     /**
      * Sets the app's background mode according to the preferences.
      * @param prefs SharedPreferences
@@ -60,6 +60,7 @@ import java.util.zip.ZipOutputStream;
 import de.freehamburger.adapters.ArchivedNewsAdapter;
 import de.freehamburger.model.ArchivedNews;
 import de.freehamburger.model.News;
+import de.freehamburger.supp.SearchIndex;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.ResourceUtil;
 import de.freehamburger.util.Util;
@@ -70,8 +71,7 @@ import de.freehamburger.util.Util;
 public class Archive extends HamburgerActivity implements ActivityResultCallback<Uri> {
 
     /** subfolder within the app's files folder */
-    @VisibleForTesting
-    static final String DIR = "archive";
+    public static final String DIR = "archive";
     /** size limit [bytes] for zip archives about to be imported */
     private static final long ARCHIVE_MAX_SIZE = 10_000_000L;
     /** the name of the zip file being exported */
@@ -179,19 +179,24 @@ public class Archive extends HamburgerActivity implements ActivityResultCallback
         boolean ok = Util.copyFile(json, newArchivedJsonFile, Long.MAX_VALUE);
         if (!ok) {
             Util.deleteFile(newArchivedJsonFile);
-        } else if (news.getDate() != null) {
+            return false;
+        }
+        if (news.getDate() != null) {
             //noinspection ResultOfMethodCallIgnored
             newArchivedJsonFile.setLastModified(news.getDate().getTime());
         }
-        return ok;
+        ((App)ctx.getApplicationContext()).getSearchIndex().addArchived(news, newArchivedJsonFile.getName());
+        return true;
     }
 
     /**
      * Deletes all known archive files.
      */
     private void deleteAllWithoutConfirmation() {
+        final SearchIndex searchIndex = ((App)getApplicationContext()).getSearchIndex();
         for (File file : this.files) {
             Util.deleteFile(file);
+            searchIndex.removeArchived(file.getName());
         }
         loadFiles();
     }
@@ -211,6 +216,7 @@ public class Archive extends HamburgerActivity implements ActivityResultCallback
                 .setPositiveButton(android.R.string.ok, (dialog, which) -> {
                     dialog.dismiss();
                     Util.deleteFile(archivedNews.getFile());
+                    ((App)getApplicationContext()).getSearchIndex().removeArchived(archivedNews.getFile().getName());
                     if (position >= 0 && position < this.adapter.getItemCount()) {
                         this.adapter.remove(position);
                         this.adapter.notifyItemRemoved(position);
@@ -47,6 +47,8 @@ public class FilterActivity extends StyledActivity implements CoordinatorLayoutH
     public static final char C_ATSTART = '[';
     /** denotes a filter that applies to word ends */
     public static final char C_ATEND = ']';
+    /** denotes a filter that is a {@link de.freehamburger.model.ExpressionFilter boolean expression} */
+    public static final char C_EXPRESSION = '=';
     private final Handler handler = new Handler();
     private CoordinatorLayout coordinatorLayout;
     private RecyclerView recyclerView;
@@ -166,6 +168,14 @@ public class FilterActivity extends StyledActivity implements CoordinatorLayoutH
             invalidateOptionsMenu();
             return true;
         }
+        if (id == R.id.action_parse_filters) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+            SharedPreferences.Editor ed = prefs.edit();
+            ed.putBoolean(App.PREF_FILTERS_AT_PARSE, !prefs.getBoolean(App.PREF_FILTERS_AT_PARSE, App.PREF_FILTERS_AT_PARSE_DEFAULT));
+            ed.apply();
+            invalidateOptionsMenu();
+            return true;
+        }
         if (id == R.id.action_help_filters) {
             WebView webViewForHelp = new WebView(this);
             WebSettings ws = webViewForHelp.getSettings();
@@ -194,7 +204,10 @@ public class FilterActivity extends StyledActivity implements CoordinatorLayoutH
                 if (TextUtils.isEmpty(phrase)) continue;
                 String s = phrase.toString().trim();
                 if (s.length() == 0) continue;
-                if (((TextFilter) filter).isAtStart()) {
+                if (((TextFilter) filter).isExpression()) {
+                    // expressions may contain regular expressions which are case-sensitive
+                    preferredFilters.add(s);
+                } else if (((TextFilter) filter).isAtStart()) {
                     preferredFilters.add(C_ATSTART + s.toLowerCase(Locale.GERMAN));
                 } else if (((TextFilter) filter).isAtEnd()) {
                     preferredFilters.add(C_ATEND + s.toLowerCase(Locale.GERMAN));
@@ -259,6 +272,9 @@ public class FilterActivity extends StyledActivity implements CoordinatorLayoutH
         MenuItem menuItemApplyFiltersToCats = menu.findItem(R.id.action_cats_filters);
         menuItemApplyFiltersToCats.setChecked(prefs.getBoolean(App.PREF_APPLY_FILTERS_TO_CATEGORIES, App.PREF_APPLY_FILTERS_TO_CATEGORIES_DEFAULT));
         //
+        MenuItem menuItemParseFilters = menu.findItem(R.id.action_parse_filters);
+        menuItemParseFilters.setChecked(prefs.getBoolean(App.PREF_FILTERS_AT_PARSE, App.PREF_FILTERS_AT_PARSE_DEFAULT));
+        //
         return super.onPrepareOptionsMenu(menu);
     }
 
@@ -6,6 +6,7 @@ import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.PaintDrawable;
 import android.net.Uri;
@@ -18,10 +19,12 @@ import android.util.TypedValue;
 import android.widget.ImageView;
 
 import androidx.annotation.AnyThread;
+import androidx.annotation.IntRange;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
+import androidx.annotation.Size;
 import androidx.annotation.UiThread;
 import androidx.annotation.WorkerThread;
 
@@ -34,18 +37,25 @@ import com.squareup.picasso.Target;
 import java.io.File;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import de.freehamburger.model.TeaserImage;
 import de.freehamburger.util.Downloader;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.OkHttpDownloader;
 import de.freehamburger.util.OkHttpDownloaderForPicasso;
+import de.freehamburger.util.ThumbnailCache;
 import de.freehamburger.util.Util;
 import de.freehamburger.views.NewsView2;
 
@@ -54,21 +64,32 @@ import de.freehamburger.views.NewsView2;
  */
 public class HamburgerService extends Service implements Html.ImageGetter, Picasso.Listener, NewsView2.BitmapGetter, SharedPreferences.OnSharedPreferenceChangeListener {
 
-    static final boolean USE_FORKJOINPOOL = true;
     private static final Drawable EMPTY_DRAWABLE = new PaintDrawable(0);
     private static final String TAG = "HamburgerService";
-    /** the delay [ms] after which {@link #cacheFiller} willl be invoked whenever a picture/image address is added or removed to/from {@link #cacheables} */
-    private static final long CACHEFILLER_DELAY = 250L;
+    /**
+     * The maximum number of {@link Prefetch prefetches} that are handed to Picasso at the same time.<br>
+     * This is less than the number of threads that Picasso uses by default (3, or 4 on wifi),
+     * so that pictures that are to be displayed do not have to wait until a prefetch has finished.
+     * On mobile networks, Picasso uses fewer threads, therefore {@link #PREFETCH_MAX_IN_FLIGHT_MOBILE} applies there.
+     */
+    private static final int PREFETCH_MAX_IN_FLIGHT = 2;
+    /** the maximum number of {@link Prefetch prefetches} that are handed to Picasso at the same time on a mobile network */
+    private static final int PREFETCH_MAX_IN_FLIGHT_MOBILE = 1;
+    /** the number of files that can be downloaded simultaneously via {@link #loadFile(String, File, long, String[], Downloader.DownloaderListener)} */
+    private static final int FILE_THREADS = 2;
     private final HamburgerServiceBinder binder = new HamburgerServiceBinder(this);
     private final Handler handler = new Handler();
-    /** urls of pictures/images to be loaded into the memory cache */
-    private final Set<String> cacheables = new HashSet<>();
-    /** loads pictures/images into the memory cache - delegates to Picasso */
-    private final CacheFiller cacheFiller = new CacheFiller();
+    /** pictures/images to be loaded into the memory cache, most urgent first */
+    private final ArrayDeque<Prefetch> prefetchQueue = new ArrayDeque<>();
+    /** pictures/images that are currently being loaded into the memory cache, mapped to their urls */
+    private final Map<String, Prefetch> prefetchesInFlight = new HashMap<>(PREFETCH_MAX_IN_FLIGHT);
     /** see <a href="https://web.archive.org/web/20220120071931/https://developer.android.com/training/articles/perf-tips#PackageInner">https://developer.android.com/training/articles/perf-tips.html#PackageInner</a> */
     private Picasso picasso;
-    private ExecutorService loaderExecutor;
+    /** downloads files; pictures are loaded by Picasso's own threads so that a file download never has to wait for them */
+    private ThreadPoolExecutor loaderExecutor;
     private com.squareup.picasso.LruCache memoryCache;
+    /** keeps pictures on disk in the size they have been displayed in */
+    private ThumbnailCache thumbnailCache;
     /** to be re-used */
     @Nullable private PaintDrawable latestPaintDrawable;
 
@@ -81,29 +102,25 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
             this.picasso.shutdown();
             this.picasso = null;
         }
+        this.prefetchQueue.clear();
+        this.prefetchesInFlight.clear();
 
         // first, cleanup if there are old things around
-        if (this.loaderExecutor != null) {
-            this.loaderExecutor.shutdown();
-        }
         if (this.memoryCache != null) {
             clearMemoryCache();
         }
 
-        if (USE_FORKJOINPOOL) {
-            // https://web.archive.org/web/20110819180102/https://vanillajava.blogspot.com/2011/06/java-secrets-using-executorservice-to.html
-            // https://web.archive.org/web/20201112020343/https://www.cs.oswego.edu/pipermail/concurrency-interest/2012-January/008987.html
-            this.loaderExecutor = new ForkJoinPool(Runtime.getRuntime().availableProcessors() << 1, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
-        } else {
-            this.loaderExecutor = Executors.newCachedThreadPool();
-        }
-
         createMemoryCache();
+        if (this.thumbnailCache == null) {
+            this.thumbnailCache = new ThumbnailCache(new File(getCacheDir(), App.THUMBNAILS_DIR), App.THUMBNAILS_MAX_SIZE);
+        }
         // start Picasso
+        // Picasso's own executor runs the requests in the order of their priority (prefetches and upgrades have a low priority),
+        // and it adapts the number of its threads to the network type
         this.picasso = new Picasso.Builder(this)
+                .addRequestHandler(new ThumbnailCache.ThumbnailRequestHandler(this.thumbnailCache))
                 .defaultBitmapConfig(Bitmap.Config.RGB_565)
                 .downloader(new OkHttpDownloaderForPicasso(this))
-                .executor(this.loaderExecutor)
                 //.indicatorsEnabled(BuildConfig.DEBUG)   // arpanet: red, floppy: blue, ram: green
                 .listener(this)
                 .loggingEnabled(false)
@@ -111,6 +128,23 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
                 .build();
     }
 
+    /**
+     * Replaces protocol-relative and "http:" urls with "https:" urls.
+     * @param url url
+     * @return https url
+     * @throws NullPointerException if {@code url} is {@code null}
+     */
+    @NonNull
+    private static String toHttps(@NonNull String url) {
+        if (url.length() > 1 && url.charAt(0) == '/' && url.charAt(1) == '/') {
+            return "https:" + url;
+        }
+        if (url.startsWith("http:")) {
+            return "https" + url.substring(4);
+        }
+        return url;
+    }
+
     /**
      * Checks for network connection and Picasso instantiation.
      * @return {@code true} if downloading is NOT possible, {@code false} if it is
@@ -177,13 +211,27 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
      */
     @RequiresPermission(Manifest.permission.INTERNET)
     void loadFile(@NonNull String url, @NonNull File localFile, long mostRecentUpdate, @NonNull Downloader.DownloaderListener listener) {
+        loadFile(url, localFile, mostRecentUpdate, null, listener);
+    }
+
+    /**
+     * Loads a remote resource.
+     * @param url Url to load from
+     * @param localFile local file to save to
+     * @param mostRecentUpdate timestamp of point in time when the resource has been loaded most recently; will set the "If-Modified-Since" header
+     * @param validators optional "ETag" and "Last-Modified" values; see {@link App#getValidators(de.freehamburger.model.Source, String)}
+     * @param listener DownloaderListener
+     * @throws NullPointerException if {@code localFile} is {@code null}
+     */
+    @RequiresPermission(Manifest.permission.INTERNET)
+    void loadFile(@NonNull String url, @NonNull File localFile, long mostRecentUpdate, @Nullable @Size(2) String[] validators, @NonNull Downloader.DownloaderListener listener) {
         OkHttpDownloader downloader = new OkHttpDownloader(this);
         try {
-            if (this.loaderExecutor != null) {
-                downloader.executeOnExecutor(this.loaderExecutor, new Downloader.Order(url, localFile.getAbsolutePath(), mostRecentUpdate, false, listener));
+            if (this.loaderExecutor != null && !this.loaderExecutor.isShutdown()) {
+                downloader.executeOnExecutor(this.loaderExecutor, new Downloader.Order(url, localFile.getAbsolutePath(), mostRecentUpdate, validators, false, listener));
             } else {
                 if (BuildConfig.DEBUG) Log.e(TAG, "loadFile(\"" + url + "\", …, …, …): loaderExecutor is null!");
-                downloader.execute(new Downloader.Order(url, localFile.getAbsolutePath(), mostRecentUpdate, false, listener));
+                downloader.execute(new Downloader.Order(url, localFile.getAbsolutePath(), mostRecentUpdate, validators, false, listener));
             }
         } catch (Exception e) {
             if (BuildConfig.DEBUG) Log.e(TAG, "loadFile(\"" + url + "\", …, …, …) failed: " + e, e);
@@ -215,6 +263,22 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
         this.handler.post(new PictureLoader(this, uri, null, target, placeholder));
     }
 
+    /**
+     * Loads a picture via Picasso into a {@link Target target}.<br>
+     * Larger pictures are subsampled while being decoded and then scaled down to the given width,
+     * so that no Bitmap of the original size needs to be kept.
+     * @param uri picture URL
+     * @param target target
+     * @param maxWidth max. width of the Bitmap
+     */
+    @AnyThread
+    @RequiresPermission(Manifest.permission.INTERNET)
+    public void loadImage(@NonNull String uri, @NonNull Target target, @IntRange(from = 1) int maxWidth) {
+        PictureLoader pictureLoader = new PictureLoader(this, uri, null, target, null);
+        pictureLoader.width = maxWidth;
+        this.handler.post(pictureLoader);
+    }
+
     /**
      * Attempts to load a picture <em>synchronously</em> from the cache.<br>
      * May not be run on the main thread!
@@ -262,12 +326,8 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
             } catch (Exception ignored) {
             }
         }
-        if (url.charAt(0) == '/' && url.charAt(1) == '/') {
-            url = "https:" + url;
-        } else if (url.startsWith("http:")) {
-            url = "https" + url.substring(4);
-        }
-        loadIntoCacheCancel(url);
+        url = toHttps(url);
+        prefetchCancel(url);
         if (imageWidth > 0 && imageHeight > 0) {
             PaintDrawable pd;
             if (this.latestPaintDrawable != null && this.latestPaintDrawable.getIntrinsicWidth() == imageWidth && this.latestPaintDrawable.getIntrinsicHeight() == imageHeight) {
@@ -284,36 +344,115 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
         }
     }
 
+    /** {@inheritDoc}
+     * <hr>
+     * Used to replace small image variants by better ones.
+     */
+    @Override
+    @RequiresPermission(Manifest.permission.INTERNET)
+    @UiThread
+    public void upgradeImageInImageView(@NonNull String url, @NonNull ImageView dest, int imageWidth, int imageHeight) {
+        if (url.length() < 8 || imageWidth <= 0 || imageHeight <= 0) return;
+        url = toHttps(url);
+        prefetchCancel(url);
+        PictureLoader pictureLoader = new PictureLoader(this, url, dest, null, null, (float)imageWidth / (float)imageHeight);
+        pictureLoader.upgrade = true;
+        this.handler.post(pictureLoader);
+    }
+
     /**
-     * Loads pictures into the memory cache.
-     * @param uris addresses of pics to load
+     * Loads pictures into the memory cache so that they can be displayed without delay once
+     * {@link #loadImageIntoImageView(String, ImageView, int, int) requested}.<br>
+     * The pictures are decoded in the size they will be displayed in.<br>
+     * Replaces all pictures that have been passed before but not been requested from Picasso yet.
+     * Of those that have been requested already, the ones whose url is neither in {@code wanted} nor in {@code retain} are cancelled.
+     * @param wanted pictures to load, most urgent first
+     * @param retain urls of pictures that do not need to be loaded but whose loading should not be cancelled either
+     * @throws NullPointerException if any parameter is {@code null}
      */
-    @AnyThread
+    @MainThread
     @RequiresPermission(Manifest.permission.INTERNET)
-    public void loadIntoCache(@NonNull Collection<String> uris) {
-        this.handler.removeCallbacks(this.cacheFiller);
-        boolean invoke;
-        synchronized (this.cacheables) {
-            this.cacheables.addAll(uris);
-            invoke = !this.cacheables.isEmpty();
-        }
-        if (invoke) this.handler.postDelayed(this.cacheFiller, CACHEFILLER_DELAY);
+    public void prefetch(@NonNull List<TeaserImage.MeasuredImage> wanted, @NonNull Collection<String> retain) {
+        this.prefetchQueue.clear();
+        if (this.picasso == null) return;
+        final Set<String> keep = new HashSet<>(wanted.size() + retain.size());
+        for (String url : retain) {
+            if (url != null) keep.add(toHttps(url));
+        }
+        final int normalImageWidth = getResources().getDimensionPixelSize(R.dimen.image_width_normal);
+        for (TeaserImage.MeasuredImage image : wanted) {
+            if (image.url == null || image.url.length() < 8) continue;
+            String url = toHttps(image.url);
+            if (!url.toLowerCase(Locale.US).startsWith("http")) continue;
+            keep.add(url);
+            if (this.prefetchesInFlight.containsKey(url)) continue;
+            // must match the size that the PictureLoader will use
+            int height = image.width > 0 && image.height > 0 ? Math.round(normalImageWidth / ((float)image.width / (float)image.height)) : normalImageWidth;
+            this.prefetchQueue.add(new Prefetch(this, url, normalImageWidth, height));
+        }
+        // cancel the pictures that are not needed any more
+        for (Iterator<Prefetch> i = this.prefetchesInFlight.values().iterator(); i.hasNext(); ) {
+            Prefetch prefetch = i.next();
+            if (keep.contains(prefetch.url)) continue;
+            this.picasso.cancelTag(prefetch);
+            i.remove();
+        }
+        prefetchNext();
     }
 
     /**
      * Removes the given picture from those about to be loaded into the cache.
-     * @param uri address of pic not to load
+     * @param url address of pic not to prefetch
      */
-    @AnyThread
-    private void loadIntoCacheCancel(@NonNull String uri) {
-        this.handler.removeCallbacks(this.cacheFiller);
-        int waiting;
-        synchronized (this.cacheables) {
-            this.cacheables.remove(uri);
-            waiting = this.cacheables.size();
+    @MainThread
+    private void prefetchCancel(@NonNull String url) {
+        for (Iterator<Prefetch> i = this.prefetchQueue.iterator(); i.hasNext(); ) {
+            if (url.equals(i.next().url)) {
+                i.remove();
+                break;
+            }
+        }
+    }
+
+    /**
+     * To be invoked when a {@link Prefetch} has finished.
+     * @param prefetch Prefetch
+     */
+    @MainThread
+    private void prefetchDone(@NonNull Prefetch prefetch) {
+        // a cancelled Prefetch might have been replaced by a new one for the same url
+        if (this.prefetchesInFlight.get(prefetch.url) == prefetch) {
+            this.prefetchesInFlight.remove(prefetch.url);
+        }
+        prefetchNext();
+    }
+
+    /**
+     * Hands the next {@link Prefetch prefetches} from the {@link #prefetchQueue queue} to Picasso
+     * as long as there are less than {@link #PREFETCH_MAX_IN_FLIGHT} (or {@link #PREFETCH_MAX_IN_FLIGHT_MOBILE}) in flight.
+     */
+    @MainThread
+    private void prefetchNext() {
+        if (this.prefetchQueue.isEmpty()) return;
+        if (cannotDownload()) {
+            this.prefetchQueue.clear();
+            return;
         }
-        if (waiting > 0) {
-            this.handler.postDelayed(this.cacheFiller, CACHEFILLER_DELAY);
+        final int maxInFlight = Util.isNetworkMobile(this) ? PREFETCH_MAX_IN_FLIGHT_MOBILE : PREFETCH_MAX_IN_FLIGHT;
+        while (this.prefetchesInFlight.size() < maxInFlight) {
+            Prefetch prefetch = this.prefetchQueue.poll();
+            if (prefetch == null) break;
+            if (this.prefetchesInFlight.containsKey(prefetch.url)) continue;
+            this.prefetchesInFlight.put(prefetch.url, prefetch);
+            // if the picture is in the memory cache already, this will call prefetchDone() right away;
+            // a Target is used instead of fetch() so that the picture can be passed to the thumbnailCache
+            this.picasso.load(prefetch.url)
+                    .resize(prefetch.width, prefetch.height)
+                    .centerCrop()
+                    .priority(Picasso.Priority.LOW)
+                    .tag(prefetch)
+                    .noPlaceholder()
+                    .into(prefetch);
         }
     }
 
@@ -335,6 +474,8 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
     @Override
     public void onCreate() {
         super.onCreate();
+        this.loaderExecutor = new ThreadPoolExecutor(FILE_THREADS, FILE_THREADS, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.loaderExecutor.allowCoreThreadTimeOut(true);
         buildPicasso();
         // make sure this service is started; otherwise each activity would create its own instance
         start(1);
@@ -345,14 +486,17 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
     @Override
     public void onDestroy() {
         PreferenceManager.getDefaultSharedPreferences(getApplicationContext()).unregisterOnSharedPreferenceChangeListener(this);
+        this.prefetchQueue.clear();
+        this.prefetchesInFlight.clear();
         if (this.picasso != null) {
             this.picasso.shutdown();
             this.picasso = null;
         }
-        if (!this.loaderExecutor.isShutdown()) {
+        if (this.loaderExecutor != null) {
+            // downloads that have been queued already will still be run so that their listeners get notified
             this.loaderExecutor.shutdown();
+            this.loaderExecutor = null;
         }
-        this.loaderExecutor = null;
         this.memoryCache = null;
         super.onDestroy();
     }
@@ -466,6 +610,8 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
         private ImageView dest;
         /** initially false to indicate that loading from network has not been attempted yet */
         private boolean loadingFromWebAttempted;
+        /** true if the picture replaces another one which should remain visible if loading fails */
+        private boolean upgrade;
         private int width, height;
 
         /**
@@ -516,12 +662,15 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
                         .networkPolicy(NetworkPolicy.NO_CACHE)
                         .resize(this.width, this.height)
                         .noFade()
-                        .centerCrop()
-                        .error(R.drawable.ic_warning_red_24dp)
-                        .into(this.dest, this);
+                        .centerCrop();
+                // upgrades must not delay pictures that are not displayed at all yet
+                if (this.upgrade) rc.priority(Picasso.Priority.LOW); else rc.error(R.drawable.ic_warning_red_24dp);
+                rc.into(this.dest, this);
             } else {
                 // picture failed to load from web
-                if (this.dest != null) {
+                if (this.upgrade) {
+                    this.dest = null;
+                } else if (this.dest != null) {
                     this.dest.setElevation(0f);
                     this.dest = null;
                 }
@@ -533,6 +682,12 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
         public void onSuccess() {
             if (this.dest != null) {
                 this.dest.setElevation(this.elevation);
+                // keep the picture on disk in the size it is displayed in
+                HamburgerService service = this.refService.get();
+                Drawable d = this.dest.getDrawable();
+                if (service != null && service.thumbnailCache != null && d instanceof BitmapDrawable) {
+                    service.thumbnailCache.put(this.url, this.width, this.height, ((BitmapDrawable)d).getBitmap());
+                }
                 this.dest = null;
             }
         }
@@ -549,6 +704,8 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
                 if (service.cannotDownload()) return;
                 RequestCreator rc = service.picasso.load(this.url);
                 if (this.placeholder != null) rc.placeholder(this.placeholder); else rc.noPlaceholder();
+                // Picasso uses BitmapFactory.Options.inSampleSize when a target size is given
+                if (this.width > 0) rc.resize(this.width, 0).onlyScaleDown();
                 rc.into(target);
             } else if (this.dest != null) {
                 int normalImageWidth = service.getResources().getDimensionPixelSize(R.dimen.image_width_normal);
@@ -570,32 +727,53 @@ public class HamburgerService extends Service implements Html.ImageGetter, Picas
                         .noPlaceholder()
                         .centerCrop()
                         .into(this.dest, this);
-
-            } else {
-                if (service.cannotDownload()) return;
-                // Performing Picasso fetch
-                service.picasso
-                        .load(this.url)
-                        .priority(Picasso.Priority.LOW)
-                        .noPlaceholder()
-                        .noFade()
-                        .fetch(null);
             }
         }
     }
 
     /**
-     * Invokes {@link PictureLoader PictureLoaders} for each url in {@link #cacheables}.
+     * Loads a picture into the memory cache and into the {@link #thumbnailCache}.
      */
-    private final class CacheFiller implements Runnable {
+    private static final class Prefetch implements Target {
+
+        private final Reference<HamburgerService> refService;
+        private final String url;
+        private final int width, height;
+
+        /**
+         * Constructor.
+         * @param service HamburgerService
+         * @param url picture http url
+         * @param width width of the picture as it will be displayed
+         * @param height height of the picture as it will be displayed
+         */
+        private Prefetch(@NonNull HamburgerService service, @NonNull String url, int width, int height) {
+            super();
+            this.refService = new WeakReference<>(service);
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+
         /** {@inheritDoc} */
-        @Override public void run() {
-            synchronized (HamburgerService.this.cacheables) {
-                for (String cacheable : HamburgerService.this.cacheables) {
-                    HamburgerService.this.handler.post(new PictureLoader(HamburgerService.this, cacheable, null, null, null));
-                }
-                HamburgerService.this.cacheables.clear();
-            }
+        @Override
+        public void onBitmapFailed(Exception e, Drawable errorDrawable) {
+            HamburgerService service = this.refService.get();
+            if (service != null) service.prefetchDone(this);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            HamburgerService service = this.refService.get();
+            if (service == null) return;
+            if (service.thumbnailCache != null) service.thumbnailCache.put(this.url, this.width, this.height, bitmap);
+            service.prefetchDone(this);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable) {
         }
     }
 
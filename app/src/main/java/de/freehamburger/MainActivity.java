@@ -32,6 +32,7 @@ import android.nfc.tech.NdefFormatable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.SpannableString;
 import android.text.TextUtils;
@@ -119,6 +120,7 @@ import de.freehamburger.supp.NfcHelper;
 import de.freehamburger.supp.PopupManager;
 import de.freehamburger.supp.SearchContentProvider;
 import de.freehamburger.supp.SearchHelper;
+import de.freehamburger.supp.SearchIndex;
 import de.freehamburger.util.Downloader;
 import de.freehamburger.util.FileDeleter;
 import de.freehamburger.util.Intro;
@@ -143,9 +145,13 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
     private static final String ERROR_CONNECTION_FAILED_MSG_PREFIX = "failed to connect to ";
     /** maximum number of recent sources/categories to keep */
     private static final int MAX_RECENT_SOURCES = 10;
+    /** max. number of {@link SearchIndex.Hit search hits} to evaluate */
+    private static final int MAX_SEARCH_HITS = 500;
     private static final BitmapFactory.Options OPTS_FOR_QUICKVIEW = new BitmapFactory.Options();
     /** used to colorise the progress image in {@link #swipeRefreshLayout } - this designates the percentage completed when download is done and parsing starts  */
     @FloatRange(from = 0f, to = 255f) private static final float PROGRESS_DOWNLOAD_PARSE = 128f;
+    /** News that are being parsed are passed to the {@link #newsAdapter adapter} at most once within this period [ms] */
+    private static final long PREVIEW_INTERVAL = 250L;
     /** used when the user has picked a font file to import */
     private static final int REQUEST_CODE_FONT_IMPORT = 815;
     private static final String STATE_LIST_POS = BuildConfig.APPLICATION_ID + ".state.list.pos";
@@ -185,8 +191,14 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
     private Filter searchFilter = null;
     /** {@code true} when the message given in {@link R.string#msg_found msg_found} or {@link R.string#msg_not_found msg_not_found} has been shown */
     private boolean msgFoundShown = false;
+    /** {@code true} if the filters that are applied while parsing have been modified, so that the current data must be parsed again */
+    private boolean reparseOnResume;
+    /** the number of archived News that match the current search */
+    private int archivedHits = 0;
     @IntRange(from = -1) private int listPositionToRestore = RecyclerView.NO_POSITION;
     @NonNull private Source currentSource = Source.HOME;
+    /** the Blob that has been parsed most recently; its content is displayed unless its Source differs from the {@link #newsAdapter adapter's} Source */
+    @Nullable private Blob latestBlob;
     private Snackbar snackbarMaybeQuit;
     private Intro intro;
     /** displays the article picture when the corresponding menu item is invoked */
@@ -589,14 +601,29 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
                 if (sep > 0) source = Source.valueOf(query.substring(sep + 1));
             } catch (IllegalArgumentException ignored) {
             }
-            this.searchFilter = new TextFilter(queryString.toLowerCase(Locale.GERMAN).trim(), true, true);
-            if (source == null) source = this.currentSource;
-            if (source != this.currentSource) {
-                changeSource(source, true, true);
-            } else {
-                File file = ((App)getApplicationContext()).getLocalFile(source);
-                parseLocalFileAsync(file);
-            }
+            final TextFilter textFilter = new TextFilter(queryString.toLowerCase(Locale.GERMAN).trim(), true, true, true);
+            final Source requestedSource = source;
+            ((App)getApplicationContext()).getSearchIndex().searchAsync(queryString, MAX_SEARCH_HITS, (q, hits) -> {
+                if (isFinishing()) return;
+                this.searchFilter = hits.isEmpty() ? textFilter : new SearchIndex.HitFilter(textFilter, hits);
+                this.archivedHits = 0;
+                // if the user has not picked a suggestion for a particular Source, go to the Source with the best hit unless the current Source has any hits
+                Source target = requestedSource;
+                for (SearchIndex.Hit hit : hits) {
+                    if (hit.isArchived()) {
+                        this.archivedHits++;
+                        continue;
+                    }
+                    if (requestedSource == null && (target == null || hit.getSource() == this.currentSource)) target = hit.getSource();
+                }
+                if (target == null) target = this.currentSource;
+                if (target != this.currentSource) {
+                    changeSource(target, true, true);
+                } else {
+                    File file = ((App)getApplicationContext()).getLocalFile(target);
+                    parseLocalFileAsync(file);
+                }
+            });
             return;
         }
         if (Intent.ACTION_VIEW.equals(action)) {
@@ -1620,11 +1647,6 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
      * @param showMsgOnNetworkFailure if {@code true} show a message if there is no network connection
      */
     private void onRefresh(boolean showMsgOnNetworkFailure) {
-        if (this.currentSource.getLockHolder() != null) {
-            if (BuildConfig.DEBUG) Log.e(TAG, "Cannot refresh - " + currentSource + " is locked!");
-            this.swipeRefreshLayout.setRefreshing(false);
-            return;
-        }
         if (this.intro != null && this.intro.isPlaying()) {
             this.swipeRefreshLayout.setRefreshing(false);
             return;
@@ -1657,7 +1679,7 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
 
         long mostRecentUpdate = app.getMostRecentUpdate(this.currentSource);
         this.swipeRefreshLayout.setProgressBackgroundColorSchemeColor(Color.TRANSPARENT);
-        this.service.loadFile(url, app.getLocalFile(this.currentSource), mostRecentUpdate, new Downloader.DownloaderListener() {
+        this.service.loadFile(url, app.getLocalFile(this.currentSource), mostRecentUpdate, app.getValidators(this.currentSource, url), new Downloader.DownloaderListener() {
 
             // let's remember the Source that we are loading now - in case the user changes it while we are loading...
             private final Source sourceToSetOnSuccess = MainActivity.this.currentSource;
@@ -1681,7 +1703,14 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
                     return;
                 }
                 if (result.rc == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    ((App)getApplicationContext()).setValidators(this.sourceToSetOnSuccess, result);
                     Snackbar.make(MainActivity.this.coordinatorLayout, R.string.msg_not_modified, Snackbar.LENGTH_SHORT).show();
+                    final Blob latest = MainActivity.this.latestBlob;
+                    if (latest != null && latest.getSource() == this.sourceToSetOnSuccess && MainActivity.this.newsAdapter.getSource() == this.sourceToSetOnSuccess) {
+                        // the data that is being displayed is still current - no need to parse it again
+                        MainActivity.this.swipeRefreshLayout.setRefreshing(false);
+                        return;
+                    }
                     parseLocalFileAsync(result.file);
                     return;
                 }
@@ -1725,6 +1754,7 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
                     updateTitle();
                 }
                 ((App)getApplicationContext()).setMostRecentUpdate(MainActivity.this.currentSource, System.currentTimeMillis(), true);
+                ((App)getApplicationContext()).setValidators(MainActivity.this.currentSource, result);
                 parseLocalFileAsync(result.file);
             }
         });
@@ -1809,6 +1839,11 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         boolean hasTemporaryFilter = this.newsAdapter.setFilters(TextFilter.createTextFiltersFromPreferences(this));
         this.clockView.setTint(hasTemporaryFilter ? ResourceUtil.getColor(this, R.color.colorFilter) : Color.TRANSPARENT);
+        if (this.reparseOnResume) {
+            this.reparseOnResume = false;
+            // News that had been dropped while parsing might have to be displayed now, or the other way round
+            onRefreshUseCache(true);
+        }
 
         NfcHelper.enableForegroundDispatch(this);
 
@@ -1910,6 +1945,10 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
         } else if (App.PREF_NFC_USE.equals(key)) {
             NfcHelper.toggleNfcUse(this, ".MainActivityNfc", prefs);
         }
+        if (App.PREF_FILTERS_AT_PARSE.equals(key)
+                || ((App.PREF_FILTERS.equals(key) || App.PREF_FILTERS_APPLY.equals(key)) && prefs.getBoolean(App.PREF_FILTERS_AT_PARSE, App.PREF_FILTERS_AT_PARSE_DEFAULT))) {
+            this.reparseOnResume = true;
+        }
     }
 
     /**
@@ -1919,12 +1958,24 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
      */
     private synchronized void parseLocalFileAsync(@Nullable File file) {
         if (file == null) return;
+        // show News while parsing only if there is nothing (appropriate) to display yet
+        final boolean streaming = this.searchFilter == null && (this.newsAdapter.getItemCount() == 0 || this.newsAdapter.getSource() != this.currentSource);
         BlobParser blobParser = new BlobParser(this, new BlobParser.BlobParserListener() {
             @ColorInt
             private final int c = ResourceUtil.getColor(MainActivity.this, R.color.color_primary);
+            /** the News that have been passed to {@link #newsParsed(List)} so far, sorted */
+            private List<News> preview = new ArrayList<>(32);
+            /** the {@link News#getExternalId() external ids} of the News in {@link #preview} */
+            private final Set<String> previewIds = new HashSet<>(32);
+            /** passes the {@link #preview} to the adapter */
+            private final Runnable previewShower = this::showPreview;
+            /** the point in time when the {@link #preview} has been passed to the adapter most recently */
+            private long previewShown;
 
             @Override
             public void blobParsed(@Nullable Blob blob, boolean ok, @Nullable Throwable oops) {
+                // the complete data replaces the preview
+                MainActivity.this.handler.removeCallbacks(this.previewShower);
 
                 if (!ok || blob == null || oops != null) {
                     if (BuildConfig.DEBUG) Log.e(TAG, "Parsing failed: " + oops, oops);
@@ -1936,6 +1987,7 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
                     MainActivity.this.swipeRefreshLayout.setRefreshing(false);
                     return;
                 }
+                MainActivity.this.latestBlob = blob;
                 List<News> sortedJointList = blob.getAllNews();
                 // limit number of RecyclerView columns to number of News items (effect noticeable, for example, in Weather section on tablets in landscape mode)
                 int nItems = sortedJointList.size();
@@ -1953,8 +2005,11 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
                 //
                 MainActivity.this.newsAdapter.setNewsList(sortedJointList, MainActivity.this.currentSource);
                 Date blobDate = blob.getDate();
-                if (blobDate != null) {
-                    if (!file.setLastModified(blobDate.getTime())) {
+                if (blobDate != null && file.lastModified() != blobDate.getTime()) {
+                    if (file.setLastModified(blobDate.getTime())) {
+                        // the modification time is part of the cache key
+                        ((App)getApplicationContext()).getBlobCache().put(MainActivity.this, blob, file);
+                    } else {
                         if (BuildConfig.DEBUG) Log.w(TAG, "Failed to set last modified date!");
                     }
                 }
@@ -1985,14 +2040,21 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
 
                 MainActivity.this.swipeRefreshLayout.setRefreshing(false);
                 if (hasTemporaryFilter && !MainActivity.this.msgFoundShown) {
-                    CharSequence searchFilterText = MainActivity.this.searchFilter.getText();
-                    int found = MainActivity.this.newsAdapter.getItemCount();
-                    if (found == 0) {
-                        Snackbar.make(MainActivity.this.coordinatorLayout, getString(R.string.msg_not_found, searchFilterText), Snackbar.LENGTH_LONG).show();
-                    } else {
-                        Snackbar.make(MainActivity.this.coordinatorLayout, getString(R.string.msg_found, searchFilterText, found), Snackbar.LENGTH_SHORT).show();
-                    }
                     MainActivity.this.msgFoundShown = true;
+                    final CharSequence searchFilterText = MainActivity.this.searchFilter.getText();
+                    // the filters are applied on a worker thread
+                    MainActivity.this.newsAdapter.runWhenFiltered(() -> {
+                        int found = MainActivity.this.newsAdapter.getNewsCount();
+                        if (found == 0 && MainActivity.this.archivedHits > 0) {
+                            Snackbar sb = Snackbar.make(MainActivity.this.coordinatorLayout, getString(R.string.msg_found_in_archive, searchFilterText, MainActivity.this.archivedHits), Snackbar.LENGTH_LONG);
+                            sb.setAction(R.string.label_archive, v -> startActivity(new Intent(MainActivity.this, Archive.class)));
+                            sb.show();
+                        } else if (found == 0) {
+                            Snackbar.make(MainActivity.this.coordinatorLayout, getString(R.string.msg_not_found, searchFilterText), Snackbar.LENGTH_LONG).show();
+                        } else {
+                            Snackbar.make(MainActivity.this.coordinatorLayout, getString(R.string.msg_found, searchFilterText, found), Snackbar.LENGTH_SHORT).show();
+                        }
+                    });
                 }
 
                 App app = (App)getApplicationContext();
@@ -2030,13 +2092,49 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
 
             }
 
+            /** {@inheritDoc} */
+            @Override
+            public void newsParsed(@NonNull List<News> batch) {
+                final List<News> sortedBatch = new ArrayList<>(batch.size());
+                for (News news : batch) {
+                    // regional News might also be contained in the national News
+                    if (this.previewIds.add(news.getExternalId())) sortedBatch.add(news);
+                }
+                if (sortedBatch.isEmpty()) return;
+                Collections.sort(sortedBatch);
+                // merge the sorted batch into the sorted preview
+                final List<News> merged = new ArrayList<>(this.preview.size() + sortedBatch.size());
+                final int n = this.preview.size(), m = sortedBatch.size();
+                int i = 0, j = 0;
+                while (i < n && j < m) {
+                    if (this.preview.get(i).compareTo(sortedBatch.get(j)) <= 0) merged.add(this.preview.get(i++));
+                    else merged.add(sortedBatch.get(j++));
+                }
+                while (i < n) merged.add(this.preview.get(i++));
+                while (j < m) merged.add(sortedBatch.get(j++));
+                this.preview = merged;
+                // the first batch is shown immediately, the following ones not more often than every PREVIEW_INTERVAL ms
+                final long wait = this.previewShown + PREVIEW_INTERVAL - SystemClock.elapsedRealtime();
+                MainActivity.this.handler.removeCallbacks(this.previewShower);
+                if (this.previewShown == 0L || wait <= 0L) showPreview();
+                else MainActivity.this.handler.postDelayed(this.previewShower, wait);
+            }
+
+            /**
+             * Passes the {@link #preview} to the {@link #newsAdapter adapter}.
+             */
+            private void showPreview() {
+                this.previewShown = SystemClock.elapsedRealtime();
+                MainActivity.this.newsAdapter.setNewsList(this.preview, MainActivity.this.currentSource);
+            }
+
             /** {@inheritDoc} */
             @Override
             public void parsingProgressed(@FloatRange(from = 0, to = 1) float progress) {
                 int p = (int)(PROGRESS_DOWNLOAD_PARSE + (255f - PROGRESS_DOWNLOAD_PARSE) * progress) << 24;
                 MainActivity.this.swipeRefreshLayout.setProgressBackgroundColorSchemeColor(p + c);
             }
-        });
+        }, streaming);
         blobParser.executeOnExecutor(android.os.AsyncTask.THREAD_POOL_EXECUTOR, file);
     }
 
@@ -2195,7 +2293,8 @@ public class MainActivity extends NewsAdapterActivity implements SwipeRefreshLay
                 }
                 return;
             }
-            Bitmap bm = BitmapFactory.decodeFile(temp.getAbsolutePath(), OPTS_FOR_QUICKVIEW);
+            final Point displaySize = Util.getDisplaySize(this);
+            Bitmap bm = Util.decodeSampledFile(temp.getAbsolutePath(), displaySize.x, 0, OPTS_FOR_QUICKVIEW);
             if (bm != null) {
                 getWindow().getDecorView().setSystemUiVisibility(UI_FLAGS_FOR_QUICKVIEW);
                 this.quickView.setImageBitmap(bm);
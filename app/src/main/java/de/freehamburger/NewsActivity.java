@@ -113,6 +113,7 @@ import de.freehamburger.model.News;
 import de.freehamburger.model.Related;
 import de.freehamburger.model.StreamQuality;
 import de.freehamburger.model.TextFilter;
+import de.freehamburger.model.TextFilterMatcher;
 import de.freehamburger.model.Video;
 import de.freehamburger.supp.PopupManager;
 import de.freehamburger.util.Log;
@@ -520,10 +521,11 @@ public class NewsActivity extends HamburgerActivity implements AudioManager.OnAu
                     // store target in an (otherwise unused) instance variable to avoid garbage collection, because the service holds only a WeakReference on the target
                     this.spannableImageTargets.add(target);
                 }
-                // now start loading
+                // now start loading; let the pictures be decoded in the size they will be displayed in
+                final int pictureWidth = getPictureWidth(SCALE_PICTURES_TO_PERCENT);
                 Set<Map.Entry<SpannableImageTarget, String>> entries = targetsAndUris.entrySet();
                 for (Map.Entry<SpannableImageTarget, String> entry : entries) {
-                    this.service.loadImage(entry.getValue(), entry.getKey());
+                    this.service.loadImage(entry.getValue(), entry.getKey(), pictureWidth);
                 }
             } else {
                 // it seems now to be safe to enable text selection as we don't have pictures to load
@@ -695,6 +697,21 @@ public class NewsActivity extends HamburgerActivity implements AudioManager.OnAu
         return R.layout.activity_news;
     }
 
+    /**
+     * Returns the width that pictures within the {@link #textViewContent content} should be displayed in.<br>
+     * If the content view has not been laid out yet, the display width is used instead.
+     * @param percentWidth percentage of the available width
+     * @return width in px
+     */
+    @IntRange(from = 1)
+    private int getPictureWidth(@IntRange(from = 1, to = 100) int percentWidth) {
+        int width = this.textViewContent.getWidth();
+        if (width <= 0) width = Util.getDisplaySize(this).x;
+        int availableWidth = width - this.textViewContent.getPaddingStart() - this.textViewContent.getPaddingEnd();
+        if (percentWidth > 0 && percentWidth < 100) availableWidth = Math.round(availableWidth * percentWidth / 100f);
+        return Math.max(1, availableWidth);
+    }
+
     /** {@inheritDoc} */
     @Override
     boolean hasMenuOverflowButton() {
@@ -908,7 +925,7 @@ public class NewsActivity extends HamburgerActivity implements AudioManager.OnAu
 
             @Override public void onSuccess(@NonNull List<News> result) {
                 if (BuildConfig.DEBUG) Log.i(TAG, "RecommendationsCallback.onSuccess(" + result + ")");
-                final List<Filter> filters = TextFilter.createTextFiltersFromPreferences(NewsActivity.this);
+                final List<Filter> filters = TextFilterMatcher.compile(TextFilter.createTextFiltersFromPreferences(NewsActivity.this));
                 final List<News> usable = new ArrayList<>(result.size());
                 for (News news : result) {
                     if (News.NEWS_TYPE_STORY.equals(news.getType())
@@ -1708,8 +1725,8 @@ public class NewsActivity extends HamburgerActivity implements AudioManager.OnAu
             NewsActivity activity = this.refActivity.get();
             if (activity == null) return;
 
-            int availableWidth = activity.textViewContent.getWidth() - activity.textViewContent.getPaddingStart() - activity.textViewContent.getPaddingEnd();
-            if (this.percentWidth > 0 && this.percentWidth < 100) availableWidth = Math.round(availableWidth * this.percentWidth / 100f);
+            // the picture should have been decoded in the right size already - see getPictureWidth()
+            int availableWidth = activity.getPictureWidth(this.percentWidth);
             if (Math.abs(availableWidth - bitmap.getWidth()) > 20) { // let's tolerate +/- 20px
                 float factor = (float) bitmap.getHeight() / (float) bitmap.getWidth();
                 bitmap = Bitmap.createScaledBitmap(bitmap, availableWidth, Math.round(availableWidth * factor), false);
@@ -1,7 +1,5 @@
 package de.freehamburger;
 
-import static android.os.AsyncTask.THREAD_POOL_EXECUTOR;
-
 import android.Manifest;
 import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
@@ -24,6 +22,8 @@ import android.graphics.ColorSpace;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.PersistableBundle;
 import androidx.preference.PreferenceManager;
 import android.service.notification.StatusBarNotification;
@@ -34,6 +34,7 @@ import android.widget.Toast;
 import androidx.annotation.AnyThread;
 import androidx.annotation.FloatRange;
 import androidx.annotation.IntRange;
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
@@ -46,8 +47,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.InputStreamReader;
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -61,6 +60,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -71,6 +71,7 @@ import de.freehamburger.model.News;
 import de.freehamburger.model.Source;
 import de.freehamburger.model.TeaserImage;
 import de.freehamburger.model.TextFilter;
+import de.freehamburger.model.TextFilterMatcher;
 import de.freehamburger.util.Downloader;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.OkHttpDownloader;
@@ -135,8 +136,10 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
     /** Notification id offset */
     private static final int NOTIFICATION_ID_OFFSET = 123;
     private static final String ACTION_DISABLE_POLLING = "de.freehamburger.action.disable_polling";
-    /** wait this many milliseconds after loading the Source data (for additional images to load and notifications to be shown) */
-    private static final long DELAY_TO_DESTRUCTION = 10_000L;
+    /** the job will be finished after this many milliseconds even if not all downloads, parsers and notifications have completed */
+    private static final long MAX_JOB_DURATION = 600_000L;
+    /** the maximum number of Sources that will be parsed concurrently */
+    private static final int MAX_PARSERS = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
     /** String set: logs timestamps of all requests */
     private static final String PREF_STAT_ALL = "pref_stat_all";
     /** self-imposed minimum interval of 5 minutes regardless {@link JobInfo#getMinPeriodMillis() what Android says} */
@@ -170,13 +173,26 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
     private final Map<String, Long> previouslyShownNews = Collections.synchronizedMap(new HashMap<>());
     /** {@code true} while the list of previously shown News has not been modified, {@code false} if the list needs to be stored */
     private volatile boolean previouslyShownNewsStored = true;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /** finishes the job if the pipeline has not completed in time */
+    private final Runnable timeout = () -> {
+        if (BuildConfig.DEBUG) Log.e(TAG + UpdateJobService.this.id, "Not finished after " + (MAX_JOB_DURATION / 60_000L) + " minutes!");
+        finish();
+    };
+    /** executes the downloads */
     private ThreadPoolExecutor loaderExecutor;
+    /** executes the BlobParsers; bounded by {@link #MAX_PARSERS} */
+    private ThreadPoolExecutor parserExecutor;
+    /** the number of downloads, parsers and notifications that are still in progress; see {@link #pipelineEnter()} and {@link #pipelineLeave()} */
+    @IntRange(from = 0) private int pending;
+    /** {@code true} once {@link #finish()} has run */
+    private boolean finished;
+    private volatile boolean destroyed;
     private JobParameters params;
     private long scheduledAt;
     private volatile boolean stopJobReceived;
     private int nextNotificationId = NOTIFICATION_ID_OFFSET;
     private NotificationSummary summary = null;
-    private Waiter waiter = null;
 
     /**
      * Constructor.
@@ -574,6 +590,21 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
     /** {@inheritDoc} */
     @Override
     public void blobParsed(@Nullable final Blob blob, boolean ok, @Nullable Throwable oops) {
+        try {
+            notifyIfNewsworthy(blob, ok, oops);
+        } finally {
+            pipelineLeave();
+        }
+    }
+
+    /**
+     * Picks the most recent News from the given Blob that the user has not seen yet and shows it in a Notification.
+     * @param blob Blob
+     * @param ok {@code true} if the Blob has been parsed successfully
+     * @param oops Throwable that occurred while parsing
+     */
+    @MainThread
+    private void notifyIfNewsworthy(@Nullable final Blob blob, boolean ok, @Nullable Throwable oops) {
         if (this.stopJobReceived) {
             if (BuildConfig.DEBUG) Log.w(TAG + id, "BlobParser cancelled!");
             done();
@@ -645,10 +676,15 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
                 try {
                     final News finalCopy = newsToDisplay;
                     final File temp = File.createTempFile("temp", ".jpg");
+                    pipelineEnter();
                     loadFile(imageUrl, temp, (completed, result) -> {
-                        Bitmap bm = (completed && result != null && result.file != null && result.rc < 400) ? BitmapFactory.decodeFile(result.file.getAbsolutePath(), BITMAPFACTORY_OPTIONS) : null;
-                        notify(finalCopy, blob.getSource(), bm);
-                        Util.deleteFile(temp);
+                        try {
+                            Bitmap bm = (completed && result != null && result.file != null && result.rc < 400) ? BitmapFactory.decodeFile(result.file.getAbsolutePath(), BITMAPFACTORY_OPTIONS) : null;
+                            notify(finalCopy, blob.getSource(), bm);
+                            Util.deleteFile(temp);
+                        } finally {
+                            pipelineLeave();
+                        }
                     });
                     return;
                 } catch (Exception e) {
@@ -659,6 +695,28 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         notify(newsToDisplay, blob.getSource(), null);
     }
 
+    /**
+     * Completes the job once all downloads, parsers and notifications have finished:
+     * updates the widgets, shows the notification group summary and calls {@link #done()}.
+     */
+    @MainThread
+    private void finish() {
+        if (this.finished) return;
+        this.finished = true;
+        this.handler.removeCallbacks(this.timeout);
+        if (this.destroyed) return;
+        if (!this.stopJobReceived) {
+            if (BuildConfig.DEBUG) Log.i(TAG + id, "Updating widgets");
+            WidgetProvider.updateWidgets(this, WidgetProvider.loadWidgetSources(this));
+            // Show a notification group summary if there is more than one notification
+            if (this.summary != null && this.summary.getCount() >= 2) {
+                ((NotificationManager)getSystemService(NOTIFICATION_SERVICE)).notify(NOTIFICATION_ID_SUMMARY, this.summary.build((App)getApplicationContext()));
+                this.summary = null;
+            }
+        }
+        done();
+    }
+
     /**
      * Calls {@link #jobFinished(JobParameters, boolean) jobFinished(JobParameters, false)}.
      */
@@ -689,6 +747,27 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
     /** {@inheritDoc} */
     @Override
     public void downloaded(boolean completed, @Nullable Downloader.Result result) {
+        try {
+            parseIfDownloaded(completed, result);
+        } finally {
+            pipelineLeave();
+        }
+    }
+
+    /**
+     * Hands a downloaded file over to the parser stage.
+     * @param completed {@code true} if the download has completed
+     * @param result Downloader.Result
+     */
+    @MainThread
+    private void parseIfDownloaded(boolean completed, @Nullable Downloader.Result result) {
+        if (completed && result != null && result.file != null && result.rc == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // nothing has changed - nothing to parse
+            if (BuildConfig.DEBUG) Log.i(TAG + id, "Download of \"" + result.sourceUri + "\": not modified");
+            Source source = Source.getSourceFromFile(result.file);
+            if (source != null) ((App)getApplicationContext()).setValidators(source, result);
+            return;
+        }
         if (!completed || result == null || result.file == null || result.rc != HttpURLConnection.HTTP_OK) {
             if (BuildConfig.DEBUG) {
                 if (result != null) {
@@ -720,14 +799,23 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         }
         editor.apply();
         Source source = Source.getSourceFromFile(result.file);
-        if (source != null) app.setMostRecentUpdate(source, now, false);
+        if (source != null) {
+            app.setMostRecentUpdate(source, now, false);
+            app.setValidators(source, result);
+        }
         //
         if (this.stopJobReceived) {
             // Job stopped before parser could run
             done();
             return;
         }
-        new BlobParser(app, this).executeOnExecutor(THREAD_POOL_EXECUTOR, result.file);
+        pipelineEnter();
+        try {
+            new BlobParser(app, this).executeOnExecutor(this.parserExecutor, result.file);
+        } catch (Exception e) {
+            if (BuildConfig.DEBUG) Log.e(TAG + id, "Failed to parse " + result.file + ": " + e);
+            pipelineLeave();
+        }
     }
 
     /**
@@ -762,6 +850,7 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
     @RequiresPermission(Manifest.permission.INTERNET)
     private boolean loadFile(@NonNull Source source, @NonNull Downloader.DownloaderListener listener) {
         App app = (App) getApplicationContext();
+        pipelineEnter();
         String url = source.getUrl();
         if (source == Source.REGIONAL) {
             url = url + Source.getParamsForRegional(this);
@@ -769,7 +858,7 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         OkHttpDownloader downloader = new OkHttpDownloader(this);
         try {
             downloader.executeOnExecutor(this.loaderExecutor,
-                    new Downloader.Order(url, app.getLocalFile(source).getAbsolutePath(), app.getMostRecentUpdate(source), true, listener));
+                    new Downloader.Order(url, app.getLocalFile(source).getAbsolutePath(), app.getMostRecentUpdate(source), app.getValidators(source, url), true, listener));
         } catch (Exception e) {
             if (BuildConfig.DEBUG) Log.e(TAG + id, "loadFile(" + source + ", …) failed: " + e);
             listener.downloaded(false, null);
@@ -795,8 +884,7 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         // check whether a News from the given Source should be displayed in a Notification
         Set<String> sourcesForNotifications = prefs.getStringSet(PREF_SOURCES_FOR_NOTIFICATIONS, PREF_SOURCES_FOR_NOTIFICATIONS_DEFAULT);
         if (sourcesForNotifications == null || !sourcesForNotifications.contains(source.name())) {
-            // at this point, the teaserImage may be passed on to the Waiter, "who" could pass it on to the WidgetProvider
-            // if (news.getExternalId() != null && largeIcon != null) this.waiter.bitmapCache.put(news.getExternalId(), largeIcon);
+            // at this point, the teaserImage could be passed on to the WidgetProvider
             return;
         }
         // prepare notification summary
@@ -920,10 +1008,12 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         previouslyShownNewsLoad();
         this.loaderExecutor = (ThreadPoolExecutor)Executors.newCachedThreadPool();
         this.loaderExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        this.parserExecutor = new ThreadPoolExecutor(MAX_PARSERS, MAX_PARSERS, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.parserExecutor.allowCoreThreadTimeOut(true);
 
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         boolean filtersEnabled = prefs.getBoolean(App.PREF_FILTERS_APPLY, App.PREF_FILTERS_APPLY_DEFAULT);
-        if (filtersEnabled) this.filters.addAll(TextFilter.createTextFiltersFromPreferences(this));
+        if (filtersEnabled) this.filters.addAll(TextFilterMatcher.compile(TextFilter.createTextFiltersFromPreferences(this)));
         //
         try {
             BITMAPFACTORY_OPTIONS.inPreferredConfig = Bitmap.Config.RGB_565;
@@ -943,12 +1033,17 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
             if (!this.previouslyShownNewsStored && id > 1) Log.w(TAG + id, "onDestroy(): previously shown news not stored!");
         }
 
-        if (this.waiter != null) this.waiter.destroyed = true;
+        this.destroyed = true;
+        this.handler.removeCallbacks(this.timeout);
 
         if (this.loaderExecutor != null) {
             this.loaderExecutor.shutdown();
             this.loaderExecutor = null;
         }
+        if (this.parserExecutor != null) {
+            this.parserExecutor.shutdown();
+            this.parserExecutor = null;
+        }
         super.onDestroy();
     }
 
@@ -1029,6 +1124,8 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         ((NotificationManager)getSystemService(NOTIFICATION_SERVICE)).cancelAll();
         //
         boolean atLeastOneSourceLoading = false;
+        // this keeps the pipeline from completing before all downloads have been initiated
+        pipelineEnter();
         // get sources for notifications
         @NonNull final Set<String> sourceNames = new HashSet<>(Objects.requireNonNull(prefs.getStringSet(PREF_SOURCES_FOR_NOTIFICATIONS, PREF_SOURCES_FOR_NOTIFICATIONS_DEFAULT)));
         // add sources for widgets
@@ -1039,19 +1136,17 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         //
         for (String sourceName : sourceNames) {
             Source source = Source.valueOf(sourceName);
-            if (source.getLockHolder() != null) {
-                if (BuildConfig.DEBUG) Log.w(TAG + id, "Skipping Source " + source + " because it is locked!");
-                continue;
-            }
+            // if the Source is being written to right now, the download will wait for the Source's write lock
             atLeastOneSourceLoading |= loadFile(source, this);
         }
         if (!atLeastOneSourceLoading) {
             if (BuildConfig.DEBUG) Log.i(TAG + id, "No Source loading - finishing.");
+            this.finished = true;
             done();
             return false;
         }
-        this.waiter = new Waiter(this);
-        this.waiter.start();
+        this.handler.postDelayed(this.timeout, MAX_JOB_DURATION);
+        pipelineLeave();
         // return true to indicate that this job should continue until jobFinished() is called
         return true;
     }
@@ -1086,6 +1181,28 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
         return false;
     }
 
+    /**
+     * To be called before a download, a parser or a notification is started.
+     * Each call must be matched by a call to {@link #pipelineLeave()}.
+     */
+    @MainThread
+    private void pipelineEnter() {
+        this.pending++;
+    }
+
+    /**
+     * To be called when a download, a parser or a notification has completed.
+     * Finishes the job when nothing is pending anymore.
+     */
+    @MainThread
+    private void pipelineLeave() {
+        if (this.pending <= 0) {
+            if (BuildConfig.DEBUG) Log.e(TAG + id, "pipelineLeave(): nothing pending!");
+            return;
+        }
+        if (--this.pending == 0) finish();
+    }
+
     /**
      * Loads all entries from {@link #NOTIFIED_NEWS_FILE}.
      * Also removes old (and therefore obsolete) entries.
@@ -1253,60 +1370,4 @@ public class UpdateJobService extends JobService implements Downloader.Downloade
             this.hipri = true;
         }
     }
-
-    /**
-     * Waits for {@link #loaderExecutor} to terminate.<br>
-     * <em>Note: This might run after {@link #onDestroy()}.</em>
-     */
-    private static class Waiter extends Thread {
-
-        private final long wid = System.currentTimeMillis() - 1_647_000_000_000L;
-        private final Reference<UpdateJobService> refService;
-        volatile boolean destroyed;
-
-        Waiter(@NonNull UpdateJobService service) {
-            super();
-            this.refService = new WeakReference<>(service);
-        }
-
-        @Override
-        public void run() {
-            final UpdateJobService service = this.refService.get();
-            if (service == null) {
-                if (BuildConfig.DEBUG) Log.w(TAG + "-W-" + wid, "Service is gone!");
-                return;
-            }
-            if (service.loaderExecutor != null) {
-                try {
-                    service.loaderExecutor.shutdown();
-                    //TODO the maximum wait time should be shorter if frequent updates are enabled
-                    if (!service.loaderExecutor.awaitTermination(10, TimeUnit.MINUTES)) {
-                        if (BuildConfig.DEBUG) Log.e(TAG + service.id + "-W-" + wid, "Not finished after 10 minutes!");
-                        service.loaderExecutor.shutdownNow();
-                    }
-                    // All loaders have finished. Job will be stopped in DELAY_TO_DESTRUCTION ms
-                    // wait DELAY_TO_DESTRUCTION/2 ms or embedded images to be loaded and notifications to be shown…
-                    Thread.sleep(DELAY_TO_DESTRUCTION / 2L);
-                    if (BuildConfig.DEBUG) Log.i(TAG + service.id + "-W-" + wid, "Updating widgets");
-                    WidgetProvider.updateWidgets(service, WidgetProvider.loadWidgetSources(service));
-                    // Show a notification group summary if there is more than one notification
-                    if (service.summary != null && service.summary.getCount() >= 2) {
-                        ((NotificationManager)service.getSystemService(NOTIFICATION_SERVICE)).notify(NOTIFICATION_ID_SUMMARY, service.summary.build((App) service.getApplicationContext()));
-                        service.summary = null;
-                    }
-                    // store list of previously displayed notifications
-                    if (!service.previouslyShownNewsStored) service.previouslyShownNewsUpdate();
-                    if (!service.stopJobReceived) {
-                        // job will be stopped in DELAY_TO_DESTRUCTION/2 ms
-                        Thread.sleep(DELAY_TO_DESTRUCTION / 2L);
-                    }
-                } catch (InterruptedException e) {
-                    if (BuildConfig.DEBUG) Log.e(TAG + service.id + "-W-" + wid, "While waiting: " + e, e);
-                }
-            } else {
-                if (BuildConfig.DEBUG) Log.e(TAG + service.id + "-W-" + wid, "No LoaderExecutor!");
-            }
-            if (!this.destroyed) service.done();
-        }
-    }
 }
@@ -0,0 +1,188 @@
+package de.freehamburger.adapters;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.freehamburger.HamburgerService;
+import de.freehamburger.model.News;
+import de.freehamburger.model.TeaserImage;
+import de.freehamburger.views.NewsView2;
+
+/**
+ * Loads the teaser images of the rows that are about to be scrolled into view.<br>
+ * The number of rows is derived from the direction and the velocity of the scrolling;
+ * images of rows that have been scrolled far away are not loaded any more.<br>
+ * Once the list has come to rest, small image variants in the visible rows are replaced by better ones
+ * if the {@link de.freehamburger.util.ImageQualityPolicy ImageQualityPolicy} allows for that.
+ */
+final class NewsPrefetcher extends RecyclerView.OnScrollListener {
+
+    /** the number of rows to prefetch when the list is not moving */
+    private static final int MIN_ROWS = 2;
+    /** the maximum number of rows to prefetch */
+    private static final int MAX_ROWS = 12;
+    /** the period [ms] that the scrolling is extrapolated into */
+    private static final float LOOKAHEAD = 750f;
+    /** the weight of the most recent velocity sample */
+    private static final float SMOOTHING = 0.3f;
+    /** velocity samples older than this [ms] are discarded */
+    private static final long MAX_SAMPLE_AGE = 250L;
+    /** the number of rows behind the visible ones whose prefetches are not cancelled */
+    private static final int KEEP_BEHIND_ROWS = 2;
+    /** the period [ms] that the list must have been at rest before images are {@link #upgrade(RecyclerView) upgraded} */
+    private static final long UPGRADE_DELAY = 1_500L;
+
+    @NonNull private final NewsRecyclerAdapter adapter;
+    /** smoothed scrolling velocity [px/ms] */
+    private float velocity;
+    /** the point in time when {@link #onScrolled(RecyclerView, int, int)} has been invoked most recently */
+    private long latestScroll;
+    /** the direction of the most recent movement: 1 towards the end of the list, -1 towards the start */
+    private int direction = 1;
+    /** the parameters of the most recent prefetch */
+    @Nullable private List<News> latestList;
+    private int latestFirst = RecyclerView.NO_POSITION, latestLast = RecyclerView.NO_POSITION, latestRows, latestDirection;
+    /** will invoke {@link #upgrade(RecyclerView)} */
+    @Nullable private Runnable pendingUpgrade;
+
+    /**
+     * Constructor.
+     * @param adapter NewsRecyclerAdapter
+     */
+    NewsPrefetcher(@NonNull NewsRecyclerAdapter adapter) {
+        super();
+        this.adapter = adapter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (this.pendingUpgrade != null) {
+            recyclerView.removeCallbacks(this.pendingUpgrade);
+            this.pendingUpgrade = null;
+        }
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            this.velocity = 0f;
+            prefetch(recyclerView);
+            scheduleUpgrade(recyclerView);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        final long now = SystemClock.uptimeMillis();
+        final long dt = now - this.latestScroll;
+        if (dy != 0) {
+            this.direction = dy > 0 ? 1 : -1;
+            if (dt > MAX_SAMPLE_AGE) {
+                this.velocity = 0f;
+            } else if (dt > 0L) {
+                this.velocity += SMOOTHING * (Math.abs((float)dy / (float)dt) - this.velocity);
+            }
+            this.latestScroll = now;
+        }
+        // onScrolled(…, 0, 0) is also invoked after the layout has changed
+        prefetch(recyclerView);
+        if (this.pendingUpgrade == null && recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+            scheduleUpgrade(recyclerView);
+        }
+    }
+
+    /**
+     * Passes the images of the next rows in scrolling direction to the {@link HamburgerService}.
+     * @param recyclerView RecyclerView
+     */
+    @UiThread
+    private void prefetch(@NonNull RecyclerView recyclerView) {
+        final RecyclerView.LayoutManager lm = recyclerView.getLayoutManager();
+        if (!(lm instanceof LinearLayoutManager)) return;
+        final int first = ((LinearLayoutManager)lm).findFirstVisibleItemPosition();
+        final int last = ((LinearLayoutManager)lm).findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return;
+        final List<News> list = this.adapter.getCurrentList();
+        final View child = recyclerView.getChildAt(0);
+        final int rowHeight = child != null ? child.getHeight() : 0;
+        int rows = MIN_ROWS;
+        if (rowHeight > 0) rows += Math.round(this.velocity * LOOKAHEAD / rowHeight);
+        rows = Math.min(rows, MAX_ROWS);
+        if (list == this.latestList && first == this.latestFirst && last == this.latestLast && rows == this.latestRows && this.direction == this.latestDirection) return;
+        final HamburgerService service = this.adapter.getHamburgerService();
+        if (service == null) return;
+        this.latestList = list;
+        this.latestFirst = first;
+        this.latestLast = last;
+        this.latestRows = rows;
+        this.latestDirection = this.direction;
+        //
+        final int n = list.size();
+        final int spanCount = lm instanceof GridLayoutManager ? ((GridLayoutManager)lm).getSpanCount() : 1;
+        final int ahead = rows * spanCount;
+        final List<TeaserImage.MeasuredImage> wanted = new ArrayList<>(ahead);
+        final Set<String> retain = new HashSet<>(ahead + last - first + 1 + KEEP_BEHIND_ROWS * spanCount);
+        // the rows ahead, nearest first; those beyond the wanted ones are retained to avoid cancelling them when the scrolling slows down
+        final int edge = this.direction > 0 ? last : first;
+        for (int k = 1; k <= ahead << 1; k++) {
+            int position = edge + k * this.direction;
+            if (position < 0 || position >= n) break;
+            TeaserImage.MeasuredImage image = this.adapter.getMeasuredImage(list.get(position));
+            if (image == null || image.url == null) continue;
+            if (k <= ahead) wanted.add(image); else retain.add(image.url);
+        }
+        // the visible rows and a few behind them
+        final int from = this.direction > 0 ? Math.max(0, first - KEEP_BEHIND_ROWS * spanCount) : first;
+        final int to = this.direction > 0 ? last : Math.min(n - 1, last + KEEP_BEHIND_ROWS * spanCount);
+        for (int position = from; position <= to && position < n; position++) {
+            TeaserImage.MeasuredImage image = this.adapter.getMeasuredImage(list.get(position));
+            if (image != null && image.url != null) retain.add(image.url);
+        }
+        service.prefetch(wanted, retain);
+    }
+
+    /**
+     * Invokes {@link #upgrade(RecyclerView)} after {@link #UPGRADE_DELAY}.
+     * @param recyclerView RecyclerView
+     */
+    @UiThread
+    private void scheduleUpgrade(@NonNull RecyclerView recyclerView) {
+        this.pendingUpgrade = () -> {
+            this.pendingUpgrade = null;
+            upgrade(recyclerView);
+        };
+        recyclerView.postDelayed(this.pendingUpgrade, UPGRADE_DELAY);
+    }
+
+    /**
+     * Replaces the images in the visible rows by better variants if they have been loaded in a smaller variant
+     * and if the network connection is good enough now.
+     * @param recyclerView RecyclerView
+     */
+    @UiThread
+    private void upgrade(@NonNull RecyclerView recyclerView) {
+        if (recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) return;
+        final HamburgerService service = this.adapter.getHamburgerService();
+        if (service == null || !this.adapter.isImageUpgradeAllowed()) return;
+        final List<News> list = this.adapter.getCurrentList();
+        final int n = recyclerView.getChildCount();
+        for (int i = 0; i < n; i++) {
+            View child = recyclerView.getChildAt(i);
+            if (!(child instanceof NewsView2)) continue;
+            int position = recyclerView.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION || position >= list.size()) continue;
+            TeaserImage.MeasuredImage image = this.adapter.getMeasuredImage(list.get(position));
+            if (image != null) ((NewsView2)child).upgradeImage(image, service);
+        }
+    }
+}
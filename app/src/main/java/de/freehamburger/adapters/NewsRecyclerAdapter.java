@@ -9,7 +9,6 @@ import android.os.Build;
 import android.os.Handler;
 import androidx.preference.PreferenceManager;
 import android.text.TextUtils;
-import android.util.Size;
 import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.ContextMenu;
@@ -29,13 +28,21 @@ import androidx.annotation.Nullable;
 import androidx.annotation.UiContext;
 import androidx.annotation.UiThread;
 import androidx.annotation.VisibleForTesting;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import de.freehamburger.BuildConfig;
 import de.freehamburger.HamburgerService;
@@ -43,10 +50,13 @@ import de.freehamburger.NewsAdapterActivity;
 import de.freehamburger.App;
 import de.freehamburger.R;
 import de.freehamburger.StyledActivity;
+import de.freehamburger.model.Content;
 import de.freehamburger.model.Filter;
 import de.freehamburger.model.News;
 import de.freehamburger.model.Source;
 import de.freehamburger.model.TeaserImage;
+import de.freehamburger.model.TextFilterMatcher;
+import de.freehamburger.supp.SearchIndex;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.Util;
 import de.freehamburger.views.NewsView2;
@@ -57,17 +67,56 @@ import de.freehamburger.views.NewsView2;
 public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecyclerAdapter.ViewHolder> implements SharedPreferences.OnSharedPreferenceChangeListener {
 
     private static final String TAG = "NewsRecyclerAdapter";
+    /** tells whether two News occupy the same row and whether that row would look the same for both of them */
+    private static final DiffUtil.ItemCallback<News> DIFF_CALLBACK = new DiffUtil.ItemCallback<News>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull News oldItem, @NonNull News newItem) {
+            if (oldItem == newItem) return true;
+            String oldExternalId = oldItem.getExternalId();
+            return oldExternalId != null && oldExternalId.equals(newItem.getExternalId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull News oldItem, @NonNull News newItem) {
+            return oldItem == newItem || oldItem.getContentHash() == newItem.getContentHash();
+        }
+    };
+    /** applies the filters off the UI thread */
+    private static final ThreadPoolExecutor FILTER_EXECUTOR = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    static {
+        FILTER_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     @NonNull private final List<News> newsList = new ArrayList<>(32);
-    @NonNull private final List<News> filteredNews = new ArrayList<>(32);
+    /** computes the differences between the displayed News and new ones on a background thread and then dispatches fine-grained notifications */
+    @NonNull private final AsyncListDiffer<News> differ;
+    /** the News that have most recently been passed to the {@link #differ}; equals {@link AsyncListDiffer#getCurrentList()} once the diff has been dispatched */
+    @NonNull private List<News> submittedNews = new ArrayList<>(0);
     @NonNull private final NewsAdapterActivity activity;
     @NonNull private final List<Filter> filters = new ArrayList<>(4);
+    /** incremented whenever {@link #filters} is modified */
+    private int filtersVersion = 0;
+    /** {@link #filters} with all TextFilters {@link TextFilterMatcher#compile(Collection) compiled}; valid for {@link #memoVersion} */
+    @NonNull private List<Filter> compiledFilters = new ArrayList<>(0);
+    /** whether the {@link #filters} accept (true) or reject (false) a News, mapped to the {@link #memoKey(News) memo keys}; valid for {@link #memoVersion} */
+    @NonNull private Map<String, Boolean> memo = new HashMap<>(0);
+    /** the {@link #filtersVersion} that {@link #memo} and {@link #compiledFilters} refer to */
+    private int memoVersion = -1;
+    /** incremented with each invocation of {@link #updateFilter()}; results of earlier invocations are not displayed */
+    private int filterGeneration = 0;
+    /** the {@link #filterGeneration} whose result has most recently been passed to the {@link #differ} */
+    private int filteredGeneration = 0;
+    /** to be run once the result of the current {@link #filterGeneration} has been passed to the {@link #differ} */
+    @NonNull private final List<Runnable> afterFiltering = new ArrayList<>(1);
     private final Handler handler = new Handler();
-    /** a NewsView instance for each view type; used to preload News items via {@link #preloader} */
+    /** loads the teaser images of the rows that are about to be scrolled into view */
+    @NonNull private final NewsPrefetcher prefetcher = new NewsPrefetcher(this);
+    /** a NewsView instance for each view type; used to select the images that the {@link #prefetcher} loads */
     private final SparseArray<NewsView2> dummyNewsViews = new SparseArray<>(2);
     /** a ViewHolder instance for each view type */
     private final SparseArray<ViewHolder> viewholderCache = new SparseArray<>(2);
     private final SharedPreferences prefs;
-    private boolean preloading = false;
     private boolean filtersEnabled;
     @FloatRange(from = 0.5, to = 2.0)
     private float zoom;
@@ -91,7 +140,7 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
         this.filtersEnabled = this.prefs.getBoolean(App.PREF_FILTERS_APPLY, App.PREF_FILTERS_APPLY_DEFAULT);
         this.zoom = this.prefs.getInt(App.PREF_FONT_ZOOM, App.PREF_FONT_ZOOM_DEFAULT) / 100f;
         this.zoomModified = Math.abs(this.zoom - 1f) > 0.001;
-        setHasStableIds(true);
+        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
         setTypeface(typeface);
     }
 
@@ -134,6 +183,7 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
     public void addFilter(@Nullable Filter f) {
         if (f == null || this.filters.contains(f)) return;
         this.filters.add(f);
+        this.filtersVersion++;
         updateFilter();
     }
 
@@ -148,7 +198,10 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
             this.filters.add(f);
             modified = true;
         }
-        if (modified) updateFilter();
+        if (modified) {
+            this.filtersVersion++;
+            updateFilter();
+        }
     }
 
     /**
@@ -181,6 +234,7 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
         }
         if (!toRemove.isEmpty()) {
             this.filters.removeAll(toRemove);
+            this.filtersVersion++;
             updateFilter();
         }
     }
@@ -207,6 +261,22 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
         return this.contextMenuIndex;
     }
 
+    /**
+     * @return the News that are currently displayed
+     */
+    @NonNull
+    List<News> getCurrentList() {
+        return this.differ.getCurrentList();
+    }
+
+    /**
+     * @return HamburgerService
+     */
+    @Nullable
+    HamburgerService getHamburgerService() {
+        return this.activity.getHamburgerService();
+    }
+
     /**
      * Returns the News at a given position.
      * @param position news position
@@ -214,26 +284,52 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
      * @throws IndexOutOfBoundsException if the position is out of range (<tt>position &lt; 0 || position &gt;= getItemCount()</tt>)
      */
     public News getItem(@IntRange(from = 0) int position) {
-        return isFiltered() ? this.filteredNews.get(position) : this.newsList.get(position);
+        return this.differ.getCurrentList().get(position);
     }
 
     /** {@inheritDoc} */
     @Override
     public synchronized int getItemCount() {
-        return isFiltered() ? this.filteredNews.size() : this.newsList.size();
+        return this.differ.getCurrentList().size();
     }
 
     /** {@inheritDoc} */
     @Override
-    public long getItemId(int position) {
-        return isFiltered() ? this.filteredNews.get(position).getId() : this.newsList.get(position).getId();
+    public int getItemViewType(int position) {
+        return getViewType(this.differ.getCurrentList().get(position));
     }
 
-    /** {@inheritDoc} */
-    @Override
-    public int getItemViewType(int position) {
-        News news = isFiltered() ? this.filteredNews.get(position) : this.newsList.get(position);
-        return getViewType(news);
+    /**
+     * Returns the number of News that will be displayed once the most recent changes have been dispatched.<br>
+     * In contrast to {@link #getItemCount()}, this reflects calls to {@link #setNewsList(Collection, Source)} or to the filter-related methods
+     * as soon as the filters have been applied - see {@link #runWhenFiltered(Runnable)}.
+     * @return number of News
+     */
+    @IntRange(from = 0)
+    public int getNewsCount() {
+        return this.submittedNews.size();
+    }
+
+    /**
+     * Selects the variant of the given News' TeaserImage that would be displayed.
+     * @param news News
+     * @return MeasuredImage or {@code null} if the News does not have a TeaserImage or if no View of the appropriate type has been bound yet
+     * @throws NullPointerException if {@code news} is {@code null}
+     */
+    @Nullable
+    TeaserImage.MeasuredImage getMeasuredImage(@NonNull News news) {
+        TeaserImage image = news.getTeaserImage();
+        if (image == null) return null;
+        NewsView2 newsView = this.dummyNewsViews.get(getViewType(news));
+        return newsView != null ? newsView.getMeasuredImage(image) : null;
+    }
+
+    /**
+     * Determines whether small image variants may be replaced by better ones now.
+     * @return {@code true} / {@code false}
+     */
+    boolean isImageUpgradeAllowed() {
+        return ((App)this.activity.getApplicationContext()).getImageQualityPolicy().isUpgradeAllowed(this.activity);
     }
 
     /**
@@ -261,6 +357,22 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
         return false;
     }
 
+    /**
+     * Checks whether the given News are the very same objects as the ones in the given List, in the same order.
+     * @param newsList News
+     * @param list List of News to compare with
+     * @return {@code true} / {@code false}
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    private static boolean isSameNews(@NonNull final Collection<News> newsList, @NonNull final List<News> list) {
+        if (newsList.size() != list.size()) return false;
+        int i = 0;
+        for (News news : newsList) {
+            if (news != list.get(i++)) return false;
+        }
+        return true;
+    }
+
     /**
      * @return {@code true} if a filter has been set
      */
@@ -272,6 +384,7 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
     @Override
     public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
         this.prefs.registerOnSharedPreferenceChangeListener(this);
+        recyclerView.addOnScrollListener(this.prefetcher);
     }
 
     /** {@inheritDoc} */
@@ -301,27 +414,9 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
         // apply the user-defined typeface to the NewsView
         applyTypeface(tvtl, tvda, tvti, tvfs);
 
-        HamburgerService service = this.activity.getHamburgerService();
-        final Size bitmapSize;
-        if (isFiltered()) {
-            bitmapSize = newsView2.setNews(this.filteredNews.get(position), service, this.prefs);
-        } else {
-            bitmapSize = newsView2.setNews(this.newsList.get(position), service, this.prefs);
-        }
-        if (service != null && bitmapSize != null && !this.preloading) {
-            this.preloading = true;
-            final int n = getItemCount();
-            final List<String> cacheUs = new ArrayList<>(n - 1);
-            for (int i = 0; i < n; i++) {
-                if (i == position) continue;
-                TeaserImage image = this.newsList.get(i).getTeaserImage();
-                if (image == null) continue;
-                TeaserImage.MeasuredImage measuredImage = image.getExact(bitmapSize.getWidth(), bitmapSize.getHeight());
-                if (measuredImage == null || TextUtils.isEmpty(measuredImage.url)) continue;
-                cacheUs.add(measuredImage.url);
-            }
-            service.loadIntoCache(cacheUs);
-        }
+        newsView2.setNews(this.differ.getCurrentList().get(position), this.activity.getHamburgerService(), this.prefs);
+        final int viewType = holder.getItemViewType();
+        if (this.dummyNewsViews.get(viewType) == null) this.dummyNewsViews.put(viewType, newsView2);
     }
 
     /** {@inheritDoc}
@@ -367,6 +462,7 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
     /** {@inheritDoc} */
     @Override
     public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(this.prefetcher);
         this.prefs.unregisterOnSharedPreferenceChangeListener(this);
     }
 
@@ -375,7 +471,11 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
     @Override
     public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
         if (App.PREF_FILTERS_APPLY.equals(key)) {
-            this.filtersEnabled = prefs.getBoolean(key, App.PREF_FILTERS_APPLY_DEFAULT);
+            boolean filtersEnabled = prefs.getBoolean(key, App.PREF_FILTERS_APPLY_DEFAULT);
+            if (filtersEnabled != this.filtersEnabled) {
+                this.filtersEnabled = filtersEnabled;
+                updateFilter();
+            }
         } else if (App.PREF_BACKGROUND.equals(key) || App.PREF_BACKGROUND_VARIANT_INDEX.equals(key)) {
             // The activity receives the same info (HamburgerActivity.onSharedPreferenceChanged()) and sets its background accordingly; give it a moment to do so
             this.handler.postDelayed(this::notifyDataSetChanged, 500L);
@@ -401,6 +501,7 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
         boolean justClearAllFilters = filters == null || filters.isEmpty();
         if (justClearAllFilters && this.filters.isEmpty()) return false;
         this.filters.clear();
+        this.filtersVersion++;
         if (justClearAllFilters) {
             updateFilter();
             return false;
@@ -421,6 +522,10 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
             return;
         }
         this.updated = System.currentTimeMillis();
+        if (newsList != null && isSameNews(newsList, this.newsList)) {
+            // the same News objects, possibly from the BlobCache: nothing to do
+            return;
+        }
         this.newsList.clear();
         if (newsList != null) {
             this.newsList.addAll(newsList);
@@ -428,6 +533,21 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
         updateFilter();
     }
 
+    /**
+     * Runs the given Runnable on the UI thread as soon as the filters have been applied to the current News.<br>
+     * If that has already happened, the Runnable is run immediately.
+     * @param r Runnable
+     * @throws NullPointerException if {@code r} is {@code null}
+     */
+    @UiThread
+    public void runWhenFiltered(@NonNull Runnable r) {
+        if (this.filteredGeneration == this.filterGeneration) {
+            r.run();
+            return;
+        }
+        this.afterFiltering.add(r);
+    }
+
     /**
      * Sets the number of pixels at the right edge where MotionEvents should be ignored/suppressed.
      * @param rightEdgeSize pixel count
@@ -448,30 +568,98 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
     }
 
     /**
-     * Updates the {@link #filteredNews filtered news list} and calls {@link #notifyDataSetChanged()}.
+     * Returns the key that a News is {@link #memo memoized} with.<br>
+     * The key consists of the {@link SearchIndex#keyOf(News) key} of the News and a hash over the texts that the filters apply to,
+     * so that a News that has been parsed again is found in the memo unless its texts have been modified.
+     * @param news News
+     * @return memo key or {@code null} if the News cannot be identified
      */
-    @SuppressLint("NotifyDataSetChanged")
+    @Nullable
+    private static String memoKey(@NonNull News news) {
+        final String key = SearchIndex.keyOf(news);
+        if (key == null) return null;
+        final Content content = news.getContent();
+        int hash = 31 * news.getContentHash() + (content != null ? content.getElementHash() : 0);
+        hash = 31 * hash + news.getTags().hashCode();
+        hash = 31 * hash + news.getGeotags().hashCode();
+        return key + '#' + hash;
+    }
+
+    /**
+     * Determines the News to display and passes them to the {@link #differ}
+     * which will then notify the RecyclerView only about the rows that have actually been inserted, removed, moved or changed.<br>
+     * The filters are compiled and applied on a worker thread; the result is passed back to the UI thread.
+     */
+    @UiThread
     private void updateFilter() {
-        final List<News> oldFilteredList = isFiltered() ? new ArrayList<>(this.filteredNews) : null;
-        this.filteredNews.clear();
+        final int generation = ++this.filterGeneration;
         if (!isFiltered()) {
-            notifyDataSetChanged();
+            submit(new ArrayList<>(this.newsList));
+            onFiltered(generation);
             return;
         }
-        for (News news : this.newsList) {
-            boolean rejected = false;
-            for (Filter filter : this.filters) {
-                if (!filter.accept(news)) {
-                    rejected = true;
-                    break;
+        final int version = this.filtersVersion;
+        final List<News> newsList = new ArrayList<>(this.newsList);
+        final List<Filter> filters = new ArrayList<>(this.filters);
+        // the compiled filters and the memo can be reused only if the filters have not been modified since
+        final List<Filter> previouslyCompiled = this.memoVersion == version ? this.compiledFilters : null;
+        final Map<String, Boolean> previousMemo = this.memoVersion == version ? this.memo : Collections.emptyMap();
+        FILTER_EXECUTOR.execute(() -> {
+            // all TextFilters are applied in one go
+            final List<Filter> compiledFilters = previouslyCompiled != null ? previouslyCompiled : TextFilterMatcher.compile(filters);
+            // only News that have not been seen with the current filters are evaluated
+            final List<News> filteredNews = new ArrayList<>(newsList.size());
+            final Map<String, Boolean> memo = new HashMap<>(newsList.size());
+            for (News news : newsList) {
+                final String key = memoKey(news);
+                Boolean accepted = key != null ? previousMemo.get(key) : null;
+                if (accepted == null) {
+                    accepted = Boolean.TRUE;
+                    for (Filter filter : compiledFilters) {
+                        if (!filter.accept(news)) {
+                            accepted = Boolean.FALSE;
+                            break;
+                        }
+                    }
                 }
+                if (key != null) memo.put(key, accepted);
+                if (accepted) filteredNews.add(news);
             }
-            if (!rejected) this.filteredNews.add(news);
-        }
-        if (this.filteredNews.equals(oldFilteredList)) {
-            return;
-        }
-        notifyDataSetChanged();
+            this.handler.post(() -> {
+                if (version == this.filtersVersion) {
+                    // even if the result is outdated, the memo helps the next run
+                    this.compiledFilters = compiledFilters;
+                    this.memo = memo;
+                    this.memoVersion = version;
+                }
+                if (generation != this.filterGeneration) return;
+                submit(filteredNews);
+                onFiltered(generation);
+            });
+        });
+    }
+
+    /**
+     * Runs the Runnables that are {@link #afterFiltering waiting} for the given generation.
+     * @param generation the {@link #filterGeneration} whose result has just been passed to the {@link #differ}
+     */
+    @UiThread
+    private void onFiltered(int generation) {
+        this.filteredGeneration = generation;
+        if (this.afterFiltering.isEmpty()) return;
+        final List<Runnable> toRun = new ArrayList<>(this.afterFiltering);
+        this.afterFiltering.clear();
+        for (Runnable r : toRun) r.run();
+    }
+
+    /**
+     * Passes the given News to the {@link #differ}, unless they are the same as the ones that have been passed most recently.
+     * @param news News to display (must not be modified afterwards)
+     */
+    private void submit(@NonNull final List<News> news) {
+        if (isSameNews(news, this.submittedNews)) return;
+        this.submittedNews = news;
+        this.differ.submitList(news);
     }
 
     /**
@@ -565,7 +753,7 @@ public class NewsRecyclerAdapter extends StyledActivity.StyledAdapter<NewsRecycl
             NewsRecyclerAdapter adapter = newsAdapterController.getAdapter();
             int position = getBindingAdapterPosition();
             try {
-                News news = adapter.isFiltered() ? adapter.filteredNews.get(position) : adapter.newsList.get(position);
+                News news = adapter.getItem(position);
                 if (news != null) newsAdapterController.onNewsClicked(news, v, this.xPosOfEventActionUp, this.yPosOfEventActionUp);
             } catch (IndexOutOfBoundsException e) {
                 if (BuildConfig.DEBUG) Log.e(TAG, "Click on " + v + " @ position " + position + " -> " + e);
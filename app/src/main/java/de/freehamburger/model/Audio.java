@@ -37,7 +37,7 @@ public class Audio implements Serializable {
         if (date != null) return date;
         if (dateString != null) {
             try {
-                date = News.parseDate(dateString);
+                date = new Date(News.parseDate(dateString));
             } catch (ParseException e) {
                 if (BuildConfig.DEBUG) android.util.Log.e(getClass().getSimpleName(), "While parsing date: " + e);
             }
@@ -9,9 +9,12 @@ import android.util.JsonReader;
 import android.util.JsonToken;
 import android.util.MalformedJsonException;
 
+import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.Size;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -21,8 +24,10 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import de.freehamburger.App;
+import de.freehamburger.BuildConfig;
 import de.freehamburger.R;
 
 /**
@@ -30,6 +35,11 @@ import de.freehamburger.R;
  */
 public class Blob {
 
+    /** the number of News in the first batch passed to a {@link NewsBatchListener} - should be enough to fill the screen */
+    private static final int BATCH_SIZE_FIRST = 8;
+    /** the maximum number of News in a batch passed to a {@link NewsBatchListener} */
+    private static final int BATCH_SIZE_MAX = 64;
+
     private final List<News> newsList = new ArrayList<>(16);
     private final List<News> regionalNewsList = new ArrayList<>(16);
     /** a https link to a data structure - not always present */
@@ -61,25 +71,40 @@ public class Blob {
      */
     @NonNull
     static Blob parseApi(@NonNull Context ctx, @NonNull Source source, @NonNull final JsonReader reader) throws IOException {
+        return parseApi(ctx, source, reader, null);
+    }
+
+    /**
+     * Entry point for parsing the data that has been received.<br>
+     * The data consists of<ol>
+     * <li>news (array)</li>
+     * <li>regional (array)</li>
+     * <li>newStoriesCountLink (String)</li>
+     * <li>type (String)</li>
+     * </ol>
+     * If a {@link NewsBatchListener} is given, it will receive the News in batches while the parsing goes on.
+     * @param ctx Context
+     * @param source Source
+     * @param reader JsonReader
+     * @param batchListener optional NewsBatchListener
+     * @return Blob
+     * @throws IOException if an I/O error occurs
+     * @throws NullPointerException if {@code ctx} or {@code reader} are {@code null}
+     */
+    @NonNull
+    static Blob parseApi(@NonNull Context ctx, @NonNull Source source, @NonNull final JsonReader reader, @Nullable NewsBatchListener batchListener) throws IOException {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(ctx);
         @News.Flag int flags = 0;
         boolean htmlEmbed = prefs.getBoolean(App.PREF_SHOW_EMBEDDED_HTML_LINKS, App.PREF_SHOW_EMBEDDED_HTML_LINKS_DEFAULT);
         if (htmlEmbed) flags |= News.FLAG_INCLUDE_HTMLEMBED;
         // give some current color values to the Content class
-        Resources r = ctx.getResources();
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            Resources.Theme t = ctx.getTheme();
-            Content.setColorBox("#" + Integer.toHexString(r.getColor(R.color.colorBox, t) & ~0xff000000));
-            Content.setColorBoxBackground("#" + Integer.toHexString(r.getColor(R.color.colorBoxBackground, t) & ~0xff000000));
-            Content.setColorHtmlEmbed("#" + Integer.toHexString(r.getColor(R.color.colorHtmlEmbed, t) & ~0xff000000));
-            Content.setColorQuotation("#" + Integer.toHexString(r.getColor(R.color.colorQuotation, t) & ~0xff000000));
-        } else {
-            Content.setColorBox("#" + Integer.toHexString(r.getColor(R.color.colorBox) & ~0xff000000));
-            Content.setColorBoxBackground("#" + Integer.toHexString(r.getColor(R.color.colorBoxBackground) & ~0xff000000));
-            Content.setColorHtmlEmbed("#" + Integer.toHexString(r.getColor(R.color.colorHtmlEmbed) & ~0xff000000));
-            Content.setColorQuotation("#" + Integer.toHexString(r.getColor(R.color.colorQuotation) & ~0xff000000));
-        }
+        final String[] colors = getContentColors(ctx);
+        Content.setColorBox(colors[0]);
+        Content.setColorBoxBackground(colors[1]);
+        Content.setColorHtmlEmbed(colors[2]);
+        Content.setColorQuotation(colors[3]);
         //
+        final NewsPostProcessor postProcessor = new NewsPostProcessor(ctx, prefs);
         final Blob blob = new Blob();
         blob.source = source;
         String name = null;
@@ -92,33 +117,14 @@ public class Blob {
                 continue;
             }
             if ("news".equals(name) || "channels".equals(name)) {
-                blob.newsList.addAll(parseNewsList(reader, false, flags));
+                blob.newsList.addAll(parseNewsList(reader, false, flags, postProcessor, batchListener));
                 continue;
             }
             if ("regional".equals(name)) {
-                @Nullable final Set<String> regionIdsToInclude = prefs.getStringSet(App.PREF_REGIONS, null);
-                if (regionIdsToInclude == null || regionIdsToInclude.isEmpty()) {
+                if (postProcessor.regionIdsToInclude == null || postProcessor.regionIdsToInclude.isEmpty()) {
                     reader.skipValue();
                 } else {
-                    blob.regionalNewsList.addAll(parseNewsList(reader, true, flags));
-                    // remove news from those regions that the user is not interested in
-                    final Set<News> toRemove = new HashSet<>();
-                    for (News regionalNews : blob.regionalNewsList) {
-                        Set<Region> newsRegions = regionalNews.getRegions();
-                        // decision: keep regional news if it has got no region attached to it
-                        if (newsRegions.isEmpty()) continue;
-                        //
-                        boolean keep = false;
-                        for (Region newsRegion : newsRegions) {
-                            String newsRegionId = String.valueOf(newsRegion.getId());
-                            if (regionIdsToInclude.contains(newsRegionId)) {
-                                keep = true;
-                                break;
-                            }
-                        }
-                        if (!keep) toRemove.add(regionalNews);
-                    }
-                    blob.regionalNewsList.removeAll(toRemove);
+                    blob.regionalNewsList.addAll(parseNewsList(reader, true, flags, postProcessor, batchListener));
                 }
                 continue;
             }
@@ -132,39 +138,109 @@ public class Blob {
         }
         reader.endObject();
         //
-        if (prefs.getBoolean(App.PREF_CORRECT_WRONG_QUOTATION_MARKS, App.PREF_CORRECT_WRONG_QUOTATION_MARKS_DEFAULT)) {
-            News.correct(blob.newsList);
-            News.correct(blob.regionalNewsList);
-        }
-        if (prefs.getBoolean(App.PREF_PLUS_IS_NEGATIVE, App.PREF_PLUS_IS_NEGATIVE_DEFAULT)) {
-            for (News news : blob.newsList) News.removeStupidPluses(news);
-            for (News news : blob.regionalNewsList) News.removeStupidPluses(news);
-        }
+        return blob;
+    }
 
-        // replace some text within the News instances because the Context that we have here has not been passed down
-        final String[] toReplace = new String[] {Content.MARK_LINK};
-        final String[] replaceWith = new String[] {ctx.getString(R.string.label_link)};
-        for (News news : blob.newsList) {
-            Content content = news.getContent();
-            if (content != null) content.replace(toReplace, replaceWith);
-        }
-        for (News news : blob.regionalNewsList) {
-            Content content = news.getContent();
-            if (content != null) content.replace(toReplace, replaceWith);
+    /**
+     * Returns the colors that the {@link Content} class applies to box, box background, html embed and quotation elements.
+     * @param ctx Context
+     * @return array of 4 css color values
+     * @throws NullPointerException if {@code ctx} is {@code null}
+     */
+    @NonNull
+    @Size(4)
+    private static String[] getContentColors(@NonNull Context ctx) {
+        final Resources r = ctx.getResources();
+        final int[] colorRes = new int[] {R.color.colorBox, R.color.colorBoxBackground, R.color.colorHtmlEmbed, R.color.colorQuotation};
+        final String[] colors = new String[colorRes.length];
+        for (int i = 0; i < colorRes.length; i++) {
+            @ColorInt int color;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                color = r.getColor(colorRes[i], ctx.getTheme());
+            } else {
+                color = r.getColor(colorRes[i]);
+            }
+            colors[i] = "#" + Integer.toHexString(color & ~0xff000000);
         }
-        //
+        return colors;
+    }
+
+    /**
+     * Returns a String that represents all settings that affect the result of {@link #parseApi(Context, Source, JsonReader)}.<br>
+     * Two Blobs parsed from identical json data are identical if this String has not changed in between.
+     * @param ctx Context
+     * @return parse configuration
+     * @throws NullPointerException if {@code ctx} is {@code null}
+     */
+    @NonNull
+    public static String getParseConfiguration(@NonNull Context ctx) {
+        final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(ctx);
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append(BuildConfig.BUILD_TIME)
+                .append('|').append(prefs.getBoolean(App.PREF_SHOW_EMBEDDED_HTML_LINKS, App.PREF_SHOW_EMBEDDED_HTML_LINKS_DEFAULT))
+                .append('|').append(prefs.getBoolean(App.PREF_CORRECT_WRONG_QUOTATION_MARKS, App.PREF_CORRECT_WRONG_QUOTATION_MARKS_DEFAULT))
+                .append('|').append(prefs.getBoolean(App.PREF_PLUS_IS_NEGATIVE, App.PREF_PLUS_IS_NEGATIVE_DEFAULT))
+                .append('|').append(ctx.getString(R.string.label_link));
+        final Set<String> regionIds = prefs.getStringSet(App.PREF_REGIONS, null);
+        sb.append('|');
+        if (regionIds != null) sb.append(new TreeSet<>(regionIds));
+        sb.append('|');
+        if (NewsPostProcessor.isFilteringAtParse(prefs)) sb.append(new TreeSet<>(prefs.getStringSet(App.PREF_FILTERS, new HashSet<>(0))));
+        for (String color : getContentColors(ctx)) sb.append('|').append(color);
+        return sb.toString();
+    }
+
+    /**
+     * Re-creates a Blob from data that had been stored in a {@link BlobSnapshot}.
+     * @param source Source
+     * @param newsList national News
+     * @param regionalNewsList regional News
+     * @param newStoriesCountLink link to a data structure
+     * @return Blob
+     */
+    @NonNull
+    static Blob restore(@NonNull Source source, @NonNull Collection<News> newsList, @NonNull Collection<News> regionalNewsList, @Nullable String newStoriesCountLink) {
+        final Blob blob = new Blob();
+        blob.source = source;
+        blob.newsList.addAll(newsList);
+        blob.regionalNewsList.addAll(regionalNewsList);
+        blob.newStoriesCountLink = newStoriesCountLink;
         return blob;
     }
 
+    /**
+     * Parses an array of News.
+     * @param reader JsonReader
+     * @param regional {@code true} if the News originate in the "regional" part of the json data
+     * @param flags flags
+     * @param postProcessor NewsPostProcessor
+     * @param batchListener optional NewsBatchListener
+     * @return Collection of News
+     * @throws IOException if an I/O error occurs
+     */
     @NonNull
-    private static Collection<News> parseNewsList(@NonNull final JsonReader reader, final boolean regional, @News.Flag final int flags) throws IOException {
+    private static Collection<News> parseNewsList(@NonNull final JsonReader reader, final boolean regional, @News.Flag final int flags,
+                                                  @NonNull final NewsPostProcessor postProcessor, @Nullable final NewsBatchListener batchListener) throws IOException {
         try {
             final Set<News> newsList = new HashSet<>(16);
+            List<News> batch = batchListener != null ? new ArrayList<>(BATCH_SIZE_FIRST) : null;
+            int batchSize = BATCH_SIZE_FIRST;
             reader.beginArray();
             for (; reader.hasNext(); ) {
-                newsList.add(News.parseNews(reader, regional, flags));
+                final News news = News.parseNews(reader, regional, flags, postProcessor.matcher);
+                if (news == null || !postProcessor.accept(news)) continue;
+                postProcessor.process(news);
+                if (postProcessor.refuses(news)) continue;
+                if (!newsList.add(news) || batch == null) continue;
+                batch.add(news);
+                if (batch.size() >= batchSize) {
+                    batchListener.newsBatchParsed(batch);
+                    batchSize = Math.min(batchSize << 1, BATCH_SIZE_MAX);
+                    batch = new ArrayList<>(batchSize);
+                }
             }
             reader.endArray();
+            if (batch != null && !batch.isEmpty()) batchListener.newsBatchParsed(batch);
             return newsList;
         } catch (MalformedJsonException e) {
             throw new InformativeJsonException(e, reader);
@@ -216,6 +292,14 @@ public class Blob {
         return this.newStoriesCountLink;
     }
 
+    /**
+     * @return national News
+     */
+    @NonNull
+    List<News> getNewsList() {
+        return this.newsList;
+    }
+
     @VisibleForTesting
     public List<News> getRegionalNewsList() {
         return this.regionalNewsList;
@@ -225,4 +309,114 @@ public class Blob {
     public Source getSource() {
         return this.source;
     }
+
+    /**
+     * Receives News while they are being parsed.
+     */
+    @FunctionalInterface
+    interface NewsBatchListener {
+
+        /**
+         * Some News have been parsed.<br>
+         * The News have been fully processed and will not be modified any further.
+         * @param batch List of News
+         */
+        @WorkerThread
+        void newsBatchParsed(@NonNull List<News> batch);
+    }
+
+    /**
+     * Applies the user's preferences to each News right after it has been parsed.
+     */
+    private static final class NewsPostProcessor {
+
+        private final boolean correctQuotationMarks;
+        private final boolean removePluses;
+        @Nullable private final Set<String> regionIdsToInclude;
+        /** the user's {@link TextFilterMatcher#compile(Collection) compiled} filters if they are to be applied while parsing */
+        @Nullable private final List<Filter> filters;
+        /** the TextFilterMatcher among the {@link #filters}; allows to refuse News before their content is parsed */
+        @Nullable private final TextFilterMatcher matcher;
+        /** some text within the News instances is replaced because the Context that we have here has not been passed down */
+        private final String[] toReplace;
+        private final String[] replaceWith;
+
+        /**
+         * Constructor.
+         * @param ctx Context
+         * @param prefs SharedPreferences
+         */
+        private NewsPostProcessor(@NonNull Context ctx, @NonNull SharedPreferences prefs) {
+            super();
+            this.correctQuotationMarks = prefs.getBoolean(App.PREF_CORRECT_WRONG_QUOTATION_MARKS, App.PREF_CORRECT_WRONG_QUOTATION_MARKS_DEFAULT);
+            this.removePluses = prefs.getBoolean(App.PREF_PLUS_IS_NEGATIVE, App.PREF_PLUS_IS_NEGATIVE_DEFAULT);
+            this.regionIdsToInclude = prefs.getStringSet(App.PREF_REGIONS, null);
+            if (isFilteringAtParse(prefs)) {
+                this.filters = TextFilterMatcher.compile(TextFilter.createTextFiltersFromPreferences(ctx));
+                TextFilterMatcher matcher = null;
+                for (Filter filter : this.filters) {
+                    if (filter instanceof TextFilterMatcher) {
+                        matcher = (TextFilterMatcher)filter;
+                        break;
+                    }
+                }
+                this.matcher = matcher;
+            } else {
+                this.filters = null;
+                this.matcher = null;
+            }
+            this.toReplace = new String[] {Content.MARK_LINK};
+            this.replaceWith = new String[] {ctx.getString(R.string.label_link)};
+        }
+
+        /**
+         * Determines whether the user's filters should be applied while parsing.
+         * @param prefs SharedPreferences
+         * @return {@code true} / {@code false}
+         */
+        private static boolean isFilteringAtParse(@NonNull SharedPreferences prefs) {
+            return prefs.getBoolean(App.PREF_FILTERS_AT_PARSE, App.PREF_FILTERS_AT_PARSE_DEFAULT) && prefs.getBoolean(App.PREF_FILTERS_APPLY, App.PREF_FILTERS_APPLY_DEFAULT);
+        }
+
+        /**
+         * Removes regional News from those regions that the user is not interested in.
+         * @param news News
+         * @return {@code true} if the News should be kept
+         */
+        private boolean accept(@NonNull News news) {
+            if (!news.isRegional() || this.regionIdsToInclude == null) return true;
+            Set<Region> newsRegions = news.getRegions();
+            // decision: keep regional news if it has got no region attached to it
+            if (newsRegions.isEmpty()) return true;
+            for (Region newsRegion : newsRegions) {
+                if (this.regionIdsToInclude.contains(String.valueOf(newsRegion.getId()))) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Applies the user's {@link #filters} if they are to be applied while parsing.<br>
+         * The {@link #matcher} skips the texts that it has accepted already before the content was parsed.
+         * @param news News
+         * @return {@code true} if the News should be dropped
+         */
+        private boolean refuses(@NonNull News news) {
+            if (this.filters == null) return false;
+            for (Filter filter : this.filters) {
+                if (filter == this.matcher ? !this.matcher.acceptUnchecked(news) : !filter.accept(news)) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Modifies the given News according to the user's preferences.
+         * @param news News
+         */
+        private void process(@NonNull News news) {
+            if (this.correctQuotationMarks) News.correct(news);
+            if (this.removePluses) News.removeStupidPluses(news);
+            Content content = news.getContent();
+            if (content != null) content.replace(this.toReplace, this.replaceWith);
+        }
+    }
 }
@@ -0,0 +1,116 @@
+package de.freehamburger.model;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+import de.freehamburger.BuildConfig;
+import de.freehamburger.util.Log;
+
+/**
+ * Keeps recently parsed {@link Blob Blobs} in memory, so that they can be shared by all components of the app.<br>
+ * A Blob is returned only if the json file that it had been parsed from has not changed since
+ * (same {@link File#lastModified() modification time} and same length)
+ * and if the {@link Blob#getParseConfiguration(Context) parse configuration} is still the same.<br>
+ * The size of the cache is measured in kilobytes of json data.<br>
+ * All methods are thread-safe.
+ */
+public final class BlobCache {
+
+    private static final String TAG = "BlobCache";
+
+    private final LruCache<Source, Entry> cache;
+
+    /**
+     * Constructor.
+     * @param maxKb maximum size in kilobytes of json data
+     */
+    public BlobCache(@IntRange(from = 1) int maxKb) {
+        super();
+        this.cache = new LruCache<Source, Entry>(maxKb) {
+            @Override
+            protected int sizeOf(@NonNull Source key, @NonNull Entry value) {
+                return value.sizeKb;
+            }
+        };
+    }
+
+    /**
+     * Removes all entries.
+     */
+    @AnyThread
+    public void evictAll() {
+        this.cache.evictAll();
+    }
+
+    /**
+     * Returns the Blob that had been parsed from the given file.
+     * @param ctx Context
+     * @param source Source
+     * @param file json file
+     * @return Blob or {@code null}
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @Nullable
+    @AnyThread
+    public Blob get(@NonNull Context ctx, @NonNull Source source, @NonNull File file) {
+        final Entry entry = this.cache.get(source);
+        if (entry == null) return null;
+        if (entry.lastModified != file.lastModified() || entry.length != file.length() || !entry.parseConfiguration.equals(Blob.getParseConfiguration(ctx))) {
+            if (BuildConfig.DEBUG) Log.i(TAG, "Cached data for " + source + " is stale");
+            this.cache.remove(source);
+            return null;
+        }
+        return entry.blob;
+    }
+
+    /**
+     * Stores a Blob that has just been parsed from the given file.<br>
+     * Should be called again if the file's modification time has been changed afterwards.
+     * @param ctx Context
+     * @param blob Blob
+     * @param file json file that the Blob has been parsed from
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @AnyThread
+    public void put(@NonNull Context ctx, @NonNull Blob blob, @NonNull File file) {
+        final long length = file.length();
+        if (length <= 0L) return;
+        this.cache.put(blob.getSource(), new Entry(blob, file.lastModified(), length, Blob.getParseConfiguration(ctx)));
+    }
+
+    /**
+     * Reduces the cache to the given fraction of its maximum size.
+     * @param fraction (0..1]
+     */
+    @AnyThread
+    public void trim(float fraction) {
+        this.cache.trimToSize(Math.round(this.cache.maxSize() * fraction));
+    }
+
+    /**
+     * A cached Blob plus the attributes of the json file that it has been parsed from.
+     */
+    private static final class Entry {
+        @NonNull private final Blob blob;
+        private final long lastModified;
+        private final long length;
+        @NonNull private final String parseConfiguration;
+        private final int sizeKb;
+
+        private Entry(@NonNull Blob blob, long lastModified, long length, @NonNull String parseConfiguration) {
+            super();
+            this.blob = blob;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.parseConfiguration = parseConfiguration;
+            this.sizeKb = (int)Math.max(1L, length >> 10);
+        }
+    }
+}
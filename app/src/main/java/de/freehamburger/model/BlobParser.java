@@ -2,6 +2,8 @@ package de.freehamburger.model;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.JsonReader;
 
 import androidx.annotation.AnyThread;
@@ -11,6 +13,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.Size;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
@@ -18,24 +21,34 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 
+import de.freehamburger.App;
 import de.freehamburger.BuildConfig;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.Util;
 
 /**
- * AsyncTask implementation that parses a json file.
+ * AsyncTask implementation that parses a json file.<br>
+ * If there is a valid {@link BlobSnapshot} for the file, that will be loaded instead.
  */
 public class BlobParser extends AsyncTask<File, Float, Blob> {
 
     @NonNull private final Reference<Context> refctx;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /** if {@code true}, the {@link #listener} will receive News while they are being parsed */
+    private final boolean streaming;
     @VisibleForTesting
     public Exception thrown;
     @Nullable private BlobParserListener listener;
+    /** a Blob that has just been parsed from this json file is to be {@link BlobSnapshot saved} once it has been delivered */
+    @Nullable private File toSnapshot;
 
     /**
      * Constructor.
@@ -43,9 +56,20 @@ public class BlobParser extends AsyncTask<File, Float, Blob> {
      * @param listener BlobParserListener
      */
     public BlobParser(@NonNull Context ctx, @Nullable BlobParserListener listener) {
+        this(ctx, listener, false);
+    }
+
+    /**
+     * Constructor.
+     * @param ctx Context
+     * @param listener BlobParserListener
+     * @param streaming {@code true} to pass News to {@link BlobParserListener#newsParsed(List)} while the parsing goes on
+     */
+    public BlobParser(@NonNull Context ctx, @Nullable BlobParserListener listener, boolean streaming) {
         super();
         this.refctx = new SoftReference<>(ctx);
         this.listener = listener;
+        this.streaming = streaming && listener != null;
     }
 
     /** {@inheritDoc} */
@@ -58,30 +82,58 @@ public class BlobParser extends AsyncTask<File, Float, Blob> {
         if (ctx == null) return null;
         Source src = Source.getSourceFromFile(files[0]);
         if (src == null) return null;
-        Thread lockHolder = src.getLockHolder();
-        if (lockHolder != null && lockHolder.isAlive()) {
-            try {
-                lockHolder.join(1_000L);
-            } catch (InterruptedException ignored) {
-            }
-            lockHolder = src.getLockHolder();
-            if (lockHolder != null && lockHolder.isAlive()) {
-                if (BuildConfig.DEBUG) Log.e(getClass().getSimpleName(), "Cannot parse " + files[0] + " because " + src + " is locked by " + lockHolder);
-                return null;
+        // wait while the file is being written to; other parsers may read it at the same time
+        final Lock readLock = src.getLock().readLock();
+        readLock.lock();
+        try {
+            return parse(ctx, src, files[0]);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Parses the given file or retrieves the Blob from the {@link BlobCache cache} or from a {@link BlobSnapshot snapshot}.<br>
+     * The caller must hold the Source's read lock.
+     * @param ctx Context
+     * @param src Source
+     * @param file json file
+     * @return Blob or {@code null}
+     */
+    @Nullable
+    @WorkerThread
+    private Blob parse(@NonNull Context ctx, @NonNull Source src, @NonNull File file) {
+        final BlobCache cache = ctx.getApplicationContext() instanceof App ? ((App)ctx.getApplicationContext()).getBlobCache() : null;
+        // the same file might have been parsed recently by another component
+        Blob blob = cache != null ? cache.get(ctx, src, file) : null;
+        if (blob == null) {
+            // a snapshot that is newer than the json file saves the parsing
+            blob = BlobSnapshot.load(ctx, src, file);
+            if (blob != null && cache != null) {
+                cache.put(ctx, blob, file);
+                // the index skips Blobs that it already knows
+                ((App)ctx.getApplicationContext()).getSearchIndex().add(blob);
             }
         }
-        src.setLocked(true);
-        Blob blob = null;
+        if (blob != null) {
+            publishProgress(1f);
+            return blob;
+        }
         JsonReader reader = null;
         ProgressReporter reporter = null;
         try {
-            CountingFileInputStream in = new CountingFileInputStream(files[0]);
+            CountingFileInputStream in = new CountingFileInputStream(file);
             reader = new JsonReader(new InputStreamReader(new BufferedInputStream(in), StandardCharsets.UTF_8));
             reader.setLenient(true);
-            reporter = new ProgressReporter(files[0].length(), in);
+            reporter = new ProgressReporter(file.length(), in);
             reporter.start();
-            blob = Blob.parseApi(ctx, src, reader);
+            blob = Blob.parseApi(ctx, src, reader, this.streaming ? this::publishNews : null);
             reporter.stop = true;
+            Util.close(reader);
+            reader = null;
+            this.toSnapshot = file;
+            if (cache != null) cache.put(ctx, blob, file);
+            if (ctx.getApplicationContext() instanceof App) ((App)ctx.getApplicationContext()).getSearchIndex().add(blob);
         } catch (InformativeJsonException e) {
             reporter.stop = true;
             this.thrown = e;
@@ -94,7 +146,7 @@ public class BlobParser extends AsyncTask<File, Float, Blob> {
                 final int line = Integer.parseInt(s.substring(lineStart + 8, lineEnd).trim());
                 Util.close(reader);
                 reader = null;
-                r2 = new BufferedReader(new InputStreamReader(new java.io.FileInputStream(files[0]), StandardCharsets.UTF_8));
+                r2 = new BufferedReader(new InputStreamReader(new java.io.FileInputStream(file), StandardCharsets.UTF_8));
                 for (int linecounter = 0;; linecounter++) {
                     s = r2.readLine();
                     if (s == null) break;
@@ -114,10 +166,50 @@ public class BlobParser extends AsyncTask<File, Float, Blob> {
         } finally {
             Util.close(reader);
         }
-        src.setLocked(false);
         return blob;
     }
 
+    /**
+     * Parses json data that is being downloaded right now.<br>
+     * The InputStream is not closed.
+     * @param ctx Context
+     * @param source Source
+     * @param in InputStream to read from
+     * @return Blob or {@code null} if the data could not be parsed
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @Nullable
+    @WorkerThread
+    public static Blob parseStream(@NonNull Context ctx, @NonNull Source source, @NonNull InputStream in) {
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            reader.setLenient(true);
+            return Blob.parseApi(ctx, source, reader);
+        } catch (Exception e) {
+            if (BuildConfig.DEBUG) Log.e(BlobParser.class.getSimpleName(), "While parsing " + source + " during download: " + e);
+        }
+        return null;
+    }
+
+    /**
+     * Makes a Blob that has been parsed via {@link #parseStream(Context, Source, InputStream)} available,
+     * so that a BlobParser will not have to parse the json file again.
+     * @param ctx Context
+     * @param blob Blob
+     * @param file json file that has been stored during the parsing
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @WorkerThread
+    public static void parsedWhileDownloading(@NonNull Context ctx, @NonNull Blob blob, @NonNull File file) {
+        if (ctx.getApplicationContext() instanceof App) {
+            App app = (App)ctx.getApplicationContext();
+            app.getBlobCache().put(ctx, blob, file);
+            app.getSearchIndex().add(blob);
+        }
+        final Source source = Source.getSourceFromFile(file);
+        if (source != null) BlobSnapshot.save(ctx, source, blob, file);
+    }
+
     /** {@inheritDoc} */
     @Override
     @MainThread
@@ -136,6 +228,12 @@ public class BlobParser extends AsyncTask<File, Float, Blob> {
             this.listener.blobParsed(blob, blob != null && this.thrown == null, this.thrown);
             this.listener = null;
         }
+        // the snapshot is written only now so that it does not delay the delivery
+        final Context ctx = this.refctx.get();
+        if (blob != null && this.thrown == null && this.toSnapshot != null && ctx != null) {
+            BlobSnapshot.save(ctx, blob.getSource(), blob, this.toSnapshot);
+        }
+        this.toSnapshot = null;
     }
 
     /** {@inheritDoc} */
@@ -145,6 +243,19 @@ public class BlobParser extends AsyncTask<File, Float, Blob> {
         this.listener.parsingProgressed(values[0]);
     }
 
+    /**
+     * Passes some News that have just been parsed to the {@link #listener}.
+     * @param batch List of News
+     */
+    @WorkerThread
+    private void publishNews(@NonNull final List<News> batch) {
+        if (isCancelled()) return;
+        this.handler.post(() -> {
+            // once onPostExecute() has been called, the listener is null
+            if (this.listener != null && !isCancelled()) this.listener.newsParsed(batch);
+        });
+    }
+
     /**
      * Implemented by classes that wish to convert json data into Blobs.
      */
@@ -159,6 +270,16 @@ public class BlobParser extends AsyncTask<File, Float, Blob> {
          */
         void blobParsed(@Nullable Blob blob, boolean ok, @Nullable Throwable oops);
 
+        /**
+         * Some News have been parsed while the parsing is still going on.<br>
+         * Called only if the BlobParser has been created with streaming enabled,
+         * and only if the data is actually parsed from json (not if it is loaded from a {@link BlobSnapshot}).<br>
+         * The News in the batch are not sorted; the complete data will be passed to {@link #blobParsed(Blob, boolean, Throwable)}.
+         * @param batch List of News
+         */
+        @MainThread
+        default void newsParsed(@NonNull List<News> batch) {}
+
         /**
          * The parsing progress has changed.
          * @param progress [0..1]
@@ -0,0 +1,380 @@
+package de.freehamburger.model;
+
+import android.content.Context;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+import de.freehamburger.BuildConfig;
+import de.freehamburger.util.Log;
+import de.freehamburger.util.Util;
+
+/**
+ * Stores a parsed {@link Blob} in a binary file next to the json file that it has been parsed from.<br>
+ * Loading such a snapshot is much faster than parsing the json data again.<br>
+ * <br>
+ * File layout:<ol>
+ * <li>{@link #MAGIC} (int)</li>
+ * <li>{@link #VERSION} (int)</li>
+ * <li>length of the json file (long)</li>
+ * <li>{@link Blob#getParseConfiguration(Context) parse configuration} (UTF)</li>
+ * <li>length of the payload (int)</li>
+ * <li>payload: newStoriesCountLink, news and regional news, each News written field by field (see {@link News#writeTo(DataOutput)})</li>
+ * <li>CRC32 of the payload (long)</li>
+ * </ol>
+ * Strings are written as their length in UTF-8 bytes (int, -1 for {@code null}) followed by the bytes,
+ * dates as their time in ms (long, {@link Long#MIN_VALUE} for {@code null}).<br>
+ * A snapshot is ignored if it is older than the json file, if it has been created for a json file of a different size,
+ * if it has been created with a different parse configuration or if its checksum does not match.<br>
+ * Snapshots are written on a background thread, so that the parsed data can be delivered without waiting for that.
+ */
+public final class BlobSnapshot {
+
+    /** suffix of snapshot files; a snapshot file name is the json file name plus this suffix */
+    static final String FILE_SUFFIX = ".snapshot";
+    /** "FHBS" */
+    private static final int MAGIC = 0x46484253;
+    private static final String TAG = "BlobSnapshot";
+    /** must be incremented whenever the file layout or the data written by the model classes change */
+    private static final int VERSION = 2;
+    /** snapshots larger than this are not loaded */
+    private static final int MAX_PAYLOAD = 16 << 20;
+    /** collections with more elements than this are considered corrupt */
+    private static final int MAX_COUNT = 65_536;
+    /** writes the snapshots */
+    private static final ThreadPoolExecutor WRITER = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    static {
+        WRITER.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Private constructor.
+     */
+    private BlobSnapshot() {
+    }
+
+    /**
+     * Returns the snapshot file that belongs to the given json file.
+     * @param jsonFile json file
+     * @return snapshot file (does not necessarily exist)
+     * @throws NullPointerException if {@code jsonFile} is {@code null}
+     */
+    @NonNull
+    static File getSnapshotFile(@NonNull File jsonFile) {
+        return new File(jsonFile.getParentFile(), jsonFile.getName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Attempts to load a Blob from the snapshot that belongs to the given json file.
+     * @param ctx Context
+     * @param source Source
+     * @param jsonFile json file
+     * @return Blob or {@code null} if there is no valid snapshot
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @Nullable
+    @WorkerThread
+    static Blob load(@NonNull Context ctx, @NonNull Source source, @NonNull File jsonFile) {
+        return load(Blob.getParseConfiguration(ctx), source, jsonFile);
+    }
+
+    /**
+     * Attempts to load a Blob from the snapshot that belongs to the given json file.
+     * @param parseConfiguration the current {@link Blob#getParseConfiguration(Context) parse configuration}
+     * @param source Source
+     * @param jsonFile json file
+     * @return Blob or {@code null} if there is no valid snapshot
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @Nullable
+    @WorkerThread
+    @VisibleForTesting
+    static Blob load(@NonNull String parseConfiguration, @NonNull Source source, @NonNull File jsonFile) {
+        final File snapshotFile = getSnapshotFile(jsonFile);
+        final long jsonLength = jsonFile.length();
+        if (jsonLength <= 0L || !snapshotFile.isFile() || snapshotFile.lastModified() < jsonFile.lastModified()) return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (in.readLong() != jsonLength) return null;
+            if (!parseConfiguration.equals(in.readUTF())) return null;
+            int payloadLength = in.readInt();
+            if (payloadLength <= 0 || payloadLength > MAX_PAYLOAD) return null;
+            final byte[] payload = new byte[payloadLength];
+            in.readFully(payload);
+            final CRC32 crc = new CRC32();
+            crc.update(payload, 0, payloadLength);
+            if (crc.getValue() != in.readLong()) {
+                if (BuildConfig.DEBUG) Log.w(TAG, "Checksum mismatch in " + snapshotFile);
+                Util.close(in);
+                in = null;
+                Util.deleteFile(snapshotFile);
+                return null;
+            }
+            Util.close(in);
+            in = null;
+            final DataInputStream pin = new DataInputStream(new ByteArrayInputStream(payload));
+            final String newStoriesCountLink = readString(pin);
+            final List<News> newsList = readNewsList(pin);
+            final List<News> regionalNewsList = readNewsList(pin);
+            return Blob.restore(source, newsList, regionalNewsList, newStoriesCountLink);
+        } catch (Exception e) {
+            // most likely, the model classes have changed since the snapshot had been written
+            if (BuildConfig.DEBUG) Log.w(TAG, "Failed to load " + snapshotFile + ": " + e);
+            Util.deleteFile(snapshotFile);
+        } finally {
+            Util.close(in);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the number of elements of a collection.
+     * @param in DataInput
+     * @return number of elements
+     * @throws IOException if an I/O error occurs or if the number is not plausible
+     */
+    @IntRange(from = 0, to = MAX_COUNT)
+    static int readCount(@NonNull DataInput in) throws IOException {
+        final int n = in.readInt();
+        if (n < 0 || n > MAX_COUNT) throw new IOException("Invalid count: " + n);
+        return n;
+    }
+
+    /**
+     * Reads a date that has been written via {@link #writeDate(DataOutput, Date)}.
+     * @param in DataInput
+     * @return Date or {@code null}
+     * @throws IOException if an I/O error occurs
+     */
+    @Nullable
+    static Date readDate(@NonNull DataInput in) throws IOException {
+        final long time = in.readLong();
+        return time != Long.MIN_VALUE ? new Date(time) : null;
+    }
+
+    /**
+     * Reads a list of News.
+     * @param in DataInput
+     * @return List of News
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    private static List<News> readNewsList(@NonNull DataInput in) throws IOException {
+        final int n = readCount(in);
+        final List<News> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) list.add(News.readFrom(in));
+        return list;
+    }
+
+    /**
+     * Reads a String that has been written via {@link #writeString(DataOutput, String)}.
+     * @param in DataInput
+     * @return String or {@code null}
+     * @throws IOException if an I/O error occurs
+     */
+    @Nullable
+    static String readString(@NonNull DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) return null;
+        if (length > MAX_PAYLOAD) throw new IOException("Invalid length: " + length);
+        final byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a String array that has been written via {@link #writeStringArray(DataOutput, String[])}.
+     * @param in DataInput
+     * @return String array or {@code null}
+     * @throws IOException if an I/O error occurs
+     */
+    @Nullable
+    static String[] readStringArray(@NonNull DataInput in) throws IOException {
+        final int n = in.readInt();
+        if (n < 0) return null;
+        if (n > MAX_COUNT) throw new IOException("Invalid count: " + n);
+        final String[] a = new String[n];
+        for (int i = 0; i < n; i++) a[i] = readString(in);
+        return a;
+    }
+
+    /**
+     * Reads Strings that have been written via {@link #writeStrings(DataOutput, Collection)}.
+     * @param in DataInput
+     * @param dest Collection to add the Strings to
+     * @throws IOException if an I/O error occurs
+     */
+    static void readStrings(@NonNull DataInput in, @NonNull Collection<String> dest) throws IOException {
+        final int n = readCount(in);
+        for (int i = 0; i < n; i++) dest.add(readString(in));
+    }
+
+    /**
+     * Writes a snapshot of the given Blob on a background thread.<br>
+     * Nothing is written if the json file has been modified in the meantime.
+     * @param ctx Context
+     * @param source the Source of the json file
+     * @param blob Blob to store
+     * @param jsonFile json file that the Blob has been parsed from
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @AnyThread
+    static void save(@NonNull Context ctx, @NonNull Source source, @NonNull Blob blob, @NonNull File jsonFile) {
+        // these must be determined now, because they describe the state that the Blob has been parsed from
+        final String parseConfiguration = Blob.getParseConfiguration(ctx);
+        final long jsonLength = jsonFile.length();
+        final long jsonLastModified = jsonFile.lastModified();
+        WRITER.execute(() -> {
+            // the json file must not be replaced while the snapshot is being written
+            final Lock readLock = source.getLock().readLock();
+            readLock.lock();
+            try {
+                if (jsonFile.length() != jsonLength || jsonFile.lastModified() != jsonLastModified) return;
+                write(parseConfiguration, blob, jsonFile);
+            } finally {
+                readLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot of the given Blob.
+     * @param parseConfiguration the {@link Blob#getParseConfiguration(Context) parse configuration} that applied when the Blob was parsed
+     * @param blob Blob to store
+     * @param jsonFile json file that the Blob has been parsed from
+     * @return {@code true} if the snapshot has been written successfully
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @WorkerThread
+    @VisibleForTesting
+    static boolean write(@NonNull String parseConfiguration, @NonNull Blob blob, @NonNull File jsonFile) {
+        final File snapshotFile = getSnapshotFile(jsonFile);
+        final File tmp = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream(65536);
+            final DataOutputStream pout = new DataOutputStream(baos);
+            writeString(pout, blob.getNewStoriesCountLink());
+            writeNewsList(pout, blob.getNewsList());
+            writeNewsList(pout, blob.getRegionalNewsList());
+            pout.close();
+            final byte[] payload = baos.toByteArray();
+            final CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(jsonFile.length());
+            out.writeUTF(parseConfiguration);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeLong(crc.getValue());
+            out.close();
+            out = null;
+            if (!tmp.renameTo(snapshotFile)) {
+                Util.deleteFile(tmp);
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            if (BuildConfig.DEBUG) Log.e(TAG, "Failed to write " + snapshotFile + ": " + e);
+            Util.close(out);
+            Util.deleteFile(tmp);
+        }
+        return false;
+    }
+
+    /**
+     * Writes a date.
+     * @param out DataOutput
+     * @param date Date (optional)
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeDate(@NonNull DataOutput out, @Nullable Date date) throws IOException {
+        out.writeLong(date != null ? date.getTime() : Long.MIN_VALUE);
+    }
+
+    /**
+     * Writes a list of News.
+     * @param out DataOutput
+     * @param list List of News
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeNewsList(@NonNull DataOutput out, @NonNull List<News> list) throws IOException {
+        out.writeInt(list.size());
+        for (News news : list) news.writeTo(out);
+    }
+
+    /**
+     * Writes a String.<br>
+     * Unlike {@link DataOutput#writeUTF(String)}, this is not limited to 65535 bytes.
+     * @param out DataOutput
+     * @param s String (optional)
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeString(@NonNull DataOutput out, @Nullable String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * Writes a String array.
+     * @param out DataOutput
+     * @param a String array (optional)
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeStringArray(@NonNull DataOutput out, @Nullable String[] a) throws IOException {
+        if (a == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(a.length);
+        for (String s : a) writeString(out, s);
+    }
+
+    /**
+     * Writes Strings.
+     * @param out DataOutput
+     * @param c Collection of Strings
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeStrings(@NonNull DataOutput out, @NonNull Collection<String> c) throws IOException {
+        out.writeInt(c.size());
+        for (String s : c) writeString(out, s);
+    }
+}
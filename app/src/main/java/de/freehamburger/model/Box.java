@@ -7,6 +7,8 @@ import android.util.JsonToken;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.regex.Matcher;
@@ -122,6 +124,37 @@ public class Box implements Serializable {
         return returnNull ? null : box;
     }
 
+    /**
+     * Reads a Box from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return Box
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static Box readFrom(@NonNull DataInput in) throws IOException {
+        final Box box = new Box();
+        if (in.readBoolean()) box.image = Image.readFrom(in);
+        box.title = BlobSnapshot.readString(in);
+        box.subtitle = BlobSnapshot.readString(in);
+        box.text = BlobSnapshot.readString(in);
+        box.link = BlobSnapshot.readString(in);
+        return box;
+    }
+
+    /**
+     * Writes this Box to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeBoolean(this.image != null);
+        if (this.image != null) this.image.writeTo(out);
+        BlobSnapshot.writeString(out, this.title);
+        BlobSnapshot.writeString(out, this.subtitle);
+        BlobSnapshot.writeString(out, this.text);
+        BlobSnapshot.writeString(out, this.link);
+    }
+
     @Nullable
     public Image getImage() {
         return image;
@@ -195,6 +228,34 @@ public class Box implements Serializable {
             return image;
         }
 
+        /**
+         * Reads an Image from a {@link BlobSnapshot}.
+         * @param in DataInput
+         * @return Image
+         * @throws IOException if an I/O error occurs
+         */
+        @NonNull
+        static Image readFrom(@NonNull DataInput in) throws IOException {
+            final Image image = new Image();
+            image.title = BlobSnapshot.readString(in);
+            image.alttext = BlobSnapshot.readString(in);
+            image.copyright = BlobSnapshot.readString(in);
+            image.url = BlobSnapshot.readString(in);
+            return image;
+        }
+
+        /**
+         * Writes this Image to a {@link BlobSnapshot}.
+         * @param out DataOutput
+         * @throws IOException if an I/O error occurs
+         */
+        void writeTo(@NonNull DataOutput out) throws IOException {
+            BlobSnapshot.writeString(out, this.title);
+            BlobSnapshot.writeString(out, this.alttext);
+            BlobSnapshot.writeString(out, this.copyright);
+            BlobSnapshot.writeString(out, this.url);
+        }
+
         /**
          * Parses the "imageVariants" block.<br>
          * Consists of a list of urls with its keys having the format "&lt;imageformat&gt;-&lt;width&gt;".
@@ -9,6 +9,7 @@ import android.util.JsonReader;
 import android.util.JsonToken;
 import android.util.MalformedJsonException;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -16,7 +17,10 @@ import androidx.annotation.Size;
 import androidx.annotation.StringDef;
 import androidx.annotation.VisibleForTesting;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -24,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import de.freehamburger.App;
 import de.freehamburger.BuildConfig;
@@ -108,10 +113,20 @@ public class Content implements Serializable {
     @NonNull private final List<Video> videoList = new ArrayList<>();
     @NonNull private final List<Audio> audioList = new ArrayList<>();
     @NonNull private final List<Related> relatedList = new ArrayList<>();
-    /** the HTML text */
-    String text;
-    /** the plain text */
-    String plainText;
+    /** the colors that applied when this Content was parsed */
+    private final String colorBoxAtParse = colorBox;
+    private final String colorHtmlEmbedAtParse = colorHtmlEmbed;
+    private final String colorQuotationAtParse = colorQuotation;
+    /** the HTML text - built on first access (see {@link #materialize()}) */
+    @GuardedBy("this") private String text;
+    /** the plain text - built on first access (see {@link #materialize()}) */
+    @GuardedBy("this") private String plainText;
+    /** {@code true} once {@link #text} and {@link #plainText} have been built */
+    @GuardedBy("this") private boolean materialized;
+    /** {@code true} if {@link #fixQuotationMarks()} has been called before {@link #materialize()} */
+    @GuardedBy("this") private boolean quotationMarksToFix;
+    /** replacements requested via {@link #replace(String[], String[])} before {@link #materialize()} */
+    @GuardedBy("this") @Nullable private String[] toReplace, replaceWith;
 
     /**
      * Parses the given JsonReader to retrieve a Content element.
@@ -161,40 +176,266 @@ public class Content implements Serializable {
             }
         }
         reader.endArray();
+        // the html and plain texts are built only when needed (see materialize())
+        content.collectMedia();
+        return content;
+    }
+
+    /**
+     * Reads a Content from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return Content
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static Content readFrom(@NonNull DataInput in) throws IOException {
+        final Content content = new Content();
+        final int n = BlobSnapshot.readCount(in);
+        for (int i = 0; i < n; i++) content.elementList.add(ContentElement.readFrom(in));
+        content.collectMedia();
+        synchronized (content) {
+            content.materialized = in.readBoolean();
+            if (content.materialized) {
+                content.text = BlobSnapshot.readString(in);
+                content.plainText = BlobSnapshot.readString(in);
+            } else {
+                content.quotationMarksToFix = in.readBoolean();
+                content.toReplace = BlobSnapshot.readStringArray(in);
+                content.replaceWith = BlobSnapshot.readStringArray(in);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Fills the {@link #relatedList}, the {@link #videoList} and the {@link #audioList} from the {@link #elementList}.
+     */
+    private void collectMedia() {
+        for (ContentElement ce : this.elementList) {
+            final String type = ce.getType();
+            if (ContentElement.TYPE_RELATED.equals(type)) {
+                Related[] relatedArray = ce.getRelated();
+                if (relatedArray != null && relatedArray.length > 0) {
+                    this.relatedList.addAll(Arrays.asList(relatedArray));
+                }
+            } else if (ContentElement.TYPE_VIDEO.equals(type)) {
+                Video video = ce.getVideo();
+                if (video != null) this.videoList.add(video);
+            } else if (ContentElement.TYPE_AUDIO.equals(type)) {
+                String stream = ce.getStream();
+                if (!TextUtils.isEmpty(stream)) this.audioList.add(new Audio(ce.getTitle(), stream, ce.getDateString()));
+            }
+        }
+    }
+
+    /**
+     * Concatenates two String arrays.
+     * @param a first array
+     * @param b second array
+     * @return new array
+     */
+    @NonNull
+    private static String[] concat(@NonNull String[] a, @NonNull String[] b) {
+        final String[] c = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return c;
+    }
+
+    static void setColorBox(@NonNull String color) {
+        colorBox = color;
+    }
+
+    static void setColorBoxBackground(@NonNull String color) { colorBoxBackground = color; }
+
+    static void setColorHtmlEmbed(@NonNull String color) {
+        colorHtmlEmbed = color;
+    }
+
+    static void setColorQuotation(@NonNull String color) {
+        colorQuotation = color;
+    }
+
+    /**
+     * Fixes wrong (" ") quotation marks in {@link #text} and {@link #plainText}.
+     */
+    synchronized void fixQuotationMarks() {
+        if (!this.materialized) {
+            this.quotationMarksToFix = true;
+            return;
+        }
+        this.text = Util.fixQuotationMarks(this.text).toString();
+        this.plainText = Util.fixQuotationMarks(this.plainText).toString();
+    }
+
+    /**
+     * @return List of Audio elements contained in the Content element.
+     */
+    @NonNull
+    public List<Audio> getAudioList() {
+        return audioList;
+    }
+
+    @NonNull
+    @VisibleForTesting()
+    public List<ContentElement> getElementList() {
+        return elementList;
+    }
+
+    /**
+     * @return HTML text
+     */
+    public synchronized String getHtmlText() {
+        materialize();
+        return this.text;
+    }
+
+    /**
+     * @return plain text
+     */
+    public synchronized String getPlainText() {
+        materialize();
+        return this.plainText;
+    }
+
+    @NonNull
+    public List<Related> getRelatedList() {
+        return relatedList;
+    }
+
+    /**
+     * @return List of Video elements contained in the Content element.
+     */
+    @NonNull
+    public List<Video> getVideoList() {
+        return videoList;
+    }
+
+    /**
+     * @return {@code true} if the audio list is not empty
+     */
+    public boolean hasAudio() {
+        return !audioList.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if the video list is not empty
+     */
+    public boolean hasVideo() {
+        return !videoList.isEmpty();
+    }
+
+    /**
+     * Appends the plain text version of the given html to the given StringBuilder.
+     * @param plainTextBuilder StringBuilder to append to
+     * @param html html as returned by {@link #prepareHtml(ContentElement)}
+     */
+    private static void appendPlainText(@NonNull StringBuilder plainTextBuilder, @NonNull StringBuilder html) {
+        Spanned spannedPlainText = Util.fromHtml(null, Util.removeLinks(html).toString(), null);
+        plainTextBuilder.append(spannedPlainText).append('\n');
+    }
+
+    /**
+     * Pre-processes the value of a {@link ContentElement#TYPE_TEXT text} or {@link ContentElement#TYPE_WEBVIEW webview} element.
+     * @param ce ContentElement
+     * @return html or {@code null}
+     */
+    @Nullable
+    private static StringBuilder prepareHtml(@NonNull ContentElement ce) {
+        if (ContentElement.TYPE_TEXT.equals(ce.getType())) {
+            String value = ce.getValue();
+            if (value == null) return null;
+            // the value has to be pre-processed because Html.fromHtml() which is used in NewsActivity.applyNews() is not perfect…
+            CharSequence cs = Util.replaceAll(value, TEXT_REPLACEMENTS_FROM, TEXT_REPLACEMENTS_TO);
+            return Util.removeHtmlLists(cs);
+        }
+        String html = ce.getValue();
+        if (html == null) return null;
+        // remove <style>…</style>
+        int style0 = html.indexOf("<style");
+        int style1 = html.indexOf("</style>", style0 + 7);
+        if (style0 >= 0 && style1 > style0) {
+            html = html.substring(0, style0) + html.substring(style1 + 8);
+        }
+        // replace <table>…</table> with <tbl></tbl>…
+        html = Util.replaceHtmlTable(html).toString();
+        // the rest has been copied from TYPE_TEXT handling above
+        CharSequence cs = Util.replaceAll(html, new CharSequence[]{"<br />", "\t", "\r\n\r\n", "&nbsp;"}, new CharSequence[]{"\n", " ", "\n", " "});
+        return Util.removeHtmlLists(cs);
+    }
+
+    /**
+     * Turns the contents of the given StringBuilder into the final plain text.
+     * @param plainTextBuilder StringBuilder
+     * @return plain text
+     */
+    @NonNull
+    @GuardedBy("this")
+    private String finishPlainText(@NonNull StringBuilder plainTextBuilder) {
+        String pt = News.eliminateOddWhitespaceNonNull(plainTextBuilder);
+        while (pt.endsWith("\n")) {
+            pt = pt.substring(0, pt.length() - 1);
+        }
+        if (this.quotationMarksToFix) {
+            pt = Util.fixQuotationMarks(pt).toString();
+        }
+        return pt;
+    }
+
+    /**
+     * Returns the plain text without keeping it.<br>
+     * If the Content has been {@link #materialize() materialized} before, the plain text is simply returned.
+     * Otherwise, only the plain text is built, and it is not stored,
+     * so that filters, searches and search suggestions, which look at each Content once, do not keep the texts of articles that are never opened.
+     * @return plain text
+     */
+    @NonNull
+    public synchronized String getPlainTextWithoutKeeping() {
+        if (this.materialized) return this.plainText;
+        final StringBuilder plainTextBuilder = new StringBuilder(768);
+        for (ContentElement ce : this.elementList) {
+            final String type = ce.getType();
+            if (ContentElement.TYPE_TEXT.equals(type) || ContentElement.TYPE_WEBVIEW.equals(type)) {
+                StringBuilder sb = prepareHtml(ce);
+                if (sb != null) appendPlainText(plainTextBuilder, sb);
+            } else if (ContentElement.TYPE_QUOTATION.equals(type)) {
+                String value = ce.getValue();
+                if (value != null) plainTextBuilder.append(value);
+            }
+        }
+        return finishPlainText(plainTextBuilder);
+    }
+
+    /**
+     * Returns a hash over the raw values of the {@link #elementList content elements}.<br>
+     * Unlike a hash over the {@link #getPlainText() plain text}, this does not require the texts to be built.
+     * @return hash code
+     */
+    public synchronized int getElementHash() {
+        int hash = 1;
+        for (ContentElement ce : this.elementList) {
+            hash = 31 * hash + Objects.hash(ce.getType(), ce.getValue());
+        }
+        return hash;
+    }
+
+    /**
+     * Builds the {@link #text html text} and the {@link #plainText plain text} from the {@link #elementList content elements}.<br>
+     * Does nothing if that has been done before.
+     */
+    private synchronized void materialize() {
+        if (this.materialized) return;
         // build the text from the relevant content elements, textBuilder will usually end up with a 4-digit length, few are less, some are beyond 20K chars
         final StringBuilder htmlTextBuilder = new StringBuilder(2048);
         final StringBuilder plainTextBuilder = new StringBuilder(768);
-        for (ContentElement ce : content.elementList) {
+        for (ContentElement ce : this.elementList) {
             final String type = ce.getType();
-            if (ContentElement.TYPE_TEXT.equals(type)) {
-                String value = ce.getValue();
-                if (value != null) {
-                    // the value has to be pre-processed because Html.fromHtml() which is used in NewsActivity.applyNews() is not perfect…
-                    CharSequence cs = Util.replaceAll(value, TEXT_REPLACEMENTS_FROM, TEXT_REPLACEMENTS_TO);
-                    StringBuilder sb = Util.removeHtmlLists(cs);
+            if (ContentElement.TYPE_TEXT.equals(type) || ContentElement.TYPE_WEBVIEW.equals(type)) {
+                StringBuilder sb = prepareHtml(ce);
+                if (sb != null) {
                     // create html text
                     htmlTextBuilder.append(sb).append("<br><br>");
                     // create plain text
-                    Spanned spannedPlainText = Util.fromHtml(null, Util.removeLinks(sb).toString(), null);
-                    plainTextBuilder.append(spannedPlainText).append('\n');
-                }
-            } else if (ContentElement.TYPE_WEBVIEW.equals(type)) {
-                String html = ce.getValue();
-                if (html != null) {
-                    // remove <style>…</style>
-                    int style0 = html.indexOf("<style");
-                    int style1 = html.indexOf("</style>", style0 + 7);
-                    if (style0 >= 0 && style1 > style0) {
-                        html = html.substring(0, style0) + html.substring(style1 + 8);
-                    }
-                    // replace <table>…</table> with <tbl></tbl>…
-                    html = Util.replaceHtmlTable(html).toString();
-                    // the rest has been copied from TYPE_TEXT handling above or below
-                    CharSequence cs = Util.replaceAll(html, new CharSequence[]{"<br />", "\t", "\r\n\r\n", "&nbsp;"}, new CharSequence[]{"\n", " ", "\n", " "});
-                    StringBuilder sb = Util.removeHtmlLists(cs);
-                    htmlTextBuilder.append(sb).append("<br><br>");
-                    Spanned spannedPlainText = Util.fromHtml(null, Util.removeLinks(sb).toString(), null);
-                    plainTextBuilder.append(spannedPlainText).append('\n');
+                    appendPlainText(plainTextBuilder, sb);
                 }
             } else if (ContentElement.TYPE_HEADLINE.equals(type)) {
                 String value = ce.getValue();
@@ -208,7 +449,7 @@ public class Content implements Serializable {
             } else if (ContentElement.TYPE_QUOTATION.equals(type)) {
                 String value = ce.getValue();
                 if (value != null) {
-                    htmlTextBuilder.append("<i><blockquote><font color=\"").append(colorQuotation).append("\">❠&nbsp;&nbsp;").append(value).append("</font></blockquote></i><br><br>");
+                    htmlTextBuilder.append("<i><blockquote><font color=\"").append(this.colorQuotationAtParse).append("\">❠&nbsp;&nbsp;").append(value).append("</font></blockquote></i><br><br>");
                     plainTextBuilder.append(value);
                 }
             } else if (ContentElement.TYPE_LIST.equals(type)) {
@@ -233,9 +474,9 @@ public class Content implements Serializable {
                     try {label = Uri.parse(htmlEmbed.getUrl()).getHost(); } catch (Exception ignored) {}
                     if (TextUtils.isEmpty(label)) label = htmlEmbed.getService();
                     if (!TextUtils.isEmpty(label)) {
-                        // the 🔗 symbol will be replaced later in Blob.parseApi()
+                        // the 🔗 symbol will be replaced later (see Blob.NewsPostProcessor)
                         // the <xsm></xsm> tag will be resolved in Util.fromHtml()
-                        htmlTextBuilder.append("<p style=\"background-color:").append(colorHtmlEmbed).append("\">")
+                        htmlTextBuilder.append("<p style=\"background-color:").append(this.colorHtmlEmbedAtParse).append("\">")
                                 .append("<a href=\"")
                                 .append(htmlEmbed.getUrl())
                                 .append("\">↗&nbsp;")
@@ -264,7 +505,7 @@ public class Content implements Serializable {
                     if (!TextUtils.isEmpty(boxTitle)) {
                         htmlTextBuilder.append("<").append(TAG_BOX).append(">");
                         // box title (apparently, a <h6> causes the background color to not being applied because in Html.setSpanFromMark() 'where' equals 'len'…)
-                        htmlTextBuilder.append("<br><font color=\"").append(colorBox).append("\">").append(boxTitle).append("</font>");
+                        htmlTextBuilder.append("<br><font color=\"").append(this.colorBoxAtParse).append("\">").append(boxTitle).append("</font>");
                         htmlTextBuilder.append("</").append(TAG_BOX).append("><br>");
                         brAppended = true;
                     }
@@ -276,7 +517,7 @@ public class Content implements Serializable {
                         // box text (display only if there is an image because the box text usually serves as kind of image content description)
                         if (!TextUtils.isEmpty(boxText)) {
                             htmlTextBuilder.append("<").append(TAG_BOX).append(">");
-                            htmlTextBuilder.append("<font color=\"").append(colorBox).append("\"><").append(TAG_BOX_TEXT).append('>').append(boxText);
+                            htmlTextBuilder.append("<font color=\"").append(this.colorBoxAtParse).append("\"><").append(TAG_BOX_TEXT).append('>').append(boxText);
                             String imageCopyright = boxImage.getCopyright();
                             if (!TextUtils.isEmpty(imageCopyright)) htmlTextBuilder.append(" (&copy; ").append(imageCopyright).append(")");
                             // appending a <br> directly after boxText and before TAG_BOX_TEXT avoids a strange vertical gap before the last line
@@ -285,7 +526,7 @@ public class Content implements Serializable {
                     }
                     if (!TextUtils.isEmpty(boxLink)) {
                         htmlTextBuilder.append("<").append(TAG_BOX).append(">");
-                        htmlTextBuilder.append("<font color=\"").append(colorBox).append("\"><").append(TAG_BOX_LINK).append('>')
+                        htmlTextBuilder.append("<font color=\"").append(this.colorBoxAtParse).append("\"><").append(TAG_BOX_LINK).append('>')
                         // e.g.: "link": "<a href=\"https://www.server.nl/api7/buitenland/guldenvlies.json\" type=\"intern\">meer</a>",
                         .append(boxLink).append("</").append(TAG_BOX_LINK).append("></font><br>");
                         htmlTextBuilder.append("</").append(TAG_BOX).append(">");
@@ -330,103 +571,25 @@ public class Content implements Serializable {
                         }
                     }
                 }
-            } else if (ContentElement.TYPE_RELATED.equals(type)) {
-                Related[] relatedArray = ce.getRelated();
-                if (relatedArray != null && relatedArray.length > 0) {
-                    content.relatedList.addAll(Arrays.asList(relatedArray));
-                }
-            } else if (ContentElement.TYPE_VIDEO.equals(type)) {
-                Video video = ce.getVideo();
-                if (video != null) content.videoList.add(video);
-            } else if (ContentElement.TYPE_AUDIO.equals(type)) {
-                String stream = ce.getStream();
-                if (!TextUtils.isEmpty(stream)) content.audioList.add(new Audio(ce.getTitle(), stream, ce.getDateString()));
             }
         }
-        content.text = htmlTextBuilder.toString();
-        content.plainText = News.eliminateOddWhitespaceNonNull(plainTextBuilder);
+        this.text = htmlTextBuilder.toString();
+        this.plainText = finishPlainText(plainTextBuilder);
         // cut off trailing <br> elements
-        while (content.text.endsWith(HTML_BR)) {
-            content.text = content.text.substring(0, content.text.length() - HTML_BR.length());
+        while (this.text.endsWith(HTML_BR)) {
+            this.text = this.text.substring(0, this.text.length() - HTML_BR.length());
         }
-        while (content.plainText.endsWith("\n")) {
-            content.plainText = content.plainText.substring(0, content.plainText.length() - 1);
+        if (this.quotationMarksToFix) {
+            this.text = Util.fixQuotationMarks(this.text).toString();
         }
-        return content;
-    }
-
-    static void setColorBox(@NonNull String color) {
-        colorBox = color;
-    }
-
-    static void setColorBoxBackground(@NonNull String color) { colorBoxBackground = color; }
-
-    static void setColorHtmlEmbed(@NonNull String color) {
-        colorHtmlEmbed = color;
-    }
-
-    static void setColorQuotation(@NonNull String color) {
-        colorQuotation = color;
-    }
-
-    /**
-     * Fixes wrong (" ") quotation marks in {@link #text} and {@link #plainText}.
-     */
-    void fixQuotationMarks() {
-        this.text = Util.fixQuotationMarks(this.text).toString();
-        this.plainText = Util.fixQuotationMarks(this.plainText).toString();
-    }
-
-    /**
-     * @return List of Audio elements contained in the Content element.
-     */
-    @NonNull
-    public List<Audio> getAudioList() {
-        return audioList;
-    }
-
-    @NonNull
-    @VisibleForTesting()
-    public List<ContentElement> getElementList() {
-        return elementList;
-    }
-
-    /**
-     * @return HTML text
-     */
-    public String getHtmlText() {
-        return text;
-    }
-
-    public String getPlainText() {
-        return plainText;
-    }
-
-    @NonNull
-    public List<Related> getRelatedList() {
-        return relatedList;
-    }
-
-    /**
-     * @return List of Video elements contained in the Content element.
-     */
-    @NonNull
-    public List<Video> getVideoList() {
-        return videoList;
-    }
-
-    /**
-     * @return {@code true} if the audio list is not empty
-     */
-    public boolean hasAudio() {
-        return !audioList.isEmpty();
-    }
-
-    /**
-     * @return {@code true} if the video list is not empty
-     */
-    public boolean hasVideo() {
-        return !videoList.isEmpty();
+        if (this.toReplace != null && this.replaceWith != null) {
+            for (int i = 0; i < this.toReplace.length; i++) {
+                if (this.toReplace[i] == null || this.replaceWith[i] == null) continue;
+                this.text = this.text.replace(this.toReplace[i], this.replaceWith[i]);
+            }
+        }
+        this.materialized = true;
+        this.toReplace = this.replaceWith = null;
     }
 
     /**
@@ -434,20 +597,62 @@ public class Content implements Serializable {
      * @param what to replace
      * @param with replacements
      */
-    public void replace(final String[] what, final String[] with) {
-        if (this.text == null || what == null || with == null) return;
+    public synchronized void replace(final String[] what, final String[] with) {
+        if (what == null || with == null) return;
         final int n = what.length;
         if (with.length != n) return;
+        if (!this.materialized) {
+            // will be applied in materialize()
+            if (this.toReplace == null) {
+                this.toReplace = what;
+                this.replaceWith = with;
+            } else {
+                this.toReplace = concat(this.toReplace, what);
+                this.replaceWith = concat(this.replaceWith, with);
+            }
+            return;
+        }
+        if (this.text == null) return;
         for (int i = 0; i < n; i++) {
             if (what[i] == null || with[i] == null) continue;
             this.text = this.text.replace(what[i], with[i]);
         }
     }
 
+    /**
+     * Writes this Content to a {@link BlobSnapshot} while no other thread can {@link #materialize() materialize} it.<br>
+     * The texts are written only if they have been built already.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeInt(this.elementList.size());
+        for (ContentElement ce : this.elementList) ce.writeTo(out);
+        out.writeBoolean(this.materialized);
+        if (this.materialized) {
+            BlobSnapshot.writeString(out, this.text);
+            BlobSnapshot.writeString(out, this.plainText);
+        } else {
+            out.writeBoolean(this.quotationMarksToFix);
+            BlobSnapshot.writeStringArray(out, this.toReplace);
+            BlobSnapshot.writeStringArray(out, this.replaceWith);
+        }
+    }
+
+    /**
+     * Serializes this Content while no other thread can {@link #materialize() materialize} it.
+     * @param out ObjectOutputStream
+     * @throws IOException if an I/O error occurs
+     */
+    private synchronized void writeObject(@NonNull ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
     /** {@inheritDoc} */
     @Override
     @NonNull
     public String toString() {
+        String text = getHtmlText();
         return text != null ? text : "<no content>";
     }
 
@@ -562,6 +767,62 @@ public class Content implements Serializable {
             return ce;
         }
 
+        /**
+         * Reads a ContentElement from a {@link BlobSnapshot}.
+         * @param in DataInput
+         * @return ContentElement
+         * @throws IOException if an I/O error occurs
+         */
+        @NonNull
+        static ContentElement readFrom(@NonNull DataInput in) throws IOException {
+            final ContentElement ce = new ContentElement();
+            ce.order = in.readInt();
+            ce.title = BlobSnapshot.readString(in);
+            ce.type = BlobSnapshot.readString(in);
+            ce.value = BlobSnapshot.readString(in);
+            ce.dateString = BlobSnapshot.readString(in);
+            ce.stream = BlobSnapshot.readString(in);
+            if (in.readBoolean()) ce.video = Video.readFrom(in);
+            if (in.readBoolean()) ce.gallery = Gallery.readFrom(in);
+            if (in.readBoolean()) ce.box = Box.readFrom(in);
+            if (in.readBoolean()) ce.list = Lyst.readFrom(in);
+            final int n = in.readInt();
+            if (n >= 0) {
+                ce.related = new Related[n];
+                for (int i = 0; i < n; i++) ce.related[i] = Related.readFrom(in);
+            }
+            if (in.readBoolean()) ce.htmlEmbed = HtmlEmbed.readFrom(in);
+            return ce;
+        }
+
+        /**
+         * Writes this ContentElement to a {@link BlobSnapshot}.
+         * @param out DataOutput
+         * @throws IOException if an I/O error occurs
+         */
+        void writeTo(@NonNull DataOutput out) throws IOException {
+            out.writeInt(this.order);
+            BlobSnapshot.writeString(out, this.title);
+            BlobSnapshot.writeString(out, this.type);
+            BlobSnapshot.writeString(out, this.value);
+            BlobSnapshot.writeString(out, this.dateString);
+            BlobSnapshot.writeString(out, this.stream);
+            out.writeBoolean(this.video != null);
+            if (this.video != null) this.video.writeTo(out);
+            out.writeBoolean(this.gallery != null);
+            if (this.gallery != null) this.gallery.writeTo(out);
+            out.writeBoolean(this.box != null);
+            if (this.box != null) this.box.writeTo(out);
+            out.writeBoolean(this.list != null);
+            if (this.list != null) this.list.writeTo(out);
+            out.writeInt(this.related != null ? this.related.length : -1);
+            if (this.related != null) {
+                for (Related r : this.related) r.writeTo(out);
+            }
+            out.writeBoolean(this.htmlEmbed != null);
+            if (this.htmlEmbed != null) this.htmlEmbed.writeTo(out);
+        }
+
         /** {@inheritDoc} */
         @Override
         public int compareTo(@NonNull ContentElement o) {
@@ -0,0 +1,503 @@
+package de.freehamburger.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import de.freehamburger.FilterActivity;
+
+/**
+ * A Filter that hides News matching a boolean expression.<br>
+ * Expressions start with {@link FilterActivity#C_EXPRESSION =} and are made of
+ * <ul>
+ * <li>terms: a word, a "quoted phrase" or a /regular expression/,
+ * optionally preceded by a field name and a colon (<tt>title:</tt>, <tt>tags:</tt>, <tt>ressort:</tt> or <tt>region:</tt>);
+ * terms without a field name apply to the whole {@link News#getSearchText(boolean) search text}</li>
+ * <li>the operators <tt>NOT</tt> (or <tt>!</tt>), <tt>AND</tt> (or <tt>&amp;</tt>, or nothing at all) and <tt>OR</tt> (or <tt>|</tt>), in descending order of precedence;
+ * the operators are recognized regardless of case, so the words "and", "or" and "not" must be quoted to be looked for</li>
+ * <li>parentheses</li>
+ * </ul>
+ * Example: <tt>=ressort:sport AND NOT (tags:fußball OR title:"champions league")</tt><br>
+ * Words and phrases are compared ignoring case, regular expressions are applied case-insensitively.<br>
+ * The expression is parsed only once into a tree of matchers; instances are immutable and therefore thread-safe.
+ */
+public final class ExpressionFilter implements Filter {
+
+    private static final String KEYWORD_AND = "AND";
+    private static final String KEYWORD_OR = "OR";
+    private static final String KEYWORD_NOT = "NOT";
+
+    /** the expression as entered by the user */
+    @NonNull private final String expression;
+    /** the root of the matcher tree */
+    @NonNull private final Node root;
+
+    /**
+     * Constructor.
+     * @param expression the expression
+     * @param root the root of the matcher tree
+     */
+    private ExpressionFilter(@NonNull String expression, @NonNull Node root) {
+        super();
+        this.expression = expression;
+        this.root = root;
+    }
+
+    /**
+     * Parses the given expression.
+     * @param expression expression starting with {@link FilterActivity#C_EXPRESSION}
+     * @return ExpressionFilter
+     * @throws ParseException if the expression is not valid
+     * @throws NullPointerException if {@code expression} is {@code null}
+     */
+    @NonNull
+    public static ExpressionFilter compile(@NonNull final CharSequence expression) throws ParseException {
+        if (!isExpression(expression)) throw new ParseException("Not an expression", 0);
+        final Parser parser = new Parser(expression);
+        final Node root = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.pos < expression.length()) throw new ParseException("Unexpected '" + expression.charAt(parser.pos) + "'", parser.pos);
+        return new ExpressionFilter(expression.toString(), root);
+    }
+
+    /**
+     * Determines whether the given filter phrase should be treated as an expression.
+     * @param phrase filter phrase
+     * @return {@code true} if the phrase starts with {@link FilterActivity#C_EXPRESSION} and contains something else
+     */
+    public static boolean isExpression(@Nullable final CharSequence phrase) {
+        return phrase != null && phrase.length() > 1 && phrase.charAt(0) == FilterActivity.C_EXPRESSION;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean accept(@Nullable final News news) {
+        if (news == null) return false;
+        // see TextFilter.internalAccept()
+        if (News.NEWS_TYPE_VIDEO.equals(news.getType())) return true;
+        return !this.root.matches(news);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int compareTo(@NonNull Filter o) {
+        return getText().toString().compareTo(o.getText().toString());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExpressionFilter)) return false;
+        return this.expression.equals(((ExpressionFilter)o).expression);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CharSequence getText() {
+        return this.expression;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return this.expression.hashCode();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isEditable() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isTemporary() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @NonNull
+    public String toString() {
+        return "ExpressionFilter \"" + this.expression + "\" -> " + this.root;
+    }
+
+    /**
+     * The parts of a News that a term can be restricted to.
+     */
+    private enum Field {
+        /** the whole {@link News#getSearchText(boolean) search text} */
+        TEXT,
+        /** {@link News#getTopline() top line} and {@link News#getTitle() title} */
+        TITLE,
+        /** {@link News#getTags() tags} */
+        TAGS,
+        /** {@link News#getRessort() ressort} */
+        RESSORT,
+        /** {@link News#getRegions() regions} and {@link News#getGeotags() geo tags} */
+        REGION
+    }
+
+    /**
+     * A node of the matcher tree.
+     */
+    private interface Node {
+
+        /**
+         * @param news News
+         * @return {@code true} if the News matches this node
+         */
+        boolean matches(@NonNull News news);
+    }
+
+    /**
+     * Matches if both children match.
+     */
+    private static final class And implements Node {
+        @NonNull private final Node left, right;
+
+        private And(@NonNull Node left, @NonNull Node right) {
+            super();
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean matches(@NonNull News news) {
+            return this.left.matches(news) && this.right.matches(news);
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return "(" + this.left + " AND " + this.right + ")";
+        }
+    }
+
+    /**
+     * Matches if the child does not match.
+     */
+    private static final class Not implements Node {
+        @NonNull private final Node child;
+
+        private Not(@NonNull Node child) {
+            super();
+            this.child = child;
+        }
+
+        @Override
+        public boolean matches(@NonNull News news) {
+            return !this.child.matches(news);
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return "NOT " + this.child;
+        }
+    }
+
+    /**
+     * Matches if at least one of the children matches.
+     */
+    private static final class Or implements Node {
+        @NonNull private final Node left, right;
+
+        private Or(@NonNull Node left, @NonNull Node right) {
+            super();
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean matches(@NonNull News news) {
+            return this.left.matches(news) || this.right.matches(news);
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return "(" + this.left + " OR " + this.right + ")";
+        }
+    }
+
+    /**
+     * Matches if a word, a phrase or a regular expression is found in a {@link Field}.
+     */
+    private static final class Term implements Node {
+        @NonNull private final Field field;
+        /** the text to look for in lower case; {@code null} if {@link #pattern} is set */
+        @Nullable private final String needle;
+        /** the regular expression to look for; {@code null} if {@link #needle} is set */
+        @Nullable private final Pattern pattern;
+
+        private Term(@NonNull Field field, @Nullable String needle, @Nullable Pattern pattern) {
+            super();
+            this.field = field;
+            this.needle = needle;
+            this.pattern = pattern;
+        }
+
+        /**
+         * @param s String
+         * @return String in lower case or {@code null}
+         */
+        @Nullable
+        private static String lower(@Nullable String s) {
+            return s != null ? s.toLowerCase(Locale.GERMAN) : null;
+        }
+
+        @Override
+        public boolean matches(@NonNull News news) {
+            switch (this.field) {
+                case TITLE:
+                    return test(lower(news.getTopline())) || test(lower(news.getTitle()));
+                case TAGS:
+                    for (String tag : news.getTags()) {
+                        if (test(lower(tag))) return true;
+                    }
+                    return false;
+                case RESSORT:
+                    return test(lower(news.getRessort()));
+                case REGION:
+                    for (Region region : news.getRegions()) {
+                        if (test(lower(region.toString()))) return true;
+                    }
+                    for (String geotag : news.getGeotags()) {
+                        if (test(lower(geotag))) return true;
+                    }
+                    return false;
+                default:
+                    return test(news.getSearchText(false));
+            }
+        }
+
+        /**
+         * @param s text in lower case
+         * @return {@code true} if the text contains the {@link #needle} or the {@link #pattern}
+         */
+        private boolean test(@Nullable String s) {
+            if (s == null) return false;
+            if (this.pattern != null) return this.pattern.matcher(s).find();
+            return this.needle != null && s.contains(this.needle);
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return this.field.name().toLowerCase(Locale.US) + ":" + (this.pattern != null ? "/" + this.pattern.pattern() + "/" : "\"" + this.needle + "\"");
+        }
+    }
+
+    /**
+     * A recursive descent parser for expressions.
+     */
+    private static final class Parser {
+
+        @NonNull private final CharSequence s;
+        private int pos;
+
+        /**
+         * Constructor.
+         * @param s expression including the leading {@link FilterActivity#C_EXPRESSION}
+         */
+        private Parser(@NonNull CharSequence s) {
+            super();
+            this.s = s;
+            this.pos = 1;
+        }
+
+        /**
+         * @param c char
+         * @return {@code true} if the char ends an unquoted word
+         */
+        private static boolean isDelimiter(char c) {
+            return Character.isWhitespace(c) || c == '(' || c == ')' || c == '&' || c == '|';
+        }
+
+        /**
+         * Consumes the given keyword if it is found at the current position as a separate word, regardless of case.
+         * @param keyword keyword in upper case
+         * @return {@code true} if the keyword has been consumed
+         */
+        private boolean acceptKeyword(@NonNull String keyword) {
+            final int end = this.pos + keyword.length();
+            if (end > this.s.length()) return false;
+            for (int i = 0; i < keyword.length(); i++) {
+                if (Character.toUpperCase(this.s.charAt(this.pos + i)) != keyword.charAt(i)) return false;
+            }
+            if (end < this.s.length() && !isDelimiter(this.s.charAt(end)) && this.s.charAt(end) != '!') return false;
+            this.pos = end;
+            return true;
+        }
+
+        /**
+         * Parses <tt>not (('AND' | '&amp;')? not)*</tt>.
+         * @return Node
+         * @throws ParseException if the expression is not valid
+         */
+        @NonNull
+        private Node parseAnd() throws ParseException {
+            Node node = parseNot();
+            while (true) {
+                skipWhitespace();
+                if (this.pos >= this.s.length()) break;
+                final char c = this.s.charAt(this.pos);
+                if (c == ')' || c == '|') break;
+                if (c == '&') {
+                    this.pos++;
+                } else if (!acceptKeyword(KEYWORD_AND)) {
+                    final int mark = this.pos;
+                    if (acceptKeyword(KEYWORD_OR)) {
+                        this.pos = mark;
+                        break;
+                    }
+                }
+                node = new And(node, parseNot());
+            }
+            return node;
+        }
+
+        /**
+         * Parses <tt>('NOT' | '!') not | primary</tt>.
+         * @return Node
+         * @throws ParseException if the expression is not valid
+         */
+        @NonNull
+        private Node parseNot() throws ParseException {
+            skipWhitespace();
+            if (this.pos < this.s.length() && this.s.charAt(this.pos) == '!') {
+                this.pos++;
+                return new Not(parseNot());
+            }
+            if (acceptKeyword(KEYWORD_NOT)) {
+                return new Not(parseNot());
+            }
+            return parsePrimary();
+        }
+
+        /**
+         * Parses <tt>and (('OR' | '|') and)*</tt>.
+         * @return Node
+         * @throws ParseException if the expression is not valid
+         */
+        @NonNull
+        private Node parseOr() throws ParseException {
+            Node node = parseAnd();
+            while (true) {
+                skipWhitespace();
+                if (this.pos < this.s.length() && this.s.charAt(this.pos) == '|') {
+                    this.pos++;
+                } else if (!acceptKeyword(KEYWORD_OR)) {
+                    break;
+                }
+                node = new Or(node, parseAnd());
+            }
+            return node;
+        }
+
+        /**
+         * Parses <tt>'(' or ')' | term</tt>.
+         * @return Node
+         * @throws ParseException if the expression is not valid
+         */
+        @NonNull
+        private Node parsePrimary() throws ParseException {
+            skipWhitespace();
+            if (this.pos >= this.s.length()) throw new ParseException("Term expected", this.pos);
+            if (this.s.charAt(this.pos) == '(') {
+                this.pos++;
+                final Node node = parseOr();
+                skipWhitespace();
+                if (this.pos >= this.s.length() || this.s.charAt(this.pos) != ')') throw new ParseException("')' expected", this.pos);
+                this.pos++;
+                return node;
+            }
+            return parseTerm();
+        }
+
+        /**
+         * Parses <tt>(field ':')? (word | '"' phrase '"' | '/' regex '/')</tt>.
+         * @return Node
+         * @throws ParseException if the expression is not valid
+         */
+        @NonNull
+        private Node parseTerm() throws ParseException {
+            final int start = this.pos;
+            final int n = this.s.length();
+            // field
+            Field field = Field.TEXT;
+            int i = this.pos;
+            while (i < n && Character.isLetter(this.s.charAt(i))) i++;
+            if (i > this.pos && i < n && this.s.charAt(i) == ':') {
+                final String name = this.s.subSequence(this.pos, i).toString().toUpperCase(Locale.US);
+                for (Field f : Field.values()) {
+                    if (f != Field.TEXT && f.name().equals(name)) {
+                        field = f;
+                        this.pos = i + 1;
+                        break;
+                    }
+                }
+            }
+            if (this.pos >= n) throw new ParseException("Term expected", this.pos);
+            final char c = this.s.charAt(this.pos);
+            if (c == '"') {
+                final int end = indexOf('"', this.pos + 1);
+                if (end < 0) throw new ParseException("Missing '\"'", this.pos);
+                final String needle = this.s.subSequence(this.pos + 1, end).toString().toLowerCase(Locale.GERMAN);
+                if (needle.isEmpty()) throw new ParseException("Empty phrase", this.pos);
+                this.pos = end + 1;
+                return new Term(field, needle, null);
+            }
+            if (c == '/') {
+                int end = this.pos + 1;
+                while (end < n && this.s.charAt(end) != '/') {
+                    if (this.s.charAt(end) == '\\') end++;
+                    end++;
+                }
+                if (end >= n) throw new ParseException("Missing '/'", this.pos);
+                final String regex = this.s.subSequence(this.pos + 1, end).toString();
+                if (regex.isEmpty()) throw new ParseException("Empty regular expression", this.pos);
+                try {
+                    final Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                    this.pos = end + 1;
+                    return new Term(field, null, pattern);
+                } catch (PatternSyntaxException e) {
+                    throw new ParseException(e.getDescription(), this.pos + 1 + Math.max(0, e.getIndex()));
+                }
+            }
+            int end = this.pos;
+            while (end < n && !isDelimiter(this.s.charAt(end)) && this.s.charAt(end) != '"') end++;
+            if (end == this.pos) throw new ParseException("Term expected", start);
+            final String needle = this.s.subSequence(this.pos, end).toString().toLowerCase(Locale.GERMAN);
+            this.pos = end;
+            return new Term(field, needle, null);
+        }
+
+        /**
+         * @param c char to look for
+         * @param from position to start at
+         * @return position of the char or -1
+         */
+        private int indexOf(char c, int from) {
+            final int n = this.s.length();
+            for (int i = from; i < n; i++) {
+                if (this.s.charAt(i) == c) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Advances the position to the next non-whitespace char.
+         */
+        private void skipWhitespace() {
+            final int n = this.s.length();
+            while (this.pos < n && Character.isWhitespace(this.s.charAt(this.pos))) this.pos++;
+        }
+    }
+}
@@ -8,6 +8,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -43,6 +45,30 @@ public class Gallery implements Serializable {
         return gallery;
     }
 
+    /**
+     * Reads a Gallery from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return Gallery
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static Gallery readFrom(@NonNull DataInput in) throws IOException {
+        final Gallery gallery = new Gallery();
+        final int n = BlobSnapshot.readCount(in);
+        for (int i = 0; i < n; i++) gallery.items.add(Item.readFrom(in));
+        return gallery;
+    }
+
+    /**
+     * Writes this Gallery to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeInt(this.items.size());
+        for (Item item : this.items) item.writeTo(out);
+    }
+
     @NonNull
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     public List<Item> getItems() {
@@ -101,6 +127,39 @@ public class Gallery implements Serializable {
             return item;
         }
 
+        /**
+         * Reads an Item from a {@link BlobSnapshot}.
+         * @param in DataInput
+         * @return Item
+         * @throws IOException if an I/O error occurs
+         */
+        @NonNull
+        static Item readFrom(@NonNull DataInput in) throws IOException {
+            final Item item = new Item();
+            final int n = BlobSnapshot.readCount(in);
+            for (int i = 0; i < n; i++) {
+                item.images.put(Quality.valueOf(in.readUTF()), BlobSnapshot.readString(in));
+            }
+            item.title = BlobSnapshot.readString(in);
+            item.copyright = BlobSnapshot.readString(in);
+            return item;
+        }
+
+        /**
+         * Writes this Item to a {@link BlobSnapshot}.
+         * @param out DataOutput
+         * @throws IOException if an I/O error occurs
+         */
+        void writeTo(@NonNull DataOutput out) throws IOException {
+            out.writeInt(this.images.size());
+            for (Map.Entry<Quality, String> entry : this.images.entrySet()) {
+                out.writeUTF(entry.getKey().name());
+                BlobSnapshot.writeString(out, entry.getValue());
+            }
+            BlobSnapshot.writeString(out, this.title);
+            BlobSnapshot.writeString(out, this.copyright);
+        }
+
         /**
          * Parses the "imageVariants" block.<br>
          * Consists of a list of urls with its keys having the format "&lt;imageformat&gt;-&lt;width&gt;".
@@ -6,6 +6,8 @@ import android.util.JsonToken;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Objects;
@@ -48,6 +50,30 @@ public class HtmlEmbed implements Serializable {
         return htmlEmbed;
     }
 
+    /**
+     * Reads a HtmlEmbed from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return HtmlEmbed
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static HtmlEmbed readFrom(@NonNull DataInput in) throws IOException {
+        final HtmlEmbed htmlEmbed = new HtmlEmbed();
+        htmlEmbed.service = BlobSnapshot.readString(in);
+        htmlEmbed.url = BlobSnapshot.readString(in);
+        return htmlEmbed;
+    }
+
+    /**
+     * Writes this HtmlEmbed to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        BlobSnapshot.writeString(out, this.service);
+        BlobSnapshot.writeString(out, this.url);
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean equals(Object o) {
@@ -6,6 +6,8 @@ import androidx.annotation.VisibleForTesting;
 import android.util.JsonReader;
 import android.util.JsonToken;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -69,6 +71,30 @@ public class Lyst implements Serializable {
         return list;
     }
 
+    /**
+     * Reads a Lyst from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return Lyst
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static Lyst readFrom(@NonNull DataInput in) throws IOException {
+        final Lyst list = new Lyst();
+        BlobSnapshot.readStrings(in, list.urls);
+        list.title = BlobSnapshot.readString(in);
+        return list;
+    }
+
+    /**
+     * Writes this Lyst to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        BlobSnapshot.writeStrings(out, this.urls);
+        BlobSnapshot.writeString(out, this.title);
+    }
+
     @Nullable
     public String getTitle() {
         return this.title;
@@ -15,13 +15,18 @@ import androidx.annotation.VisibleForTesting;
 
 import org.jetbrains.annotations.TestOnly;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.text.DateFormat;
+import java.text.Normalizer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -33,9 +38,11 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import de.freehamburger.BuildConfig;
+import de.freehamburger.util.DateUtil;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.Util;
 
@@ -65,11 +72,14 @@ public final class News implements Comparable<News>, Serializable {
     private static final Collection<String> GEOTAGS_TO_IGNORE = Collections.singletonList("(Keine Auswahl)");
     /** Pattern representing horizontal white space: <tt>[ \t\xA0&#92;u1680&#92;u180e&#92;u2000-&#92;u200a&#92;u202f&#92;u205f&#92;u3000]</tt> */
     private static final Pattern PATTERN_WHITE_SPACE = Pattern.compile("\\h+");
+    /** separates the parts of the {@link #getSearchText(boolean) search text}; this is a non-word char that {@link TextFilter#isInvalid(char) cannot occur} in a filter phrase */
+    static final char SEARCH_TEXT_SEPARATOR = '\u0000';
     private static final String TAG = "News";
-    private static long nextid = 1L;
+    private static final AtomicLong NEXT_ID = new AtomicLong(1L);
     /** the streams of differenty qualities (highest number found was all 7 StreamQualities) */
     final Map<StreamQuality, String> streams = new EnumMap<>(StreamQuality.class);
-    final long id = nextid++;
+    /** identifies this instance within the current process; not persisted, see {@link #readObject(ObjectInputStream)} */
+    transient long id = NEXT_ID.getAndIncrement();
     private final Set<String> tags = new HashSet<>(8);
     private final Set<String> geotags = new HashSet<>(4);
     private final Set<Region> regions = new HashSet<>(2);
@@ -100,12 +110,14 @@ public final class News implements Comparable<News>, Serializable {
     /** the 1st level title */
     String topline;
     @Nullable @NewsType String type;
-    /** the contents of {@link #topline} in lower case */
-    transient String toplineL;
-    /** the contents of {@link #title} in lower case */
-    transient String titleL;
-    /** the contents of {@link #firstSentence} in lower case */
-    transient String firstSentenceL;
+    /** the short texts that filters and searches apply to, in lower case - see {@link #getSearchText(boolean)} */
+    private transient String searchHead;
+    /** the texts that filters and searches apply to, in lower case, including the content - see {@link #getSearchText(boolean)} */
+    private transient String searchText;
+    /** {@link #searchText} without diacritics; the same instance as {@link #searchText} if that does not contain any diacritics */
+    private transient String searchTextWithoutDiacritics;
+    /** the short parts of the search text that a TextFilterMatcher has accepted while parsing - see {@link #getSearchTextCheckedLength()} */
+    @Nullable private transient String searchHeadChecked;
     /** recommended News - not ordinarilly filled */
     @Nullable private List<News> recommendations;
 
@@ -113,23 +125,12 @@ public final class News implements Comparable<News>, Serializable {
      * Constructor.
      * @param regional {@code true} if the News originates in the "regional" part of the json data
      */
-     private News(boolean regional) {
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    News(boolean regional) {
         super();
         this.regional = regional;
     }
 
-    /**
-     * Fixes the given News objects.<br>
-     * This currently includes the correction of wrong (" ") quotation marks.
-     * @param someNews Collection of News
-     * @throws NullPointerException if {@code someNews} is {@code null}
-     */
-    static void correct(@NonNull final Collection<News> someNews) {
-        for (News news : someNews) {
-            correct(news);
-        }
-    }
-
     /**
      * Fixes the given News object.<br>
      * This currently includes the correction of wrong (" ") quotation marks.
@@ -142,6 +143,7 @@ public final class News implements Comparable<News>, Serializable {
         if (news.title != null) news.title = Util.fixQuotationMarks(news.title).toString();
         if (news.firstSentence != null) news.firstSentence = Util.fixQuotationMarks(news.firstSentence).toString();
         if (news.topline != null) news.topline = Util.fixQuotationMarks(news.topline).toString();
+        news.resetSearchText();
         news.corrected = true;
     }
 
@@ -152,6 +154,31 @@ public final class News implements Comparable<News>, Serializable {
      */
     public static void removeStupidPluses(@NonNull final News news) {
         if (news.title != null) news.title = Util.fixPlus(news.title);
+        news.resetSearchText();
+    }
+
+    /**
+     * Removes diacritical marks from the given text, so that, for example, "é" becomes "e" and "ü" becomes "u".
+     * @param s text
+     * @return text without diacritics
+     * @throws NullPointerException if {@code s} is {@code null}
+     */
+    @NonNull
+    static String stripDiacritics(@NonNull final String s) {
+        final int n = s.length();
+        int i = 0;
+        // chars below U+00C0 are not affected by the decomposition
+        while (i < n && s.charAt(i) < 0xc0) i++;
+        if (i == n) return s;
+        final String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        final int m = decomposed.length();
+        final StringBuilder sb = new StringBuilder(m);
+        for (i = 0; i < m; i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            sb.append(c);
+        }
+        return sb.toString();
     }
 
     /**
@@ -219,10 +246,13 @@ public final class News implements Comparable<News>, Serializable {
      * @param reader JsonReader
      * @param news News
      * @param flags flags
+     * @param matcher TextFilterMatcher to consult before the content is parsed (optional)
+     * @return {@code true} if the News has been refused by the TextFilterMatcher and its content has been skipped
      * @throws IOException if an I/O error occurs
-     * @throws NullPointerException if either parameter is {@code null}
+     * @throws NullPointerException if {@code reader} or {@code news} are {@code null}
      */
-    private static void loop(@NonNull final JsonReader reader, @NonNull final News news, @Flag final int flags) throws IOException {
+    private static boolean loop(@NonNull final JsonReader reader, @NonNull final News news, @Flag final int flags, @Nullable final TextFilterMatcher matcher) throws IOException {
+        boolean refused = false;
         String name = null;
         final Set<TeaserImage> images = new HashSet<>(1);
         reader.beginObject();
@@ -254,12 +284,19 @@ public final class News implements Comparable<News>, Serializable {
             } else if ("externalId".equals(name)) {
                 news.externalId = reader.nextString();
             } else if ("content".equals(name)) {
-                news.content = Content.parseContent(reader, flags);
+                final String head = matcher != null && !NEWS_TYPE_VIDEO.equals(news.type) ? news.buildSearchHead() : null;
+                if (head != null && matcher.matches(head)) {
+                    refused = true;
+                    reader.skipValue();
+                } else {
+                    news.searchHeadChecked = head;
+                    news.content = Content.parseContent(reader, flags);
+                }
             } else if ("date".equals(name)) {
                 String dateString = reader.nextString();
                 try {
-                    news.date = parseDate(dateString);
-                    if (news.date != null) news.ts = news.date.getTime();
+                    news.ts = parseDate(dateString);
+                    news.date = new Date(news.ts);
                 } catch (Exception e0) {
                     try {
                         long timestamp = Long.parseLong(dateString);
@@ -350,17 +387,18 @@ public final class News implements Comparable<News>, Serializable {
             //if (BuildConfig.DEBUG) Log.i(TAG, "Using element of 'images' as 'teaserImage' in '" + news.getTitle() + "'");
             news.teaserImage = images.iterator().next();
         }
+        return refused;
     }
 
     /**
-     * See <a href="https://docs.oracle.com/javase/6/docs/api/java/text/SimpleDateFormat.html#synchronization">here</a>.
+     * Parses a date string as delivered by the remote api.<br>
+     * Does not need to be synchronized, in contrast to {@link #DF}.
      * @param dateString "yyyy-MM-dd'T'HH:mm:ss.SSSZ"
-     * @return Date
+     * @return timestamp
      * @throws ParseException if the date could not be parsed
      */
-    @Nullable
-    synchronized static Date parseDate(String dateString) throws ParseException {
-        return DF.parse(dateString);
+    static long parseDate(@Nullable String dateString) throws ParseException {
+        return DateUtil.parseIso8601(dateString);
     }
 
     /**
@@ -375,7 +413,82 @@ public final class News implements Comparable<News>, Serializable {
     @NonNull
     public static News parseNews(@NonNull final JsonReader reader, boolean regional, @Flag final int flags) throws IOException {
         final News news = new News(regional);
-        loop(reader, news, flags);
+        loop(reader, news, flags, null);
+        return complete(news);
+    }
+
+    /**
+     * Parses the given JsonReader to retrieve a News element, unless the given TextFilterMatcher refuses it.<br>
+     * The TextFilterMatcher is consulted when the "content" element is reached, which is the most expensive part to parse.
+     * If the texts that have been read up to that point contain any of the filter phrases,
+     * the content is skipped and {@code null} is returned.<br>
+     * As videos are not filtered by text, a video is returned nevertheless, but without content.
+     * @param reader JsonReader
+     * @param regional {@code true} if the News originates in the "regional" part of the json data
+     * @param flags flags
+     * @param matcher TextFilterMatcher (optional)
+     * @return News or {@code null}
+     * @throws IOException if an I/O error occurs
+     * @throws NullPointerException if {@code reader} is {@code null}
+     */
+    @Nullable
+    static News parseNews(@NonNull final JsonReader reader, boolean regional, @Flag final int flags, @Nullable final TextFilterMatcher matcher) throws IOException {
+        final News news = new News(regional);
+        if (loop(reader, news, flags, matcher) && !NEWS_TYPE_VIDEO.equals(news.type)) return null;
+        return complete(news);
+    }
+
+    /**
+     * Reads a News from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return News
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static News readFrom(@NonNull DataInput in) throws IOException {
+        final News news = new News(in.readBoolean());
+        int n = BlobSnapshot.readCount(in);
+        for (int i = 0; i < n; i++) {
+            news.streams.put(StreamQuality.valueOf(in.readUTF()), BlobSnapshot.readString(in));
+        }
+        BlobSnapshot.readStrings(in, news.tags);
+        BlobSnapshot.readStrings(in, news.geotags);
+        n = BlobSnapshot.readCount(in);
+        for (int i = 0; i < n; i++) news.regions.add(Region.valueOf(in.readUTF()));
+        news.breakingNews = in.readBoolean();
+        news.corrected = in.readBoolean();
+        news.date = BlobSnapshot.readDate(in);
+        news.ts = in.readLong();
+        news.details = BlobSnapshot.readString(in);
+        news.detailsWeb = BlobSnapshot.readString(in);
+        news.externalId = BlobSnapshot.readString(in);
+        news.firstSentence = BlobSnapshot.readString(in);
+        news.ressort = BlobSnapshot.readString(in);
+        news.shareUrl = BlobSnapshot.readString(in);
+        news.shorttext = BlobSnapshot.readString(in);
+        news.sophoraId = BlobSnapshot.readString(in);
+        news.stream = BlobSnapshot.readString(in);
+        news.title = BlobSnapshot.readString(in);
+        news.topline = BlobSnapshot.readString(in);
+        news.type = BlobSnapshot.readString(in);
+        if (in.readBoolean()) news.teaserImage = TeaserImage.readFrom(in);
+        if (in.readBoolean()) news.content = Content.readFrom(in);
+        n = in.readInt();
+        if (n >= 0) {
+            news.recommendations = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) news.recommendations.add(readFrom(in));
+        }
+        return news;
+    }
+
+    /**
+     * Finishes a News that has just been parsed.
+     * @param news News
+     * @return the same News
+     * @throws NullPointerException if {@code news} is {@code null}
+     */
+    @NonNull
+    private static News complete(@NonNull final News news) {
         if (news.externalId == null) news.externalId = UUID.randomUUID().toString();
         //noinspection ConstantConditions
         if ("demo".equals(BuildConfig.BUILD_TYPE)) {
@@ -459,6 +572,25 @@ public final class News implements Comparable<News>, Serializable {
         return this.detailsWeb;
     }
 
+    /**
+     * Returns a hash over the properties that are displayed in the news list.<br>
+     * Two News with the same {@link #getExternalId() externalId} and the same content hash look the same there.
+     * @return hash code
+     */
+    public int getContentHash() {
+        // like getTextForTextViewFirstSentence() but without building the plain text of the content
+        final Object firstSentence;
+        if (!TextUtils.isEmpty(this.firstSentence)) {
+            firstSentence = this.firstSentence;
+        } else if (!TextUtils.isEmpty(this.shorttext) && !this.shorttext.equals(getTextForTextViewTitle())) {
+            firstSentence = this.shorttext;
+        } else {
+            firstSentence = this.content != null ? this.content.getElementHash() : null;
+        }
+        return Objects.hash(this.type, this.topline, this.title, firstSentence, this.ts, this.breakingNews,
+                this.teaserImage != null ? this.teaserImage.getBestImage() : null);
+    }
+
     @Nullable
     public String getExternalId() {
         return this.externalId;
@@ -469,17 +601,6 @@ public final class News implements Comparable<News>, Serializable {
         return this.firstSentence;
     }
 
-    /**
-     * @return firstSentence in lower case
-     */
-    @Nullable
-    String getFirstSentenceLowerCase() {
-        if (this.firstSentenceL == null && this.firstSentence != null) {
-            this.firstSentenceL = this.firstSentence.toLowerCase(Locale.GERMAN);
-        }
-        return this.firstSentenceL;
-    }
-
     @NonNull
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     public Set<String> getGeotags() {
@@ -510,6 +631,111 @@ public final class News implements Comparable<News>, Serializable {
         return this.ressort;
     }
 
+    /**
+     * Returns the texts that {@link Filter Filters} and searches apply to, in lower case:
+     * <ul>
+     * <li>{@link #getFirstSentence() first sentence}</li>
+     * <li>{@link #getTopline() top line}</li>
+     * <li>{@link #getTitle() title}</li>
+     * <li>{@link #getTags() tags}</li>
+     * <li>{@link #getGeotags() geo tags}</li>
+     * <li>{@link #getContent() content}</li>
+     * </ul>
+     * The parts are separated by {@link #SEARCH_TEXT_SEPARATOR}, so that a word never extends from one part into the next.<br>
+     * The text is built once and kept, so that subsequent filter passes match it without allocating;
+     * the Content is not {@link Content#getPlainTextWithoutKeeping() materialized} for it.
+     * @param withoutDiacritics {@code true} to get the text with {@link #stripDiacritics(String) diacritics removed}
+     * @return search text
+     */
+    @NonNull
+    public String getSearchText(boolean withoutDiacritics) {
+        String st = withoutDiacritics ? this.searchTextWithoutDiacritics : this.searchText;
+        if (st != null) return st;
+        if (withoutDiacritics) {
+            st = stripDiacritics(getSearchText(false));
+            this.searchTextWithoutDiacritics = st;
+            return st;
+        }
+        String head = this.searchHead;
+        if (head == null) {
+            head = buildSearchHead();
+            this.searchHead = head;
+        }
+        st = buildSearchText(head);
+        this.searchText = st;
+        return st;
+    }
+
+    /**
+     * Returns the number of leading chars of the {@link #getSearchText(boolean) search text}
+     * that a TextFilterMatcher has accepted already while this News was being parsed.<br>
+     * Those are the short parts of the search text, provided that they have not been modified since.
+     * @return number of chars that need not be checked again (0 if nothing has been checked)
+     */
+    int getSearchTextCheckedLength() {
+        final String checked = this.searchHeadChecked;
+        if (checked == null) return 0;
+        String head = this.searchHead;
+        if (head == null) {
+            head = buildSearchHead();
+            this.searchHead = head;
+        }
+        return head.equals(checked) ? checked.length() : 0;
+    }
+
+    /**
+     * Builds the {@link #getSearchText(boolean) search text} without keeping anything in this News.<br>
+     * To be used where the text is needed only once, like when the News is indexed.
+     * @return search text in lower case
+     */
+    @NonNull
+    public String buildSearchText() {
+        final String head = this.searchHead;
+        return buildSearchText(head != null ? head : buildSearchHead());
+    }
+
+    /**
+     * Appends the content to the short parts of the {@link #getSearchText(boolean) search text}.
+     * @param head short parts of the search text as returned by {@link #buildSearchHead()}
+     * @return search text in lower case
+     */
+    @NonNull
+    private String buildSearchText(@NonNull String head) {
+        if (this.content == null) return head;
+        final String plainText = this.content.getPlainTextWithoutKeeping();
+        return new StringBuilder(head.length() + plainText.length() + 1).append(head).append(plainText.toLowerCase(Locale.GERMAN)).append(SEARCH_TEXT_SEPARATOR).toString();
+    }
+
+    /**
+     * Builds the short parts of the {@link #getSearchText(boolean) search text}.
+     * @return short parts of the search text in lower case
+     */
+    @NonNull
+    private String buildSearchHead() {
+        int length = 0;
+        if (this.firstSentence != null) length += this.firstSentence.length() + 1;
+        if (this.topline != null) length += this.topline.length() + 1;
+        if (this.title != null) length += this.title.length() + 1;
+        for (String tag : this.tags) length += tag.length() + 1;
+        for (String tag : this.geotags) length += tag.length() + 1;
+        final StringBuilder sb = new StringBuilder(length);
+        if (this.firstSentence != null) sb.append(this.firstSentence).append(SEARCH_TEXT_SEPARATOR);
+        if (this.topline != null) sb.append(this.topline).append(SEARCH_TEXT_SEPARATOR);
+        if (this.title != null) sb.append(this.title).append(SEARCH_TEXT_SEPARATOR);
+        for (String tag : this.tags) sb.append(tag).append(SEARCH_TEXT_SEPARATOR);
+        for (String tag : this.geotags) sb.append(tag).append(SEARCH_TEXT_SEPARATOR);
+        return sb.toString().toLowerCase(Locale.GERMAN);
+    }
+
+    /**
+     * Discards the {@link #getSearchText(boolean) search text} after the texts that it is made of have been modified.
+     */
+    private void resetSearchText() {
+        this.searchHead = null;
+        this.searchText = null;
+        this.searchTextWithoutDiacritics = null;
+    }
+
     @Nullable
     public String getShareUrl() {
         return this.shareUrl;
@@ -577,33 +803,11 @@ public final class News implements Comparable<News>, Serializable {
         return this.title;
     }
 
-    /**
-     * @return title in lower case
-     */
-    @Nullable
-    String getTitleLowerCase() {
-        if (this.titleL == null && this.title != null) {
-            this.titleL = this.title.toLowerCase(Locale.GERMAN);
-        }
-        return this.titleL;
-    }
-
     @Nullable
     public String getTopline() {
         return this.topline;
     }
 
-    /**
-     * @return topline in lower case
-     */
-    @Nullable
-    String getToplineLowerCase() {
-        if (this.toplineL == null && this.topline != null) {
-            this.toplineL = this.topline.toLowerCase(Locale.GERMAN);
-        }
-        return this.toplineL;
-    }
-
     @Nullable
     @NewsType
     public String getType() {
@@ -659,6 +863,17 @@ public final class News implements Comparable<News>, Serializable {
         return Objects.hash(this.externalId);
     }
 
+    /**
+     * Deserializes this News and gives it a new {@link #id}, because ids from another process might clash with those of this one.
+     * @param in ObjectInputStream
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if a class cannot be found
+     */
+    private void readObject(@NonNull ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.id = NEXT_ID.getAndIncrement();
+    }
+
     /**
      * @return {@code true} if this News is considered to be "breaking".
      */
@@ -688,6 +903,49 @@ public final class News implements Comparable<News>, Serializable {
         this.recommendations = recommendations;
     }
 
+    /**
+     * Writes this News to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeBoolean(this.regional);
+        out.writeInt(this.streams.size());
+        for (Map.Entry<StreamQuality, String> entry : this.streams.entrySet()) {
+            out.writeUTF(entry.getKey().name());
+            BlobSnapshot.writeString(out, entry.getValue());
+        }
+        BlobSnapshot.writeStrings(out, this.tags);
+        BlobSnapshot.writeStrings(out, this.geotags);
+        out.writeInt(this.regions.size());
+        for (Region region : this.regions) out.writeUTF(region.name());
+        out.writeBoolean(this.breakingNews);
+        out.writeBoolean(this.corrected);
+        BlobSnapshot.writeDate(out, this.date);
+        out.writeLong(this.ts);
+        BlobSnapshot.writeString(out, this.details);
+        BlobSnapshot.writeString(out, this.detailsWeb);
+        BlobSnapshot.writeString(out, this.externalId);
+        BlobSnapshot.writeString(out, this.firstSentence);
+        BlobSnapshot.writeString(out, this.ressort);
+        BlobSnapshot.writeString(out, this.shareUrl);
+        BlobSnapshot.writeString(out, this.shorttext);
+        BlobSnapshot.writeString(out, this.sophoraId);
+        BlobSnapshot.writeString(out, this.stream);
+        BlobSnapshot.writeString(out, this.title);
+        BlobSnapshot.writeString(out, this.topline);
+        BlobSnapshot.writeString(out, this.type);
+        out.writeBoolean(this.teaserImage != null);
+        if (this.teaserImage != null) this.teaserImage.writeTo(out);
+        out.writeBoolean(this.content != null);
+        if (this.content != null) this.content.writeTo(out);
+        final List<News> recommendations = this.recommendations;
+        out.writeInt(recommendations != null ? recommendations.size() : -1);
+        if (recommendations != null) {
+            for (News recommendation : recommendations) recommendation.writeTo(out);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     @NonNull
@@ -6,6 +6,8 @@ import android.text.TextUtils;
 import android.util.JsonReader;
 import android.util.JsonToken;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -77,6 +79,39 @@ public class Related implements Serializable, Comparable<Related> {
         return relatedArray;
     }
 
+    /**
+     * Reads a Related from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return Related
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static Related readFrom(@NonNull DataInput in) throws IOException {
+        final Related related = new Related();
+        if (in.readBoolean()) related.teaserImage = TeaserImage.readFrom(in);
+        related.date = BlobSnapshot.readDate(in);
+        related.dateString = BlobSnapshot.readString(in);
+        related.details = BlobSnapshot.readString(in);
+        related.title = BlobSnapshot.readString(in);
+        related.type = BlobSnapshot.readString(in);
+        return related;
+    }
+
+    /**
+     * Writes this Related to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeBoolean(this.teaserImage != null);
+        if (this.teaserImage != null) this.teaserImage.writeTo(out);
+        BlobSnapshot.writeDate(out, this.date);
+        BlobSnapshot.writeString(out, this.dateString);
+        BlobSnapshot.writeString(out, this.details);
+        BlobSnapshot.writeString(out, this.title);
+        BlobSnapshot.writeString(out, this.type);
+    }
+
     /** {@inheritDoc} */
     @Override
     public int compareTo(@NonNull Related o) {
@@ -103,7 +138,7 @@ public class Related implements Serializable, Comparable<Related> {
         if (date != null) return date;
         if (dateString != null) {
             try {
-                date = News.parseDate(dateString);
+                date = new Date(News.parseDate(dateString));
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) de.freehamburger.util.Log.e(getClass().getSimpleName(), "Failed to parse \"" + dateString + "\"", e);
             }
@@ -3,19 +3,16 @@ package de.freehamburger.model;
 import android.content.Context;
 import androidx.preference.PreferenceManager;
 import androidx.annotation.DrawableRes;
-import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
 import java.io.File;
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import de.freehamburger.App;
 import de.freehamburger.BuildConfig;
@@ -45,7 +42,8 @@ public enum Source {
 
     public static final String FILE_SUFFIX = ".source";
 
-    private final Object lock = new Object();
+    /** guards the local file: parsers hold the read lock, a download holds the write lock */
+    private final SourceLock lock = new SourceLock();
     @StringRes
     private final int label;
     private final String url;
@@ -55,9 +53,6 @@ public enum Source {
     @DrawableRes
     private final int iconSearch;
     @Nullable private final String action;
-    /** synchronises access from different threads */
-    @GuardedBy("lock")
-    private volatile Reference<Thread> lockHolder;
 
     /**
      * Creates a list of the labels of the given Source names.
@@ -233,14 +228,24 @@ public enum Source {
     }
 
     /**
-     * Returns the Thread that has locked this Source.
+     * Returns the lock that guards the local file of this Source.<br>
+     * The file must be read while holding the {@link ReentrantReadWriteLock#readLock() read lock}
+     * and must be written to while holding the {@link ReentrantReadWriteLock#writeLock() write lock}.
+     * Waiting threads are queued in arrival order.
+     * @return ReentrantReadWriteLock
+     */
+    @NonNull
+    public ReentrantReadWriteLock getLock() {
+        return this.lock;
+    }
+
+    /**
+     * Returns the Thread that is currently writing the local file of this Source.
      * @return Thread or null
      */
     @Nullable
     public Thread getLockHolder() {
-        synchronized (lock) {
-            return lockHolder != null ? lockHolder.get() : null;
-        }
+        return this.lock.getWriter();
     }
 
     /**
@@ -255,14 +260,20 @@ public enum Source {
     }
 
     /**
-     * Locks or unlocks this Source.<br>
-     * Used to synchronise access as parsing is (and should be) done on a different thread.<br>
-     * See invocation of {@link android.os.AsyncTask#executeOnExecutor(Executor, Object[]) BlobParser}.
-     * @param locked {@code true} / {@code false}
+     * A fair ReentrantReadWriteLock that reveals the writing Thread.
      */
-    public void setLocked(boolean locked) {
-        synchronized (lock) {
-            this.lockHolder = locked ? new WeakReference<>(Thread.currentThread()) : null;
+    private static final class SourceLock extends ReentrantReadWriteLock {
+
+        private SourceLock() {
+            super(true);
+        }
+
+        /**
+         * @return the Thread that holds the write lock, or {@code null}
+         */
+        @Nullable
+        Thread getWriter() {
+            return getOwner();
         }
     }
 }
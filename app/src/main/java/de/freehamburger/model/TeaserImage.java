@@ -7,12 +7,15 @@ import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.AbstractMap;
 import java.util.EnumMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -77,6 +80,41 @@ public class TeaserImage implements Serializable {
         return teaserImage;
     }
 
+    /**
+     * Reads a TeaserImage from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return TeaserImage
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static TeaserImage readFrom(@NonNull DataInput in) throws IOException {
+        final TeaserImage teaserImage = new TeaserImage();
+        final int n = BlobSnapshot.readCount(in);
+        for (int i = 0; i < n; i++) {
+            teaserImage.images.put(Quality.valueOf(in.readUTF()), BlobSnapshot.readString(in));
+        }
+        teaserImage.title = BlobSnapshot.readString(in);
+        teaserImage.copyright = BlobSnapshot.readString(in);
+        teaserImage.alttext = BlobSnapshot.readString(in);
+        return teaserImage;
+    }
+
+    /**
+     * Writes this TeaserImage to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeInt(this.images.size());
+        for (Map.Entry<Quality, String> entry : this.images.entrySet()) {
+            out.writeUTF(entry.getKey().name());
+            BlobSnapshot.writeString(out, entry.getValue());
+        }
+        BlobSnapshot.writeString(out, this.title);
+        BlobSnapshot.writeString(out, this.copyright);
+        BlobSnapshot.writeString(out, this.alttext);
+    }
+
     /**
      * Parses the "imageVariants" block.<br>
      * Consists of a list of urls with its keys having the format "&lt;imageformat&gt;-&lt;width&gt;".
@@ -152,19 +190,7 @@ public class TeaserImage implements Serializable {
     @Nullable
     public MeasuredImage getBestImageForWidth(final int width, @Format int preferredFormat) {
         if (this.images.isEmpty()) return null;
-        final Quality[] available;
-        switch (preferredFormat) {
-            case FORMAT_LANDSCAPE:
-                available = Quality.valuesForLandscape();
-                break;
-            case FORMAT_PORTRAIT:
-                // as of api "2u", there aren't any portrait formats any more!
-            case FORMAT_SQUARE:
-            default:
-                available = Quality.valuesForSquare();
-                break;
-        }
-        for (Quality q : available) {
+        for (Quality q : getQualities(preferredFormat)) {
             if (q.width < width) {
                 continue;
             }
@@ -176,6 +202,24 @@ public class TeaserImage implements Serializable {
         return new MeasuredImage(this.images.get(q), q.width, q.height);
     }
 
+    /**
+     * Returns the Qualities that are suitable for the given format, ordered from worst to best.
+     * @param preferredFormat requested format ({@link #FORMAT_PORTRAIT}, {@link #FORMAT_LANDSCAPE}, {@link #FORMAT_SQUARE})
+     * @return Quality array
+     */
+    @NonNull
+    private static Quality[] getQualities(@Format int preferredFormat) {
+        switch (preferredFormat) {
+            case FORMAT_LANDSCAPE:
+                return Quality.valuesForLandscape();
+            case FORMAT_PORTRAIT:
+                // as of api "2u", there aren't any portrait formats any more!
+            case FORMAT_SQUARE:
+            default:
+                return Quality.valuesForSquare();
+        }
+    }
+
     private int getCount() {
         return this.images.size();
     }
@@ -195,6 +239,22 @@ public class TeaserImage implements Serializable {
         return null;
     }
 
+    /**
+     * Returns the smallest image variant of the given format.
+     * @param preferredFormat requested format ({@link #FORMAT_PORTRAIT}, {@link #FORMAT_LANDSCAPE}, {@link #FORMAT_SQUARE})
+     * @return MeasuredImage
+     */
+    @Nullable
+    public MeasuredImage getSmallestImage(@Format int preferredFormat) {
+        if (this.images.isEmpty()) return null;
+        for (Quality q : getQualities(preferredFormat)) {
+            String url = this.images.get(q);
+            if (url != null) return new MeasuredImage(url, q.width, q.height);
+        }
+        Quality q = this.images.keySet().iterator().next();
+        return new MeasuredImage(this.images.get(q), q.width, q.height);
+    }
+
     @Nullable
     public String getSmallestImage() {
         for (Quality q : WORST_QUALITY) {
@@ -2,7 +2,6 @@ package de.freehamburger.model;
 
 import android.content.Context;
 import androidx.preference.PreferenceManager;
-import android.text.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -11,7 +10,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -24,13 +22,16 @@ import de.freehamburger.FilterActivity;
  */
 public class TextFilter implements Filter {
 
-    private static final Pattern NON_WORD_CHAR_PATTERN = Pattern.compile("\\W");
     /** true if the filter will not be persisted */
     private final boolean temporary;
     /** true if the logic should be inversed (currently not persistable as it is used only during search) */
     private final boolean inverse;
+    /** true if diacritics should be ignored (currently not persistable as it is used only during search) */
+    private final boolean ignoreDiacritics;
     /** the filter phrase in <em>lower case</em> only*/
     @NonNull private CharSequence phrase;
+    /** the String that is looked for in the {@link News#getSearchText(boolean) search text}: the {@link #phrase}, possibly without diacritics */
+    @NonNull private String needle;
     /** true if the filter should apply to word starts only (if true, "trump" filters "trumpet" but not "strumpet") */
     private boolean atStart;
     /** true if the filter should apply to word ends only (if true, "pet" filters "trumpet" but not "trumpeting") */
@@ -51,7 +52,18 @@ public class TextFilter implements Filter {
      * @param inverse true if the logic should be inverted
      */
     public TextFilter(@NonNull String phrase, boolean temporary, boolean inverse) {
-        this(phrase, false, false, temporary, inverse);
+        this(phrase, false, false, temporary, inverse, false);
+    }
+
+    /**
+     * Constructor.
+     * @param phrase filter phrase
+     * @param temporary true / false
+     * @param inverse true if the logic should be inverted
+     * @param ignoreDiacritics true if diacritics should be ignored (so that "muller" matches "Müller")
+     */
+    public TextFilter(@NonNull String phrase, boolean temporary, boolean inverse, boolean ignoreDiacritics) {
+        this(phrase, false, false, temporary, inverse, ignoreDiacritics);
     }
 
     /**
@@ -64,12 +76,26 @@ public class TextFilter implements Filter {
      */
     @VisibleForTesting
     public TextFilter(@NonNull CharSequence phrase, boolean atStart, boolean atEnd, boolean temporary, boolean inverse) {
+        this(phrase, atStart, atEnd, temporary, inverse, false);
+    }
+
+    /**
+     * Constructor.
+     * @param phrase filter phrase
+     * @param atStart true / false
+     * @param atEnd true / false
+     * @param temporary true / false
+     * @param inverse true if the logic should be inverted
+     * @param ignoreDiacritics true if diacritics should be ignored
+     */
+    private TextFilter(@NonNull CharSequence phrase, boolean atStart, boolean atEnd, boolean temporary, boolean inverse, boolean ignoreDiacritics) {
         super();
-        this.phrase = phrase;
         this.atStart = atStart;
         this.atEnd = atEnd;
         this.inverse = inverse;
         this.temporary = temporary;
+        this.ignoreDiacritics = ignoreDiacritics;
+        setPhrase(phrase);
     }
 
     /**
@@ -91,22 +117,20 @@ public class TextFilter implements Filter {
     }
 
     /**
-     * Checks whether any word in cs ends with needle.
-     * @param cs CharSequence to search
-     * @param needle CharSequence to look for
-     * @return {@code true} if any word in cs ends with needle
+     * Checks whether any word in s ends with needle.<br>
+     * Words are separated by {@link #isNonWordChar(char) non-word chars}, therefore a needle that contains such a char is never found.
+     * @param s String to search
+     * @param needle String to look for
+     * @return {@code true} if any word in s ends with needle
      */
-    private static boolean endsWith(@Nullable CharSequence cs, @NonNull final CharSequence needle) {
-        if (cs == null) return false;
+    private static boolean endsWith(@NonNull final String s, @NonNull final String needle) {
         final int nl = needle.length();
         if (nl == 0) return true;
-        int csl = cs.length();
-        if (csl < nl) return false;
-        final String[] parts = NON_WORD_CHAR_PATTERN.split(cs, -1);
-        for (String part : parts) {
-            int pl = part.length();
-            if (pl < nl) continue;
-            if (TextUtils.equals(part.subSequence(pl - nl, pl), needle)) return true;
+        if (containsNonWordChar(needle)) return false;
+        final int sl = s.length();
+        for (int i = s.indexOf(needle); i >= 0; i = s.indexOf(needle, i + 1)) {
+            final int end = i + nl;
+            if (end == sl || isNonWordChar(s.charAt(end))) return true;
         }
         return false;
     }
@@ -121,7 +145,28 @@ public class TextFilter implements Filter {
     }
 
     /**
-     * @param phrase as stored in the preferences (possibly starting with {@link FilterActivity#C_ATSTART [} or {@link FilterActivity#C_ATEND ]})
+     * Same as {@code \W} in a regular expression.
+     * @param c char
+     * @return {@code true} if the char is neither a latin letter, nor a digit nor an underscore
+     */
+    static boolean isNonWordChar(final char c) {
+        return !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_');
+    }
+
+    /**
+     * @param s CharSequence
+     * @return {@code true} if the CharSequence contains at least one {@link #isNonWordChar(char) non-word char}
+     */
+    static boolean containsNonWordChar(@NonNull final CharSequence s) {
+        final int n = s.length();
+        for (int i = 0; i < n; i++) {
+            if (isNonWordChar(s.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param phrase as stored in the preferences (possibly starting with {@link FilterActivity#C_ATSTART [}, {@link FilterActivity#C_ATEND ]} or {@link FilterActivity#C_EXPRESSION =})
      * @return TextFilter
      * @throws NullPointerException if {@code phrase} is {@code null}
      */
@@ -130,7 +175,10 @@ public class TextFilter implements Filter {
         CharSequence p;
         boolean atStart = false;
         boolean atEnd = false;
-        if (phrase.length() > 1) {
+        if (ExpressionFilter.isExpression(phrase)) {
+            // not converted to lower case; see ExpressionFilter
+            p = sanitize(phrase);
+        } else if (phrase.length() > 1) {
             char c = phrase.charAt(0);
             if (c == FilterActivity.C_ATSTART) {
                 atStart = true;
@@ -178,22 +226,17 @@ public class TextFilter implements Filter {
     }
 
     /**
-     * Checks whether any word in cs starts with needle.
-     * @param cs CharSequence to search
-     * @param needle CharSequence to look for
-     * @return {@code true} if any word in cs starts with needle
+     * Checks whether any word in s starts with needle.<br>
+     * Words are separated by {@link #isNonWordChar(char) non-word chars}, therefore a needle that contains such a char is never found.
+     * @param s String to search
+     * @param needle String to look for
+     * @return {@code true} if any word in s starts with needle
      */
-    private static boolean startsWith(@Nullable CharSequence cs, @NonNull final CharSequence needle) {
-        if (cs == null) return false;
-        final int nl = needle.length();
-        if (nl == 0) return true;
-        int csl = cs.length();
-        if (csl < nl) return false;
-        final String[] parts = NON_WORD_CHAR_PATTERN.split(cs, -1);
-        for (String part : parts) {
-            int pl = part.length();
-            if (pl < nl) continue;
-            if (TextUtils.equals(part.subSequence(0, nl), needle)) return true;
+    private static boolean startsWith(@NonNull final String s, @NonNull final String needle) {
+        if (needle.isEmpty()) return true;
+        if (containsNonWordChar(needle)) return false;
+        for (int i = s.indexOf(needle); i >= 0; i = s.indexOf(needle, i + 1)) {
+            if (i == 0 || isNonWordChar(s.charAt(i - 1))) return true;
         }
         return false;
     }
@@ -223,7 +266,7 @@ public class TextFilter implements Filter {
         if (this == o) return true;
         if (!(o instanceof TextFilter)) return false;
         TextFilter that = (TextFilter) o;
-        return temporary == that.temporary && atStart == that.atStart && atEnd == that.atEnd && inverse == that.inverse && Objects.equals(phrase, that.phrase);
+        return temporary == that.temporary && atStart == that.atStart && atEnd == that.atEnd && inverse == that.inverse && ignoreDiacritics == that.ignoreDiacritics && Objects.equals(phrase, that.phrase);
     }
 
     /** {@inheritDoc} */
@@ -235,20 +278,11 @@ public class TextFilter implements Filter {
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
-        return Objects.hash(phrase, temporary, atStart, atEnd, inverse);
+        return Objects.hash(phrase, temporary, atStart, atEnd, inverse, ignoreDiacritics);
     }
 
     /**
-     * Searches the given News'
-     * <ul>
-     * <li>{@link News#getFirstSentenceLowerCase() first sentence}</li>
-     * <li>{@link News#getToplineLowerCase() top line}</li>
-     * <li>{@link News#getTitleLowerCase() title}</li>
-     * <li>{@link News#getContent() content}</li>
-     * <li>{@link News#getTags() tags}</li>
-     * <li>{@link News#getGeotags() geo tags}</li>
-     * </ul>
-     * for occurrences of {@link #phrase}
+     * Searches the given News' {@link News#getSearchText(boolean) search text} for occurrences of {@link #phrase}.
      * @param news News
      * @return true if this Filter accepts the News
      */
@@ -256,51 +290,10 @@ public class TextFilter implements Filter {
         if (news == null) return false;
         // we do not filter videos by text because my momma always said, "Video was like a box of chocolates. You never know what you're gonna get."
         if (News.NEWS_TYPE_VIDEO.equals(news.getType())) return true;
-        if (atStart) {
-            if (startsWith(news.getFirstSentenceLowerCase(), phrase)) return false;
-            if (startsWith(news.getToplineLowerCase(), phrase)) return false;
-            if (startsWith(news.getTitleLowerCase(), phrase)) return false;
-            if (news.getContent() != null && startsWith(news.getContent().getPlainText().toLowerCase(Locale.GERMAN), phrase)) return false;
-            for (String tag : news.getTags()) {
-                if (startsWith(tag.toLowerCase(Locale.GERMAN), phrase)) return false;
-            }
-            for (String tag : news.getGeotags()) {
-                if (startsWith(tag.toLowerCase(), phrase)) return false;
-            }
-        } else if (atEnd) {
-            if (endsWith(news.getFirstSentenceLowerCase(), phrase)) return false;
-            if (endsWith(news.getToplineLowerCase(), phrase)) return false;
-            if (endsWith(news.getTitleLowerCase(), phrase)) return false;
-            if (news.getContent() != null && endsWith(news.getContent().getPlainText().toLowerCase(Locale.GERMAN), phrase)) return false;
-            for (String tag : news.getTags()) {
-                if (endsWith(tag.toLowerCase(Locale.GERMAN), phrase)) return false;
-            }
-            for (String tag : news.getGeotags()) {
-                if (endsWith(tag.toLowerCase(), phrase)) return false;
-            }
-        } else {
-            if (contains(news.getFirstSentenceLowerCase(), phrase)) return false;
-            if (contains(news.getToplineLowerCase(), phrase)) return false;
-            if (contains(news.getTitleLowerCase(), phrase)) return false;
-            if (news.getContent() != null && contains(news.getContent().getPlainText().toLowerCase(Locale.GERMAN), phrase)) return false;
-            for (String tag : news.getTags()) {
-                if (contains(tag.toLowerCase(Locale.GERMAN), phrase)) return false;
-            }
-            for (String tag : news.getGeotags()) {
-                if (contains(tag.toLowerCase(), phrase)) return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Returns true if a given haystack contains a given needle.
-     * @param haystack haystack to search
-     * @param needle needle to find
-     * @return true / false
-     */
-    private static boolean contains(@Nullable String haystack, @NonNull CharSequence needle) {
-        return haystack != null && haystack.contains(needle);
+        final String text = news.getSearchText(this.ignoreDiacritics);
+        if (atStart) return !startsWith(text, this.needle);
+        if (atEnd) return !endsWith(text, this.needle);
+        return !text.contains(this.needle);
     }
 
     public boolean isAtEnd() {
@@ -311,6 +304,27 @@ public class TextFilter implements Filter {
         return atStart;
     }
 
+    /**
+     * @return {@code true} if diacritics are ignored
+     */
+    public boolean isIgnoreDiacritics() {
+        return ignoreDiacritics;
+    }
+
+    /**
+     * @return {@code true} if the phrase is to be {@link TextFilterMatcher#compile(java.util.Collection) compiled} into an {@link ExpressionFilter}
+     */
+    public boolean isExpression() {
+        return ExpressionFilter.isExpression(this.phrase);
+    }
+
+    /**
+     * @return {@code true} if the logic is inverted
+     */
+    public boolean isInverse() {
+        return inverse;
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean isEditable() {
@@ -330,12 +344,13 @@ public class TextFilter implements Filter {
 
     public void setPhrase(@NonNull CharSequence phrase) {
         this.phrase = phrase;
+        this.needle = this.ignoreDiacritics ? News.stripDiacritics(phrase.toString()) : phrase.toString();
     }
 
     /** {@inheritDoc} */
     @Override
     @NonNull
     public String toString() {
-        return "TextFilter \"" + phrase + "\"" + (atStart ? " at start" : "") + (atEnd ? " at end" : "") + (temporary ? " (T)" : "")+ (inverse ? " (I)" : "");
+        return "TextFilter \"" + phrase + "\"" + (atStart ? " at start" : "") + (atEnd ? " at end" : "") + (temporary ? " (T)" : "")+ (inverse ? " (I)" : "") + (ignoreDiacritics ? " (D)" : "");
     }
 }
@@ -0,0 +1,294 @@
+package de.freehamburger.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+import de.freehamburger.BuildConfig;
+import de.freehamburger.util.Log;
+
+/**
+ * Combines any number of {@link TextFilter TextFilters} into one
+ * <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho-Corasick</a> automaton.<br>
+ * The {@link News#getSearchText(boolean) search text} of a News is scanned only once, regardless of the number of filter phrases.<br>
+ * The result is the same as if each of the TextFilters had been applied separately:
+ * the News is refused if any of the phrases occurs in any of its texts,
+ * whereby phrases that apply to {@link TextFilter#isAtStart() word starts} or {@link TextFilter#isAtEnd() word ends}
+ * are matched only there.<br>
+ * Instances are immutable and therefore thread-safe; changes to the TextFilters after compilation are not reflected.
+ */
+public final class TextFilterMatcher implements Filter {
+
+    private static final String TAG = "TextFilterMatcher";
+    private static final int ANCHOR_NONE = 0;
+    private static final int ANCHOR_START = 1;
+    private static final int ANCHOR_END = 2;
+    private static final int[] NO_OUTPUT = new int[0];
+    private static final char[] NO_KEYS = new char[0];
+
+    /** the phrases */
+    @NonNull private final String[] phrases;
+    /** phrase lengths, indexed like {@link #phrases} */
+    @NonNull private final int[] lengths;
+    /** {@link #ANCHOR_NONE}, {@link #ANCHOR_START} or {@link #ANCHOR_END}; indexed like {@link #phrases} */
+    @NonNull private final int[] anchors;
+    /** {@code true} for phrases that contain non-word chars; such phrases never match at word starts or ends; indexed like {@link #phrases} */
+    @NonNull private final boolean[] containsNonWordChar;
+    /** {@code true} if there is an empty phrase which matches any text */
+    private final boolean matchesAnything;
+    /** sorted transition chars per state */
+    @NonNull private final char[][] keys;
+    /** transition targets per state, indexed like {@link #keys} */
+    @NonNull private final int[][] targets;
+    /** failure transition per state */
+    @NonNull private final int[] fail;
+    /** indices of the phrases that end in a state (including those reachable via failure transitions) */
+    @NonNull private final int[][] output;
+
+    /**
+     * Constructor.
+     * @param filters TextFilters to compile
+     */
+    private TextFilterMatcher(@NonNull List<TextFilter> filters) {
+        super();
+        final int n = filters.size();
+        this.phrases = new String[n];
+        this.lengths = new int[n];
+        this.anchors = new int[n];
+        this.containsNonWordChar = new boolean[n];
+        boolean empty = false;
+        // build the trie
+        final List<StringBuilder> keyList = new ArrayList<>();
+        final List<List<Integer>> targetList = new ArrayList<>();
+        final List<List<Integer>> outputList = new ArrayList<>();
+        keyList.add(new StringBuilder());
+        targetList.add(new ArrayList<>());
+        outputList.add(new ArrayList<>());
+        for (int i = 0; i < n; i++) {
+            final TextFilter filter = filters.get(i);
+            final String phrase = filter.getText().toString();
+            this.phrases[i] = phrase;
+            this.lengths[i] = phrase.length();
+            this.anchors[i] = filter.isAtStart() ? ANCHOR_START : (filter.isAtEnd() ? ANCHOR_END : ANCHOR_NONE);
+            if (phrase.isEmpty()) {
+                empty = true;
+                continue;
+            }
+            int state = 0;
+            for (int j = 0; j < phrase.length(); j++) {
+                final char c = phrase.charAt(j);
+                if (TextFilter.isNonWordChar(c)) this.containsNonWordChar[i] = true;
+                final int k = keyList.get(state).indexOf(String.valueOf(c));
+                if (k >= 0) {
+                    state = targetList.get(state).get(k);
+                } else {
+                    final int next = keyList.size();
+                    keyList.add(new StringBuilder());
+                    targetList.add(new ArrayList<>());
+                    outputList.add(new ArrayList<>());
+                    keyList.get(state).append(c);
+                    targetList.get(state).add(next);
+                    state = next;
+                }
+            }
+            outputList.get(state).add(i);
+        }
+        this.matchesAnything = empty;
+        // convert to arrays with sorted keys
+        final int states = keyList.size();
+        this.keys = new char[states][];
+        this.targets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            final StringBuilder sk = keyList.get(s);
+            final int m = sk.length();
+            if (m == 0) {
+                this.keys[s] = NO_KEYS;
+                this.targets[s] = NO_OUTPUT;
+                continue;
+            }
+            final Integer[] order = new Integer[m];
+            for (int j = 0; j < m; j++) order[j] = j;
+            Arrays.sort(order, (o1, o2) -> Character.compare(sk.charAt(o1), sk.charAt(o2)));
+            this.keys[s] = new char[m];
+            this.targets[s] = new int[m];
+            for (int j = 0; j < m; j++) {
+                this.keys[s][j] = sk.charAt(order[j]);
+                this.targets[s][j] = targetList.get(s).get(order[j]);
+            }
+        }
+        // compute the failure transitions breadth-first
+        this.fail = new int[states];
+        final Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : this.targets[0]) {
+            this.fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int s = queue.remove();
+            final char[] sk = this.keys[s];
+            for (int j = 0; j < sk.length; j++) {
+                final int child = this.targets[s][j];
+                int f = this.fail[s];
+                int next;
+                while ((next = transition(f, sk[j])) < 0 && f != 0) f = this.fail[f];
+                this.fail[child] = next >= 0 ? next : 0;
+                outputList.get(child).addAll(outputList.get(this.fail[child]));
+                queue.add(child);
+            }
+        }
+        this.output = new int[states][];
+        for (int s = 0; s < states; s++) {
+            final List<Integer> o = outputList.get(s);
+            if (o.isEmpty()) {
+                this.output[s] = NO_OUTPUT;
+                continue;
+            }
+            this.output[s] = new int[o.size()];
+            for (int j = 0; j < this.output[s].length; j++) this.output[s][j] = o.get(j);
+        }
+    }
+
+    /**
+     * Replaces all {@link TextFilter TextFilters} among the given Filters with one TextFilterMatcher.<br>
+     * TextFilters that {@link TextFilter#isInverse() invert} the logic or that {@link TextFilter#isIgnoreDiacritics() ignore diacritics} are kept as they are.<br>
+     * TextFilters that contain an {@link TextFilter#isExpression() expression} are replaced with an {@link ExpressionFilter}, or dropped if the expression is not valid.
+     * @param filters Filters
+     * @return List of Filters that is equivalent to the given Filters
+     */
+    @NonNull
+    public static List<Filter> compile(@Nullable final Collection<Filter> filters) {
+        if (filters == null || filters.isEmpty()) return new ArrayList<>(0);
+        final List<TextFilter> textFilters = new ArrayList<>(filters.size());
+        final List<Filter> compiled = new ArrayList<>(filters.size());
+        for (Filter filter : filters) {
+            if (filter instanceof TextFilter && ((TextFilter)filter).isExpression()) {
+                try {
+                    compiled.add(ExpressionFilter.compile(filter.getText()));
+                } catch (ParseException e) {
+                    if (BuildConfig.DEBUG) Log.w(TAG, "Invalid expression \"" + filter.getText() + "\": " + e.getMessage());
+                }
+                continue;
+            }
+            if (filter instanceof TextFilter && !((TextFilter)filter).isInverse() && !((TextFilter)filter).isIgnoreDiacritics()) textFilters.add((TextFilter)filter);
+            else compiled.add(filter);
+        }
+        if (!textFilters.isEmpty()) compiled.add(0, new TextFilterMatcher(textFilters));
+        return compiled;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean accept(@Nullable final News news) {
+        if (news == null) return false;
+        // see TextFilter.internalAccept()
+        if (News.NEWS_TYPE_VIDEO.equals(news.getType())) return true;
+        return !matches(news.getSearchText(false));
+    }
+
+    /**
+     * Like {@link #accept(News)}, but skips the part of the search text that this TextFilterMatcher has
+     * {@link News#getSearchTextCheckedLength() accepted already} while the News was being parsed.
+     * @param news News
+     * @return true / false
+     */
+    boolean acceptUnchecked(@Nullable final News news) {
+        if (news == null) return false;
+        if (News.NEWS_TYPE_VIDEO.equals(news.getType())) return true;
+        final String text = news.getSearchText(false);
+        return !matches(text, news.getSearchTextCheckedLength());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int compareTo(@NonNull Filter o) {
+        return getText().toString().compareTo(o.getText().toString());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CharSequence getText() {
+        return Arrays.toString(this.phrases);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isEditable() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isTemporary() {
+        return false;
+    }
+
+    /**
+     * Scans the given text for all phrases.<br>
+     * As the phrases never span more than one part of a {@link News#getSearchText(boolean) search text},
+     * a News whose search text is a superset of the given text would be refused if this returns {@code true}.
+     * @param text text in lower case
+     * @throws NullPointerException if {@code text} is {@code null}
+     * @return {@code true} if at least one of the phrases has been found
+     */
+    boolean matches(@NonNull final String text) {
+        return matches(text, 0);
+    }
+
+    /**
+     * Scans the given text for all phrases, starting at the given position.<br>
+     * The position must be 0 or follow a {@link News#SEARCH_TEXT_SEPARATOR separator}.
+     * @param text text in lower case
+     * @param from position to start at
+     * @throws NullPointerException if {@code text} is {@code null}
+     * @return {@code true} if at least one of the phrases has been found
+     */
+    private boolean matches(@NonNull final String text, final int from) {
+        if (this.matchesAnything) return true;
+        final int n = text.length();
+        int state = 0;
+        for (int i = from; i < n; i++) {
+            final char c = text.charAt(i);
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) state = this.fail[state];
+            state = next >= 0 ? next : 0;
+            for (int p : this.output[state]) {
+                final int anchor = this.anchors[p];
+                if (anchor == ANCHOR_NONE) return true;
+                // a phrase containing non-word chars cannot be found at the start or the end of a word
+                if (this.containsNonWordChar[p]) continue;
+                if (anchor == ANCHOR_START) {
+                    final int start = i - this.lengths[p] + 1;
+                    if (start == 0 || TextFilter.isNonWordChar(text.charAt(start - 1))) return true;
+                } else {
+                    if (i == n - 1 || TextFilter.isNonWordChar(text.charAt(i + 1))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @NonNull
+    public String toString() {
+        return "TextFilterMatcher " + getText();
+    }
+
+    /**
+     * Returns the state that follows the given one for the given char.
+     * @param state current state
+     * @param c char
+     * @return next state or -1
+     */
+    private int transition(final int state, final char c) {
+        final int k = Arrays.binarySearch(this.keys[state], c);
+        return k >= 0 ? this.targets[state][k] : -1;
+    }
+}
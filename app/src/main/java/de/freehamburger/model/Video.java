@@ -6,6 +6,8 @@ import android.text.TextUtils;
 import android.util.JsonReader;
 import android.util.JsonToken;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.text.ParseException;
@@ -76,12 +78,50 @@ public class Video implements Serializable {
         return video;
     }
 
+    /**
+     * Reads a Video from a {@link BlobSnapshot}.
+     * @param in DataInput
+     * @return Video
+     * @throws IOException if an I/O error occurs
+     */
+    @NonNull
+    static Video readFrom(@NonNull DataInput in) throws IOException {
+        final Video video = new Video();
+        final int n = BlobSnapshot.readCount(in);
+        for (int i = 0; i < n; i++) {
+            video.streams.put(StreamQuality.valueOf(in.readUTF()), BlobSnapshot.readString(in));
+        }
+        video.title = BlobSnapshot.readString(in);
+        video.dateString = BlobSnapshot.readString(in);
+        video.date = BlobSnapshot.readDate(in);
+        if (in.readBoolean()) video.teaserImage = TeaserImage.readFrom(in);
+        return video;
+    }
+
+    /**
+     * Writes this Video to a {@link BlobSnapshot}.
+     * @param out DataOutput
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeInt(this.streams.size());
+        for (Map.Entry<StreamQuality, String> entry : this.streams.entrySet()) {
+            out.writeUTF(entry.getKey().name());
+            BlobSnapshot.writeString(out, entry.getValue());
+        }
+        BlobSnapshot.writeString(out, this.title);
+        BlobSnapshot.writeString(out, this.dateString);
+        BlobSnapshot.writeDate(out, this.date);
+        out.writeBoolean(this.teaserImage != null);
+        if (this.teaserImage != null) this.teaserImage.writeTo(out);
+    }
+
     @Nullable
     public Date getDate() {
         if (date != null) return date;
         if (dateString != null) {
             try {
-                date = News.parseDate(dateString);
+                date = new Date(News.parseDate(dateString));
             } catch (ParseException e) {
                 if (BuildConfig.DEBUG) android.util.Log.e(getClass().getSimpleName(), "While parsing date: " + e);
             }
@@ -16,7 +16,11 @@ import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.os.Process;
 import androidx.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Log;
@@ -25,8 +29,13 @@ import androidx.annotation.AnyThread;
 import androidx.annotation.IntRange;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import de.freehamburger.BuildConfig;
 import de.freehamburger.R;
@@ -49,23 +58,53 @@ public class SearchContentProvider extends ContentProvider {
     static final String COLUMN_DISPLAY1 = "display1";
     /** display2 contains the <em>localised</em> {@link Source#getLabel() source label}<br>Therefore the database will be erased when the Locale changes! */
     static final String COLUMN_DISPLAY2 = "display2";
+    /** freq contains the number of occurrences of {@link #COLUMN_DISPLAY1 display1} in the Source; more frequent words are suggested first */
+    static final String COLUMN_FREQ = "freq";
     /** query consists of: {@link #COLUMN_DISPLAY1 display1} + {@link SearchHelper#WORD_SOURCE_SEPARATOR} + source.name() */
     static final String COLUMN_QUERY = "query";
     /** symbol contains the {@link Source#getIcon()} source icon */
     static final String COLUMN_SYMBOL = "symbol";
     static final String COLUMN_INTENTDATA = "intentdata";
+    /** key contains the key of a News whose words have been added to the suggestions */
+    static final String COLUMN_KEY = "key";
+    /** words contains the words of a News and their number of occurrences, see {@link #encodeWords(Map)} */
+    static final String COLUMN_WORDS = "words";
+    /** hash contains a hash over the texts of a News that its {@link #COLUMN_WORDS words} have been taken from */
+    static final String COLUMN_HASH = "hash";
+    /** {@link #call(String, String, Bundle)} method that returns the keys of the News whose words are part of the suggestions for a Source label ({@link #EXTRA_KEYS}) and their hashes ({@link #EXTRA_HASHES}) */
+    static final String METHOD_GET_KEYS = "getKeys";
+    /** {@link #call(String, String, Bundle)} method that adds and removes the words of News for a Source label */
+    static final String METHOD_UPDATE = "update";
+    /** String array: keys of News */
+    static final String EXTRA_KEYS = "keys";
+    /** int array: the {@link #COLUMN_HASH hashes} of the News given in {@link #EXTRA_KEYS} */
+    static final String EXTRA_HASHES = "hashes";
+    /** String array: keys of News whose words are to be removed */
+    static final String EXTRA_REMOVED_KEYS = "removedKeys";
+    /** String array: the {@link #encodeWords(Map) encoded words} of the News given in {@link #EXTRA_KEYS} */
+    static final String EXTRA_WORDS = "words";
+    /** ContentValues array: suggestions whose {@link #COLUMN_FREQ frequency} is to be increased or which are to be inserted */
+    static final String EXTRA_SUGGESTIONS = "suggestions";
     /** database table name */
     private static final String SUGGESTIONS = "suggestions";
+    /** database table that contains the words of each News that contributes to the suggestions */
+    private static final String STORIES = "stories";
     /** text for exceptions */
     private static final String UNKNOWN_URI = "Unknown Uri ";
     private static final String TAG = "SearchContentProvider";
     /** database name */
     private static final String SUGGESTIONS_DB = "suggestions.db";
-    /** search suggestions are ordered by {@link #COLUMN_DISPLAY1 display1} and {@link #COLUMN_DISPLAY2 display2} */
-    private static final String ORDER_BY = COLUMN_DISPLAY1 + ',' + COLUMN_DISPLAY2;
+    /** search suggestions are ordered by {@link #COLUMN_FREQ frequency}, {@link #COLUMN_DISPLAY1 display1} and {@link #COLUMN_DISPLAY2 display2} */
+    private static final String ORDER_BY = COLUMN_FREQ + " DESC," + COLUMN_DISPLAY1 + ',' + COLUMN_DISPLAY2;
+    /** suggestions whose {@link #COLUMN_DISPLAY1 word} starts with the user input; uses the index on display1 */
+    private static final String SELECTION_PREFIX = COLUMN_DISPLAY1 + " >= ? AND " + COLUMN_DISPLAY1 + " < ?";
+    /** suggestions whose {@link #COLUMN_DISPLAY1 word} or {@link #COLUMN_DISPLAY2 source label} starts with the user input; uses the indices on display1 and display2 */
+    private static final String SELECTION_PREFIX_OR_LABEL = '(' + SELECTION_PREFIX + ") OR (" + COLUMN_DISPLAY2 + " >= ? COLLATE NOCASE AND " + COLUMN_DISPLAY2 + " < ? COLLATE NOCASE)";
+    /** default max. number of suggestions returned (if the {@link SearchManager#SUGGEST_PARAMETER_LIMIT limit} is not given) */
+    private static final int DEFAULT_LIMIT = 50;
     private static final String NULL_COLUMN = COLUMN_QUERY;
     @IntRange(from = 1)
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 4;
     private static final String INSERT_STMT = "INSERT OR REPLACE INTO "
             + SUGGESTIONS
             + '(' + COLUMN_DATE
@@ -73,7 +112,18 @@ public class SearchContentProvider extends ContentProvider {
             + ',' + COLUMN_DISPLAY1
             + ',' + COLUMN_DISPLAY2
             + ',' + COLUMN_QUERY
-            + ") VALUES (?,?,?,?,?)";
+            + ',' + COLUMN_FREQ
+            + ") VALUES (?,?,?,?,?,?)";
+    private static final String UPDATE_FREQ_STMT = "UPDATE " + SUGGESTIONS
+            + " SET " + COLUMN_FREQ + '=' + COLUMN_FREQ + "+?," + COLUMN_DATE + "=MAX(" + COLUMN_DATE + ",?)"
+            + " WHERE " + COLUMN_DISPLAY1 + "=? AND " + COLUMN_DISPLAY2 + "=?";
+    private static final String INSERT_STORY_STMT = "INSERT OR REPLACE INTO "
+            + STORIES
+            + '(' + COLUMN_DISPLAY2
+            + ',' + COLUMN_KEY
+            + ',' + COLUMN_WORDS
+            + ',' + COLUMN_HASH
+            + ") VALUES (?,?,?,?)";
     private static final String[] SUGGESTION_PROJECTION = new String[] {
             "0 AS " + SearchManager.SUGGEST_COLUMN_FORMAT,
             COLUMN_SYMBOL + " AS " + SearchManager.SUGGEST_COLUMN_ICON_1,
@@ -87,11 +137,56 @@ public class SearchContentProvider extends ContentProvider {
     };
     private static final int URI_MATCH_SUGGEST = 1;
 
+    /** separates the entries in the {@link #COLUMN_WORDS words} column */
+    private static final char WORDS_ENTRY_SEPARATOR = '\u001e';
+    /** separates a word from its count in the {@link #COLUMN_WORDS words} column */
+    private static final char WORDS_COUNT_SEPARATOR = '\u001f';
+
     private Uri uri;
     private UriMatcher uriMatcher;
     private DatabaseHelper databaseHelper;
     private Locale locale;
 
+    /**
+     * Decodes the words that have been encoded via {@link #encodeWords(Map)}.
+     * @param encoded encoded words
+     * @param addHere Map to add the words and their counts to
+     */
+    @VisibleForTesting
+    static void decodeWords(@Nullable final String encoded, @NonNull final Map<String, Integer> addHere) {
+        if (encoded == null) return;
+        final int n = encoded.length();
+        int start = 0;
+        while (start < n) {
+            int end = encoded.indexOf(WORDS_ENTRY_SEPARATOR, start);
+            if (end < 0) end = n;
+            int sep = encoded.lastIndexOf(WORDS_COUNT_SEPARATOR, end - 1);
+            if (sep > start) {
+                try {
+                    addHere.put(encoded.substring(start, sep), Integer.parseInt(encoded.substring(sep + 1, end)));
+                } catch (NumberFormatException e) {
+                    if (BuildConfig.DEBUG) Log.e(TAG, "Invalid word count: " + e);
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Encodes words and their counts so that they can be stored in the {@link #COLUMN_WORDS words} column.
+     * @param words key: word, value: number of occurrences
+     * @return encoded words
+     */
+    @NonNull
+    static String encodeWords(@NonNull final Map<String, Integer> words) {
+        final StringBuilder sb = new StringBuilder(words.size() << 3);
+        for (Map.Entry<String, Integer> entry : words.entrySet()) {
+            if (sb.length() > 0) sb.append(WORDS_ENTRY_SEPARATOR);
+            sb.append(entry.getKey()).append(WORDS_COUNT_SEPARATOR).append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
     /** {@inheritDoc} */
     @Override
     @AnyThread
@@ -113,6 +208,8 @@ public class SearchContentProvider extends ContentProvider {
                 stmt.bindString(3, value.getAsString(COLUMN_DISPLAY1));
                 stmt.bindString(4, value.getAsString(COLUMN_DISPLAY2));
                 stmt.bindString(5, value.getAsString(COLUMN_QUERY));
+                Integer freq = value.getAsInteger(COLUMN_FREQ);
+                stmt.bindLong(6, freq != null ? freq : 1);
                 rowId = stmt.executeInsert();
                 stmt.clearBindings();
                 if (rowId > 0) counter++;
@@ -130,6 +227,40 @@ public class SearchContentProvider extends ContentProvider {
         return counter;
     }
 
+    /**
+     * {@inheritDoc}
+     * <hr>
+     * Supports {@link #METHOD_GET_KEYS} and {@link #METHOD_UPDATE}; {@code arg} must be the localised Source label.<br>
+     * Can be called from within this app only.
+     */
+    @Nullable
+    @Override
+    @WorkerThread
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if (Binder.getCallingUid() != Process.myUid()) throw new SecurityException();
+        if (arg == null) return null;
+        if (METHOD_GET_KEYS.equals(method)) {
+            final SQLiteDatabase db = this.databaseHelper.getReadableDatabase();
+            try (Cursor c = db.query(STORIES, new String[] {COLUMN_KEY, COLUMN_HASH}, COLUMN_DISPLAY2 + "=?", new String[] {arg}, null, null, null)) {
+                final String[] keys = new String[c.getCount()];
+                final int[] hashes = new int[keys.length];
+                for (int i = 0; c.moveToNext(); i++) {
+                    keys[i] = c.getString(0);
+                    hashes[i] = c.getInt(1);
+                }
+                final Bundle result = new Bundle(2);
+                result.putStringArray(EXTRA_KEYS, keys);
+                result.putIntArray(EXTRA_HASHES, hashes);
+                return result;
+            }
+        }
+        if (METHOD_UPDATE.equals(method) && extras != null) {
+            updateSuggestions(arg, extras.getStringArray(EXTRA_REMOVED_KEYS), extras.getStringArray(EXTRA_KEYS), extras.getIntArray(EXTRA_HASHES), extras.getStringArray(EXTRA_WORDS), extras.getParcelableArray(EXTRA_SUGGESTIONS));
+            return null;
+        }
+        throw new IllegalArgumentException("Unknown method " + method);
+    }
+
     /** {@inheritDoc} */
     @Override
     @AnyThread
@@ -137,7 +268,15 @@ public class SearchContentProvider extends ContentProvider {
         int count = 0;
         try {
             SQLiteDatabase db = this.databaseHelper.getWritableDatabase();
-            count = db.delete(SUGGESTIONS, selection, selectionArgs);
+            db.beginTransaction();
+            try {
+                count = db.delete(SUGGESTIONS, selection, selectionArgs);
+                // the selection refers to display2 only, which is part of both tables
+                db.delete(STORIES, selection, selectionArgs);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
             Context ctx = getContext();
             if (ctx != null) ctx.getContentResolver().notifyChange(uri, null);
         } catch (RuntimeException e) {
@@ -262,15 +401,27 @@ public class SearchContentProvider extends ContentProvider {
         if (this.uriMatcher.match(uri) == URI_MATCH_SUGGEST) {
             String suggestSelection;
             String[] myArgs;
-            if (TextUtils.isEmpty(selectionArgs[0])) {
+            final String input = selectionArgs != null && selectionArgs.length > 0 && selectionArgs[0] != null ? selectionArgs[0].trim() : null;
+            if (TextUtils.isEmpty(input)) {
                 suggestSelection = null;
                 myArgs = null;
             } else {
-                String like = "%" + selectionArgs[0] + "%";
-                myArgs = new String[] {like, like};
-                suggestSelection = COLUMN_DISPLAY1 + " LIKE ? OR " + COLUMN_DISPLAY2 + " LIKE ?";
+                // range queries on the indexed columns instead of "LIKE '%input%'" which would require a full table scan
+                final String prefix = input.toLowerCase(Locale.GERMAN);
+                final String upper = prefix + Character.MAX_VALUE;
+                final String labelUpper = input + Character.MAX_VALUE;
+                myArgs = new String[] {prefix, upper, input, labelUpper};
+                suggestSelection = SELECTION_PREFIX_OR_LABEL;
+            }
+            int limit = DEFAULT_LIMIT;
+            String limitParam = uri.getQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT);
+            if (limitParam != null) {
+                try {
+                    limit = Math.max(1, Integer.parseInt(limitParam));
+                } catch (NumberFormatException ignored) {
+                }
             }
-            Cursor c = db.query(SUGGESTIONS, SUGGESTION_PROJECTION, suggestSelection, myArgs, null, null, ORDER_BY, null);
+            Cursor c = db.query(SUGGESTIONS, SUGGESTION_PROJECTION, suggestSelection, myArgs, null, null, ORDER_BY, String.valueOf(limit));
             c.setNotificationUri(ctx.getContentResolver(), uri);
             return c;
         }
@@ -323,27 +474,131 @@ public class SearchContentProvider extends ContentProvider {
         throw new RuntimeException("Not implemented");
     }
 
+    /**
+     * Updates the suggestions for a Source in one transaction:
+     * the words of the removed News are subtracted, the words of the added News are added,
+     * and suggestions whose words do not occur any more are deleted.
+     * @param label localised Source label ({@link #COLUMN_DISPLAY2 display2})
+     * @param removedKeys keys of the News that are not part of the Source any more or whose texts have changed
+     * @param addedKeys keys of the News that have been added to the Source or whose texts have changed
+     * @param addedHashes {@link #COLUMN_HASH hashes} of the added News, indexed like {@code addedKeys}
+     * @param addedWords {@link #encodeWords(Map) encoded words} of the added News, indexed like {@code addedKeys}
+     * @param suggestions suggestions for the words of the added News (with {@link #COLUMN_FREQ freq} being the number of additional occurrences)
+     */
+    @WorkerThread
+    private void updateSuggestions(@NonNull final String label, @Nullable final String[] removedKeys, @Nullable final String[] addedKeys, @Nullable final int[] addedHashes, @Nullable final String[] addedWords, @Nullable final Parcelable[] suggestions) {
+        final Context ctx = getContext();
+        if (ctx == null) return;
+        final SQLiteDatabase db = this.databaseHelper.getWritableDatabase();
+        boolean modified = false;
+        db.beginTransaction();
+        try {
+            final SQLiteStatement update = db.compileStatement(UPDATE_FREQ_STMT);
+            if (removedKeys != null && removedKeys.length > 0) {
+                final Map<String, Integer> removedWords = new HashMap<>();
+                final String[] args = new String[] {label, null};
+                for (String key : removedKeys) {
+                    args[1] = key;
+                    try (Cursor c = db.query(STORIES, new String[] {COLUMN_WORDS}, COLUMN_DISPLAY2 + "=? AND " + COLUMN_KEY + "=?", args, null, null, null)) {
+                        if (!c.moveToFirst()) continue;
+                        final Map<String, Integer> words = new HashMap<>();
+                        decodeWords(c.getString(0), words);
+                        for (Map.Entry<String, Integer> entry : words.entrySet()) {
+                            Integer sum = removedWords.get(entry.getKey());
+                            removedWords.put(entry.getKey(), sum != null ? sum + entry.getValue() : entry.getValue());
+                        }
+                    }
+                    db.delete(STORIES, COLUMN_DISPLAY2 + "=? AND " + COLUMN_KEY + "=?", args);
+                }
+                for (Map.Entry<String, Integer> entry : removedWords.entrySet()) {
+                    update.bindLong(1, -entry.getValue());
+                    update.bindLong(2, 0L);
+                    update.bindString(3, entry.getKey());
+                    update.bindString(4, label);
+                    update.executeUpdateDelete();
+                    update.clearBindings();
+                }
+                db.delete(SUGGESTIONS, COLUMN_DISPLAY2 + "=? AND " + COLUMN_FREQ + "<=0", new String[] {label});
+                modified = !removedWords.isEmpty();
+            }
+            if (suggestions != null && suggestions.length > 0) {
+                final SQLiteStatement insert = db.compileStatement(INSERT_STMT);
+                for (Parcelable p : suggestions) {
+                    final ContentValues value = (ContentValues)p;
+                    final String word = value.getAsString(COLUMN_DISPLAY1);
+                    final Integer freq = value.getAsInteger(COLUMN_FREQ);
+                    final long date = value.getAsLong(COLUMN_DATE);
+                    update.bindLong(1, freq != null ? freq : 1);
+                    update.bindLong(2, date);
+                    update.bindString(3, word);
+                    update.bindString(4, label);
+                    final int updated = update.executeUpdateDelete();
+                    update.clearBindings();
+                    if (updated > 0) continue;
+                    insert.bindLong(1, date);
+                    insert.bindString(2, value.getAsString(COLUMN_SYMBOL));
+                    insert.bindString(3, word);
+                    insert.bindString(4, label);
+                    insert.bindString(5, value.getAsString(COLUMN_QUERY));
+                    insert.bindLong(6, freq != null ? freq : 1);
+                    insert.executeInsert();
+                    insert.clearBindings();
+                }
+                insert.close();
+                modified = true;
+            }
+            if (addedKeys != null && addedHashes != null && addedWords != null) {
+                final SQLiteStatement insertStory = db.compileStatement(INSERT_STORY_STMT);
+                for (int i = 0; i < addedKeys.length && i < addedHashes.length && i < addedWords.length; i++) {
+                    insertStory.bindString(1, label);
+                    insertStory.bindString(2, addedKeys[i]);
+                    insertStory.bindString(3, addedWords[i]);
+                    insertStory.bindLong(4, addedHashes[i]);
+                    insertStory.executeInsert();
+                    insertStory.clearBindings();
+                }
+                insertStory.close();
+            }
+            update.close();
+            db.setTransactionSuccessful();
+        } catch (SQLiteException e) {
+            if (BuildConfig.DEBUG) Log.e(TAG, e.toString(), e);
+            modified = false;
+        } finally {
+            db.endTransaction();
+        }
+        if (modified) ctx.getContentResolver().notifyChange(this.uri, null, false);
+    }
+
     /**
      * See {@link SQLiteOpenHelper}.
      */
     private static class DatabaseHelper extends SQLiteOpenHelper {
 
+        @NonNull private final Context context;
+
         /**
          * Constructor.
          * @param context Context
          */
         DatabaseHelper(@NonNull Context context) {
             super(context, SUGGESTIONS_DB, null, DATABASE_VERSION);
+            this.context = context;
         }
 
         static void delete(@NonNull SQLiteDatabase db) {
             db.execSQL("DROP TABLE IF EXISTS " + SUGGESTIONS);
+            db.execSQL("DROP TABLE IF EXISTS " + STORIES);
         }
 
         /** {@inheritDoc} */
         @Override
         public void onCreate(@NonNull SQLiteDatabase db) {
-            db.execSQL("CREATE TABLE " + SUGGESTIONS + " (_id INTEGER PRIMARY KEY,display1 TEXT,display2 TEXT,query TEXT,date LONG,symbol TEXT);");
+            db.execSQL("CREATE TABLE " + SUGGESTIONS + " (_id INTEGER PRIMARY KEY,display1 TEXT,display2 TEXT,query TEXT,date LONG,symbol TEXT,freq INTEGER);");
+            // one suggestion per word and Source
+            db.execSQL("CREATE UNIQUE INDEX " + SUGGESTIONS + '_' + COLUMN_DISPLAY1 + " ON " + SUGGESTIONS + '(' + COLUMN_DISPLAY1 + ',' + COLUMN_DISPLAY2 + ");");
+            db.execSQL("CREATE INDEX " + SUGGESTIONS + '_' + COLUMN_DISPLAY2 + " ON " + SUGGESTIONS + '(' + COLUMN_DISPLAY2 + " COLLATE NOCASE);");
+            db.execSQL("CREATE TABLE " + STORIES + " (" + COLUMN_DISPLAY2 + " TEXT," + COLUMN_KEY + " TEXT," + COLUMN_WORDS + " TEXT," + COLUMN_HASH + " INTEGER,PRIMARY KEY(" + COLUMN_DISPLAY2 + ',' + COLUMN_KEY + "));");
         }
 
         /** {@inheritDoc} */
@@ -361,6 +616,10 @@ public class SearchContentProvider extends ContentProvider {
         private void onVersionChange(@NonNull SQLiteDatabase db) {
             delete(db);
             onCreate(db);
+            // make sure that the suggestions will be re-created
+            SharedPreferences.Editor ed = PreferenceManager.getDefaultSharedPreferences(this.context).edit();
+            for (Source source : Source.values()) ed.remove(PREF_PREFIX_SEARCHSUGGESTIONS + source.name());
+            ed.apply();
         }
 
     }
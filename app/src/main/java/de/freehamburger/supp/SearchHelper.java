@@ -5,6 +5,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.net.Uri;
+import android.os.Bundle;
 import androidx.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Log;
@@ -19,13 +20,19 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import de.freehamburger.BuildConfig;
 import de.freehamburger.R;
@@ -101,7 +108,8 @@ public class SearchHelper {
     /** if true, then the {@link News#getContent() news content} will be included in search suggestions */
     private static final boolean INCLUDE_NEWS_CONTENT = true;
     private static final Object SYNC = new Object();
-    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
+    /** the pending, not yet started, Inserter for each Source; also used to synchronise the access to {@link Inserter#newsList} and {@link Inserter#date} */
+    private static final Map<Source, Inserter> PENDING = new EnumMap<>(Source.class);
     /** array that contains all {@link Source Sources} */
     private static final Source[] SOURCES;
     /** array that contains the local files for all {@link Source Sources} (the files do not necessarily exist) */
@@ -109,13 +117,26 @@ public class SearchHelper {
     private static final int MIN_WORD_LENGTH = 2;
     private static final String SPLITTER = " :\"„”-!?.,()&/'#<>[]{};•";
 
+    /** runs the {@link Inserter Inserters} one after the other; apart from test-only Inserters, there is at most one pending Inserter per Source */
+    private static final ThreadPoolExecutor EXECUTOR;
+
     static {
         SOURCES = Source.values();
         LOCAL_FILES = new File[SOURCES.length];
+        EXECUTOR = new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, TAG);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
     }
 
     /**
-     * Adds search suggestions to the database.<br>
+     * Updates the search suggestions in the database.<br>
+     * Only the words of News that have not been processed before are added,
+     * and the words of News that are no longer part of the Source are removed.<br>
+     * The work is done on a single background thread. If there is still a pending request for the same Source,
+     * that request is updated with the given News instead of queueing another one.<br>
      * Does not do anything if source is either {@link Source#VIDEO} or {@link Source#CHANNELS}.<br>
      * This is because TextFilters never match videos
      * (if TextFilters were applied to videos, then it might happen that if you created a filter containing "trumpet"
@@ -135,20 +156,20 @@ public class SearchHelper {
         long now = System.currentTimeMillis();
 
         setCreationTime(ctx, source, now);
-        final int count = newsList.size();
-        // max. number of threads to distribute the work to
-        final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
-        // don't process less than 16 news items per thread
-        final int newsPerThread = Math.max(16, count / threads);
-        final Collection<Inserter> inserters = new ArrayList<>(threads);
-        for (int i = 0, remaining = count; i < count;) {
-            int n = Math.min(remaining, newsPerThread);
-            inserters.add(new Inserter(ctx, source, newsList.subList(i, i + n), now, testonly));
-            remaining -= n;
-            i += n;
+        final Inserter inserter;
+        synchronized (PENDING) {
+            final Inserter pending = testonly ? null : PENDING.get(source);
+            if (pending != null) {
+                // the pending request has become stale before it could be processed
+                pending.newsList = new ArrayList<>(newsList);
+                pending.date = now;
+                return Collections.singletonList(pending);
+            }
+            inserter = new Inserter(ctx, source, new ArrayList<>(newsList), now, testonly);
+            if (!testonly) PENDING.put(source, inserter);
         }
-        for (Inserter inserter : inserters) inserter.start();
-        return inserters;
+        EXECUTOR.execute(inserter);
+        return Collections.singletonList(inserter);
     }
 
     /**
@@ -251,16 +272,43 @@ public class SearchHelper {
     }
 
     /**
-     * Inserts search suggestions into the database.
+     * Returns a hash over the texts that the {@link Inserter#collectWords(News, List, Map) words} of a News are taken from.<br>
+     * If it changes, the words of the News must be collected again.
+     * @param news News
+     * @return hash code
+     */
+    private static int hashOf(@NonNull News news) {
+        final Content content = INCLUDE_NEWS_CONTENT ? news.getContent() : null;
+        return 31 * news.getContentHash() + (content != null ? content.getElementHash() : 0);
+    }
+
+    /**
+     * Returns the key that identifies a News within its Source with regard to the search suggestions.
+     * @param news News
+     * @return key or {@code null}
+     */
+    @Nullable
+    private static String keyOf(@NonNull News news) {
+        String key = SearchIndex.keyOf(news);
+        if (key == null) key = news.getTitle() != null ? news.getTitle() : news.getTopline();
+        return key;
+    }
+
+    /**
+     * Updates the search suggestions in the database.
      */
     @VisibleForTesting
-    public static class Inserter extends Thread {
+    public static class Inserter implements Runnable {
 
         private final @NonNull Context ctx;
         private final @NonNull Source source;
-        private final Collection<News> newsList;
-        private final long date;
         private final boolean testonly;
+        private final CountDownLatch done = new CountDownLatch(1);
+        /** may be replaced as long as the Inserter is {@link #PENDING pending} */
+        private Collection<News> newsList;
+        /** may be replaced as long as the Inserter is {@link #PENDING pending} */
+        private long date;
+        /** the suggestions for the words of the News that have been added */
         @VisibleForTesting() public ContentValues[] cv;
 
         /**
@@ -278,56 +326,167 @@ public class SearchHelper {
             this.newsList = newsList;
             this.date = ts;
             this.testonly = testonly;
-            setPriority(Thread.NORM_PRIORITY - 1);
         }
 
-        /** {@inheritDoc} */
-        @SuppressWarnings("ConstantConditions")
-        @Override
-        public void run() {
-            final ContentResolver cr = ctx.getContentResolver();
-            final String sourceLabel = ctx.getString(source.getLabel());
-            final Set<String> words = new HashSet<>(newsList.size() * 9);
+        /**
+         * Collects the words of the given News.
+         * @param news News
+         * @param sentence List to use temporarily
+         * @param words Map to add the words and their number of occurrences to
+         */
+        private static void collectWords(@NonNull News news, @NonNull List<String> sentence, @NonNull Map<String, Integer> words) {
                 /*
                 In the News list, the user sees these News attributes:
                 - topline (if empty: title)             // this is the small print in the top-left corner
                 - title                                 // this is the enlarged text next to the photo
                 - firstSentence (if empty: shorttext)   // this is the longer text below the title
                  */
+            String topline = news.getTopline();
+            String title = news.getTitle();
+            String fs = news.getFirstSentence();
+            if (TextUtils.isEmpty(topline)) topline = title;
+            if (TextUtils.isEmpty(fs)) fs = news.getShorttext();
+            if (!TextUtils.isEmpty(topline)) splitSentence(topline, sentence);
+            if (!TextUtils.isEmpty(title) && !title.equals(topline)) splitSentence(title, sentence);
+            if (!TextUtils.isEmpty(fs)) splitSentence(fs, sentence);
+            if (INCLUDE_NEWS_CONTENT) {
+                Content content = news.getContent();
+                // the plain text is not kept in the Content so that the Content remains lightweight
+                String plainText = content != null ? content.getPlainTextWithoutKeeping() : null;
+                if (!TextUtils.isEmpty(plainText)) splitSentence(plainText, sentence);
+            }
+            for (String word : sentence) {
+                Integer count = words.get(word);
+                words.put(word, count != null ? count + 1 : 1);
+            }
+            sentence.clear();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            final Collection<News> newsList;
+            final long date;
+            synchronized (PENDING) {
+                if (PENDING.get(this.source) == this) PENDING.remove(this.source);
+                newsList = this.newsList;
+                date = this.date;
+            }
+            try {
+                if (testonly) {
+                    updateSuggestions(newsList, date);
+                    return;
+                }
+                // the keys that are read must not be modified by anybody else before this Inserter has finished
+                synchronized (SYNC) {
+                    updateSuggestions(newsList, date);
+                }
+            } finally {
+                this.done.countDown();
+            }
+        }
+
+        /**
+         * @return {@code true} if this Inserter has finished
+         */
+        public boolean isDone() {
+            return this.done.getCount() == 0L;
+        }
+
+        /**
+         * Waits for this Inserter to finish.
+         * @throws InterruptedException if the current thread has been interrupted while waiting
+         */
+        public void join() throws InterruptedException {
+            this.done.await();
+        }
+
+        /**
+         * Determines the News that have been added and the ones that have been removed and updates the database accordingly.
+         * @param newsList the News that currently belong to the Source
+         * @param date timestamp
+         */
+        private void updateSuggestions(@NonNull final Collection<News> newsList, final long date) {
+            final ContentResolver cr = ctx.getContentResolver();
+            final Uri uri = Uri.parse("content://" + ctx.getString(R.string.app_search_auth));
+            final String sourceLabel = ctx.getString(source.getLabel());
+            // the News that have been processed before, mapped to the hashes of their texts
+            final Map<String, Integer> knownKeys = new HashMap<>();
+            if (!testonly) {
+                try {
+                    Bundle result = cr.call(uri, SearchContentProvider.METHOD_GET_KEYS, sourceLabel, null);
+                    String[] keys = result != null ? result.getStringArray(SearchContentProvider.EXTRA_KEYS) : null;
+                    int[] hashes = result != null ? result.getIntArray(SearchContentProvider.EXTRA_HASHES) : null;
+                    if (keys != null && hashes != null) {
+                        for (int i = 0; i < keys.length && i < hashes.length; i++) knownKeys.put(keys[i], hashes[i]);
+                    }
+                } catch (Exception e) {
+                    if (BuildConfig.DEBUG) Log.e(TAG, "Failed to get keys: " + e);
+                    return;
+                }
+            }
+            // determine the News that have been added, the ones that have changed and the ones that have disappeared
+            final Set<String> currentKeys = new HashSet<>(newsList.size());
+            final List<String> addedKeys = new ArrayList<>();
+            final List<Integer> addedHashes = new ArrayList<>();
+            final List<String> addedWords = new ArrayList<>();
+            // key: word, value: number of occurrences in the added News
+            final Map<String, Integer> words = new HashMap<>();
+            final Map<String, Integer> newsWords = new HashMap<>();
+            final List<String> sentence = new ArrayList<>(32);
             for (News news : newsList) {
-                String topline = news.getTopline();
-                String title = news.getTitle();
-                String fs = news.getFirstSentence();
-                if (TextUtils.isEmpty(topline)) topline = title;
-                if (TextUtils.isEmpty(fs)) fs = news.getShorttext();
-                if (!TextUtils.isEmpty(topline)) splitSentence(topline, words);
-                if (!TextUtils.isEmpty(title) && !title.equals(topline)) splitSentence(title, words);
-                if (!TextUtils.isEmpty(fs)) splitSentence(fs, words);
-                if (INCLUDE_NEWS_CONTENT) {
-                    Content content = news.getContent();
-                    if (content != null && !TextUtils.isEmpty(content.getPlainText())) splitSentence(content.getPlainText(), words);
+                final String key = keyOf(news);
+                // the same News may appear in the regional and in the non-regional part
+                if (key == null || !currentKeys.add(key)) continue;
+                final int hash = hashOf(news);
+                final Integer knownHash = knownKeys.get(key);
+                if (knownHash != null && knownHash == hash) {
+                    knownKeys.remove(key);
+                    continue;
                 }
+                // a News whose texts have changed remains in knownKeys so that its old words will be removed
+                collectWords(news, sentence, newsWords);
+                for (Map.Entry<String, Integer> entry : newsWords.entrySet()) {
+                    Integer count = words.get(entry.getKey());
+                    words.put(entry.getKey(), count != null ? count + entry.getValue() : entry.getValue());
+                }
+                addedKeys.add(key);
+                addedHashes.add(hash);
+                addedWords.add(SearchContentProvider.encodeWords(newsWords));
+                newsWords.clear();
             }
+            // now knownKeys contains the News that have disappeared or changed
             cv = new ContentValues[words.size()];
             final String symbol = "android.resource://" + BuildConfig.APPLICATION_ID + '/' + source.getIconSearch();
             final String querySuffix = WORD_SOURCE_SEPARATOR + source.name();
             int i = 0;
-            for (String word : words) {
-                cv[i] = new ContentValues(5);
+            for (Map.Entry<String, Integer> entry : words.entrySet()) {
+                final String word = entry.getKey();
+                cv[i] = new ContentValues(6);
                 cv[i].put(SearchContentProvider.COLUMN_DATE, date);
                 cv[i].put(SearchContentProvider.COLUMN_DISPLAY1, word);
                 cv[i].put(SearchContentProvider.COLUMN_DISPLAY2, sourceLabel);
                 cv[i].put(SearchContentProvider.COLUMN_QUERY, word + querySuffix);
                 cv[i].put(SearchContentProvider.COLUMN_SYMBOL, symbol);
+                cv[i].put(SearchContentProvider.COLUMN_FREQ, entry.getValue());
                 i++;
             }
             if (testonly) return;
-            Uri uri = Uri.parse("content://" + ctx.getString(R.string.app_search_auth));
-            synchronized (SYNC) {
-                cr.delete(uri, SearchContentProvider.COLUMN_DISPLAY2 + " = '" + sourceLabel + "'", null);
-                cr.bulkInsert(uri, cv);
+            if (cv.length == 0 && knownKeys.isEmpty()) return;
+            if (BuildConfig.DEBUG) Log.i(TAG, source + ": " + addedKeys.size() + " News added or changed, " + knownKeys.size() + " News removed or changed, " + cv.length + " words added");
+            final int[] hashes = new int[addedHashes.size()];
+            for (int j = 0; j < hashes.length; j++) hashes[j] = addedHashes.get(j);
+            final Bundle extras = new Bundle(5);
+            extras.putStringArray(SearchContentProvider.EXTRA_REMOVED_KEYS, knownKeys.keySet().toArray(new String[0]));
+            extras.putStringArray(SearchContentProvider.EXTRA_KEYS, addedKeys.toArray(new String[0]));
+            extras.putIntArray(SearchContentProvider.EXTRA_HASHES, hashes);
+            extras.putStringArray(SearchContentProvider.EXTRA_WORDS, addedWords.toArray(new String[0]));
+            extras.putParcelableArray(SearchContentProvider.EXTRA_SUGGESTIONS, cv);
+            try {
+                cr.call(uri, SearchContentProvider.METHOD_UPDATE, sourceLabel, extras);
+            } catch (Exception e) {
+                if (BuildConfig.DEBUG) Log.e(TAG, "Failed to update suggestions: " + e);
             }
-            Arrays.fill(cv, null);
         }
     }
 
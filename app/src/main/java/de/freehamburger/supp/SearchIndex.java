@@ -0,0 +1,556 @@
+package de.freehamburger.supp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.IntRange;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.freehamburger.Archive;
+import de.freehamburger.BuildConfig;
+import de.freehamburger.model.Blob;
+import de.freehamburger.model.Filter;
+import de.freehamburger.model.News;
+import de.freehamburger.model.Source;
+import de.freehamburger.model.TextFilter;
+
+/**
+ * A persistent full-text index of the News of all {@link Source Sources} and of the archived News.<br>
+ * The index is an SQLite FTS4 table which is fed whenever a {@link Blob} has been parsed and whenever a News is archived.
+ * Queries return {@link Hit Hits} ranked by <a href="https://en.wikipedia.org/wiki/Okapi_BM25">BM25</a>,
+ * so that a search neither has to re-parse json data nor to scan each News item.<br>
+ * All modifications are serialised on a background thread; searches run on another one, so that they do not have to wait for the modifications.
+ */
+public final class SearchIndex {
+
+    /** the {@link #COLUMN_SOURCE source} value of archived News */
+    private static final String ARCHIVE = "~archive";
+    /** contains the {@link Source#name() Source name} or {@link #ARCHIVE} */
+    private static final String COLUMN_SOURCE = "source";
+    /** contains the {@link #keyOf(News) key} of a News or the file name of an archived News */
+    private static final String COLUMN_KEY = "key";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_TEXT = "text";
+    /** contains the timestamp of the latest Blob that has been indexed for a Source */
+    private static final String COLUMN_TS = "ts";
+    /** contains the {@link Blob#getParseConfiguration(Context) parse configuration} that applied when the latest Blob was indexed for a Source */
+    private static final String COLUMN_CONFIG = "config";
+    @IntRange(from = 1)
+    private static final int DATABASE_VERSION = 2;
+    /** database name */
+    private static final String INDEX_DB = "index.db";
+    /** BM25 parameter k1 */
+    private static final float K1 = 1.2f;
+    /** BM25 parameter b */
+    private static final float B = 0.75f;
+    /** matches in the title count more than matches in the text */
+    private static final float TITLE_WEIGHT = 3f;
+    /** the FTS4 table */
+    private static final String DOCS = "docs";
+    /** the table that holds the timestamps of the indexed Blobs */
+    private static final String STATE = "state";
+    private static final String INSERT_STMT = "INSERT INTO " + DOCS + '(' + COLUMN_SOURCE + ',' + COLUMN_KEY + ',' + COLUMN_TITLE + ',' + COLUMN_TEXT + ") VALUES (?,?,?,?)";
+    private static final String QUERY = "SELECT " + COLUMN_SOURCE + ',' + COLUMN_KEY + ',' + COLUMN_TITLE + ",matchinfo(" + DOCS + ",'pcnalx') FROM " + DOCS + " WHERE " + DOCS + " MATCH ?";
+    private static final String TAG = "SearchIndex";
+
+    private final Context ctx;
+    private final DatabaseHelper databaseHelper;
+    /** modifies the index */
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    /** runs the {@link #searchAsync(String, int, SearchListener) searches} */
+    private final ThreadPoolExecutor searchExecutor = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Constructor.
+     * @param ctx Context
+     */
+    public SearchIndex(@NonNull Context ctx) {
+        super();
+        this.ctx = ctx.getApplicationContext();
+        this.databaseHelper = new DatabaseHelper(this.ctx);
+        this.executor.allowCoreThreadTimeOut(true);
+        this.searchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Builds an FTS query from the words that the user has entered.<br>
+     * All words must occur, each of them may be the start of a longer word.
+     * @param query user input
+     * @return FTS query or {@code null} if the input does not contain any word
+     */
+    @Nullable
+    private static String buildMatchExpression(@NonNull final String query) {
+        final StringBuilder sb = new StringBuilder(query.length() + 8);
+        final int n = query.length();
+        boolean inWord = false;
+        for (int i = 0; i < n; i++) {
+            final char c = query.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord && sb.length() > 0) sb.append(' ');
+                sb.append(Character.toLowerCase(c));
+                inWord = true;
+            } else if (inWord) {
+                sb.append('*');
+                inWord = false;
+            }
+        }
+        if (inWord) sb.append('*');
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    /**
+     * Returns the text of the given News that goes into the index.<br>
+     * The text is built from scratch, so that neither the text nor the Content are kept in the News.
+     * @param news News
+     * @return text
+     */
+    @NonNull
+    @WorkerThread
+    private static String indexTextOf(@NonNull News news) {
+        // FTS would stop at the NUL chars that separate the parts of the search text
+        return news.buildSearchText().replace('\u0000', '\n');
+    }
+
+    /**
+     * Returns the key that identifies a News within its Source.
+     * @param news News
+     * @return key or {@code null}
+     */
+    @Nullable
+    public static String keyOf(@NonNull News news) {
+        return news.getExternalId() != null ? news.getExternalId() : news.getSophoraId();
+    }
+
+    /**
+     * Computes the BM25 score from the result of the FTS4 function matchinfo(…, 'pcnalx').
+     * @param matchinfo matchinfo blob
+     * @return score
+     */
+    private static float score(@Nullable final byte[] matchinfo) {
+        if (matchinfo == null || matchinfo.length < 12) return 0f;
+        final IntBuffer mi = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        final int phrases = mi.get(0);
+        final int columns = mi.get(1);
+        final int rows = mi.get(2);
+        final int a = 3;
+        final int l = a + columns;
+        final int x = l + columns;
+        float score = 0f;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns; c++) {
+                final float weight = c == 2 ? TITLE_WEIGHT : (c == 3 ? 1f : 0f);
+                if (weight == 0f) continue;
+                final int base = x + 3 * (p * columns + c);
+                final int tf = mi.get(base);
+                if (tf == 0) continue;
+                final int df = mi.get(base + 2);
+                final float idf = (float)Math.max(1e-3, Math.log((rows - df + 0.5) / (df + 0.5)));
+                final float avg = Math.max(1, mi.get(a + c));
+                score += weight * idf * (tf * (K1 + 1f)) / (tf + K1 * (1f - B + B * mi.get(l + c) / avg));
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Adds the given News to the archived News in the index.
+     * @param news News that has been archived
+     * @param fileName name of the archive file
+     */
+    @AnyThread
+    public void addArchived(@NonNull final News news, @NonNull final String fileName) {
+        final String title = news.getTitle() != null ? news.getTitle() : news.getTopline();
+        this.executor.execute(() -> {
+            try {
+                final String text = indexTextOf(news);
+                SQLiteDatabase db = this.databaseHelper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    db.delete(DOCS, COLUMN_SOURCE + "=? AND " + COLUMN_KEY + "=?", new String[] {ARCHIVE, fileName});
+                    ContentValues cv = new ContentValues(4);
+                    cv.put(COLUMN_SOURCE, ARCHIVE);
+                    cv.put(COLUMN_KEY, fileName);
+                    cv.put(COLUMN_TITLE, title);
+                    cv.put(COLUMN_TEXT, text);
+                    db.insert(DOCS, null, cv);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (RuntimeException e) {
+                if (BuildConfig.DEBUG) Log.e(TAG, "Failed to index archived " + fileName + ": " + e);
+            }
+        });
+    }
+
+    /**
+     * Replaces the indexed News of the Blob's Source with the News contained in the given Blob.<br>
+     * Does not do anything if the Blob has been indexed before with the same {@link Blob#getParseConfiguration(Context) parse configuration}.<br>
+     * {@link Source#VIDEO} and {@link Source#CHANNELS} are not indexed - see {@link SearchHelper#createSearchSuggestions(Context, Source, List, boolean)}.
+     * @param blob Blob
+     */
+    @AnyThread
+    public void add(@NonNull final Blob blob) {
+        final Source source = blob.getSource();
+        if (source == null || Source.VIDEO == source || Source.CHANNELS == source) return;
+        final Date date = blob.getDate();
+        final long ts = date != null ? date.getTime() : 0L;
+        final List<News> list = blob.getAllNews();
+        this.executor.execute(() -> {
+            try {
+                SQLiteDatabase db = this.databaseHelper.getWritableDatabase();
+                // the regions and the filters applied while parsing determine which News the Blob contains
+                final String config = Blob.getParseConfiguration(this.ctx);
+                if (ts > 0L && isIndexed(db, source, ts, config)) return;
+                final long start = BuildConfig.DEBUG ? System.currentTimeMillis() : 0L;
+                final String[] whereArgs = new String[] {source.name()};
+                db.beginTransaction();
+                try {
+                    db.delete(DOCS, COLUMN_SOURCE + "=?", whereArgs);
+                    final SQLiteStatement stmt = db.compileStatement(INSERT_STMT);
+                    final Set<String> keys = new HashSet<>(list.size());
+                    for (News news : list) {
+                        final String key = keyOf(news);
+                        // the same News may appear in the regional and in the non-regional part
+                        if (key == null || !keys.add(key)) continue;
+                        final String title = news.getTitle() != null ? news.getTitle() : news.getTopline();
+                        stmt.bindString(1, source.name());
+                        stmt.bindString(2, key);
+                        if (title != null) stmt.bindString(3, title); else stmt.bindNull(3);
+                        stmt.bindString(4, indexTextOf(news));
+                        stmt.executeInsert();
+                        stmt.clearBindings();
+                    }
+                    stmt.close();
+                    ContentValues cv = new ContentValues(3);
+                    cv.put(COLUMN_SOURCE, source.name());
+                    cv.put(COLUMN_TS, ts);
+                    cv.put(COLUMN_CONFIG, config);
+                    db.insertWithOnConflict(STATE, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if (BuildConfig.DEBUG) Log.i(TAG, "Indexed " + list.size() + " News of " + source + " in " + (System.currentTimeMillis() - start) + " ms");
+            } catch (RuntimeException e) {
+                if (BuildConfig.DEBUG) Log.e(TAG, "Failed to index " + source + ": " + e);
+            }
+        });
+    }
+
+    /**
+     * Closes the database; it will be re-opened when needed.
+     */
+    @AnyThread
+    public void close() {
+        this.executor.execute(() -> {
+            try {
+                this.databaseHelper.close();
+            } catch (Exception e) {
+                if (BuildConfig.DEBUG) Log.e(TAG, e.toString());
+            }
+        });
+    }
+
+    /**
+     * @param db SQLiteDatabase
+     * @param source Source
+     * @param ts timestamp of a Blob
+     * @param config parse configuration of that Blob
+     * @return {@code true} if the latest indexed Blob of the given Source has the given timestamp and parse configuration
+     */
+    private static boolean isIndexed(@NonNull SQLiteDatabase db, @NonNull Source source, long ts, @NonNull String config) {
+        try (Cursor c = db.query(STATE, new String[] {COLUMN_TS, COLUMN_CONFIG}, COLUMN_SOURCE + "=?", new String[] {source.name()}, null, null, null)) {
+            return c.moveToFirst() && c.getLong(0) == ts && config.equals(c.getString(1));
+        }
+    }
+
+    /**
+     * Removes an archived News from the index.
+     * @param fileName name of the archive file
+     */
+    @AnyThread
+    public void removeArchived(@NonNull final String fileName) {
+        this.executor.execute(() -> {
+            try {
+                this.databaseHelper.getWritableDatabase().delete(DOCS, COLUMN_SOURCE + "=? AND " + COLUMN_KEY + "=?", new String[] {ARCHIVE, fileName});
+            } catch (RuntimeException e) {
+                if (BuildConfig.DEBUG) Log.e(TAG, "Failed to remove archived " + fileName + ": " + e);
+            }
+        });
+    }
+
+    /**
+     * Searches the index.<br>
+     * Archived News whose files do not exist any more are removed from the index and not returned.
+     * @param query the words to search for
+     * @param limit max. number of Hits to return
+     * @return Hits in descending order of relevance
+     */
+    @NonNull
+    @WorkerThread
+    public List<Hit> search(@NonNull String query, @IntRange(from = 1) int limit) {
+        final String match = buildMatchExpression(query);
+        if (match == null) return Collections.emptyList();
+        final long start = BuildConfig.DEBUG ? System.currentTimeMillis() : 0L;
+        final List<Hit> hits = new ArrayList<>();
+        final File archiveDir = new File(this.ctx.getFilesDir(), Archive.DIR);
+        try (Cursor c = this.databaseHelper.getReadableDatabase().rawQuery(QUERY, new String[] {match})) {
+            while (c.moveToNext()) {
+                final String sourceName = c.getString(0);
+                final String key = c.getString(1);
+                Source source = null;
+                if (ARCHIVE.equals(sourceName)) {
+                    if (!new File(archiveDir, key).isFile()) {
+                        removeArchived(key);
+                        continue;
+                    }
+                } else {
+                    try {
+                        source = Source.valueOf(sourceName);
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+                }
+                hits.add(new Hit(source, key, c.getString(2), score(c.getBlob(3))));
+            }
+        } catch (RuntimeException e) {
+            if (BuildConfig.DEBUG) Log.e(TAG, "Search for \"" + query + "\" failed: " + e);
+        }
+        Collections.sort(hits);
+        if (BuildConfig.DEBUG) Log.i(TAG, "Found " + hits.size() + " hits for \"" + match + "\" in " + (System.currentTimeMillis() - start) + " ms");
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Searches the index on a background thread.
+     * @param query the words to search for
+     * @param limit max. number of Hits to return
+     * @param listener receives the Hits on the main thread
+     */
+    @AnyThread
+    public void searchAsync(@NonNull final String query, @IntRange(from = 1) final int limit, @NonNull final SearchListener listener) {
+        this.searchExecutor.execute(() -> {
+            final List<Hit> hits = search(query, limit);
+            this.handler.post(() -> listener.searchDone(query, hits));
+        });
+    }
+
+    /**
+     * Receives the result of {@link #searchAsync(String, int, SearchListener)}.
+     */
+    public interface SearchListener {
+
+        /**
+         * The search has been performed.
+         * @param query the words that have been searched for
+         * @param hits Hits in descending order of relevance
+         */
+        @MainThread
+        void searchDone(@NonNull String query, @NonNull List<Hit> hits);
+    }
+
+    /**
+     * A News that matches a query.
+     */
+    public static final class Hit implements Comparable<Hit> {
+
+        /** the Source, or {@code null} if the News is archived */
+        @Nullable private final Source source;
+        /** the {@link #keyOf(News) key} of the News, or the name of the archive file */
+        @NonNull private final String key;
+        @Nullable private final String title;
+        private final float score;
+
+        private Hit(@Nullable Source source, @NonNull String key, @Nullable String title, float score) {
+            super();
+            this.source = source;
+            this.key = key;
+            this.title = title;
+            this.score = score;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareTo(@NonNull Hit o) {
+            return Float.compare(o.score, this.score);
+        }
+
+        /**
+         * @return the {@link #keyOf(News) key} of the News, or the name of the archive file
+         */
+        @NonNull
+        public String getKey() {
+            return this.key;
+        }
+
+        public float getScore() {
+            return this.score;
+        }
+
+        /**
+         * @return the Source, or {@code null} if the News is archived
+         */
+        @Nullable
+        public Source getSource() {
+            return this.source;
+        }
+
+        @Nullable
+        public String getTitle() {
+            return this.title;
+        }
+
+        /**
+         * @return {@code true} if the News is archived
+         */
+        public boolean isArchived() {
+            return this.source == null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @NonNull
+        public String toString() {
+            return "Hit{" + (this.source != null ? this.source : ARCHIVE) + ", \"" + this.title + "\", " + this.score + '}';
+        }
+    }
+
+    /**
+     * A temporary Filter that accepts the News that the index has found for a query.<br>
+     * As the index might not yet contain the very latest News, those that contain the query text are accepted, too.
+     */
+    public static final class HitFilter implements Filter {
+
+        @NonNull private final TextFilter textFilter;
+        @NonNull private final Set<String> keys;
+
+        /**
+         * Constructor.
+         * @param textFilter the TextFilter that would have been used without an index
+         * @param hits Hits
+         */
+        public HitFilter(@NonNull TextFilter textFilter, @NonNull List<Hit> hits) {
+            super();
+            this.textFilter = textFilter;
+            this.keys = new HashSet<>(hits.size());
+            for (Hit hit : hits) {
+                if (!hit.isArchived()) this.keys.add(hit.key);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean accept(@Nullable News news) {
+            if (news == null) return false;
+            final String key = keyOf(news);
+            return (key != null && this.keys.contains(key)) || this.textFilter.accept(news);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareTo(@NonNull Filter o) {
+            return getText().toString().compareTo(o.getText().toString());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public CharSequence getText() {
+            return this.textFilter.getText();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isEditable() {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isTemporary() {
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @NonNull
+        public String toString() {
+            return "HitFilter \"" + getText() + "\" (" + this.keys.size() + " hits)";
+        }
+    }
+
+    /**
+     * See {@link SQLiteOpenHelper}.
+     */
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+
+        /**
+         * Constructor.
+         * @param context Context
+         */
+        DatabaseHelper(@NonNull Context context) {
+            super(context, INDEX_DB, null, DATABASE_VERSION);
+            // lets searches read while the index is being modified
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onCreate(@NonNull SQLiteDatabase db) {
+            final String columns = COLUMN_SOURCE + ',' + COLUMN_KEY + ',' + COLUMN_TITLE + ',' + COLUMN_TEXT + ",notindexed=" + COLUMN_SOURCE + ",notindexed=" + COLUMN_KEY;
+            try {
+                // the unicode61 tokenizer folds case and removes diacritics
+                db.execSQL("CREATE VIRTUAL TABLE " + DOCS + " USING fts4(" + columns + ",tokenize=unicode61);");
+            } catch (SQLiteException e) {
+                if (BuildConfig.DEBUG) Log.w(TAG, "unicode61 tokenizer not available: " + e);
+                db.execSQL("CREATE VIRTUAL TABLE " + DOCS + " USING fts4(" + columns + ");");
+            }
+            db.execSQL("CREATE TABLE " + STATE + " (" + COLUMN_SOURCE + " TEXT PRIMARY KEY," + COLUMN_TS + " INTEGER," + COLUMN_CONFIG + " TEXT);");
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onDowngrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+            onVersionChange(db);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+            onVersionChange(db);
+        }
+
+        private void onVersionChange(@NonNull SQLiteDatabase db) {
+            db.execSQL("DROP TABLE IF EXISTS " + DOCS);
+            db.execSQL("DROP TABLE IF EXISTS " + STATE);
+            onCreate(db);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.freehamburger.util;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.ParseException;
+
+/**
+ * Thread-safe parsing and formatting of the fixed date formats that the app has to deal with.<br>
+ * In contrast to {@link java.text.SimpleDateFormat}, the methods here neither need to be synchronized nor allocate objects while parsing.
+ */
+public final class DateUtil {
+
+    private static final long MS_PER_DAY = 86_400_000L;
+    private static final String[] DAYS = new String[] {"Thu", "Fri", "Sat", "Sun", "Mon", "Tue", "Wed"};
+    private static final String[] MONTHS = new String[] {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private DateUtil() {
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 for the given date of the proleptic Gregorian calendar.<br>
+     * See <a href="https://howardhinnant.github.io/date_algorithms.html#days_from_civil">here</a>.
+     * @param y year
+     * @param m month [1..12]
+     * @param d day of month [1..31]
+     * @return days since the epoch
+     */
+    private static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yoe = y - era * 400;
+        final int doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097L + doe - 719_468L;
+    }
+
+    /**
+     * Formats a timestamp as a HTTP date, e.g. "Sat, 29 Oct 1994 19:43:31 GMT".<br>
+     * See <a href="https://www.rfc-editor.org/rfc/rfc9110#section-5.6.7">here</a>.
+     * @param ts timestamp (must not be before 1970-01-01)
+     * @return HTTP date
+     */
+    @NonNull
+    @AnyThread
+    public static String formatHttpDate(long ts) {
+        final long days = Math.floorDiv(ts, MS_PER_DAY);
+        final int msOfDay = (int)Math.floorMod(ts, MS_PER_DAY);
+        // see https://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        final long z = days + 719_468L;
+        final long era = (z >= 0 ? z : z - 146_096L) / 146_097L;
+        final int doe = (int)(z - era * 146_097L);
+        final int yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final int mp = (5 * doy + 2) / 153;
+        final int d = doy - (153 * mp + 2) / 5 + 1;
+        final int m = mp < 10 ? mp + 3 : mp - 9;
+        final long y = yoe + era * 400L + (m <= 2 ? 1 : 0);
+        final int secondOfDay = msOfDay / 1000;
+        final StringBuilder sb = new StringBuilder(29);
+        sb.append(DAYS[(int)Math.floorMod(days, 7L)]).append(", ");
+        pad2(sb, d).append(' ').append(MONTHS[m - 1]).append(' ').append(y).append(' ');
+        pad2(sb, secondOfDay / 3600).append(':');
+        pad2(sb, (secondOfDay / 60) % 60).append(':');
+        pad2(sb, secondOfDay % 60).append(" GMT");
+        return sb.toString();
+    }
+
+    /**
+     * Appends a number with at least two digits.
+     * @param sb StringBuilder to append to
+     * @param n number [0..99]
+     * @return StringBuilder
+     */
+    @NonNull
+    private static StringBuilder pad2(@NonNull StringBuilder sb, int n) {
+        if (n < 10) sb.append('0');
+        return sb.append(n);
+    }
+
+    /**
+     * Parses a given number of decimal digits.
+     * @param s CharSequence
+     * @param pos position of the first digit
+     * @param count number of digits
+     * @return parsed value
+     * @throws ParseException if there is a non-digit char in the given range
+     */
+    private static int parseDigits(@NonNull CharSequence s, int pos, int count) throws ParseException {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new ParseException("Digit expected", i);
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parses an ISO 8601 date like "2017-11-16T11:54:03.882+01:00" into a timestamp.<br>
+     * Accepted formats are "yyyy-MM-dd'T'HH:mm:ss" followed by optional fractional seconds (only the first 3 digits are evaluated)
+     * and a mandatory time zone designator ("Z", "&plusmn;HH:mm", "&plusmn;HHmm" or "&plusmn;HH").
+     * @param s date string
+     * @return timestamp
+     * @throws ParseException if the date string cannot be parsed
+     */
+    @AnyThread
+    public static long parseIso8601(@Nullable final CharSequence s) throws ParseException {
+        if (s == null) throw new ParseException("null", 0);
+        final int n = s.length();
+        if (n < 20) throw new ParseException("Too short: \"" + s + "\"", n);
+        if (s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T' || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            throw new ParseException("Unparseable date: \"" + s + "\"", 0);
+        }
+        final int year = parseDigits(s, 0, 4);
+        final int month = parseDigits(s, 5, 2);
+        final int day = parseDigits(s, 8, 2);
+        final int hour = parseDigits(s, 11, 2);
+        final int minute = parseDigits(s, 14, 2);
+        final int second = parseDigits(s, 17, 2);
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+            throw new ParseException("Invalid date: \"" + s + "\"", 0);
+        }
+        int pos = 19;
+        int millis = 0;
+        if (s.charAt(pos) == '.' || s.charAt(pos) == ',') {
+            pos++;
+            int digits = 0;
+            for (; pos < n; pos++) {
+                char c = s.charAt(pos);
+                if (c < '0' || c > '9') break;
+                if (digits < 3) millis = millis * 10 + (c - '0');
+                digits++;
+            }
+            if (digits == 0) throw new ParseException("Fraction expected: \"" + s + "\"", pos);
+            for (; digits < 3; digits++) millis *= 10;
+        }
+        if (pos >= n) throw new ParseException("Time zone expected: \"" + s + "\"", pos);
+        final char tz = s.charAt(pos);
+        int offsetMinutes;
+        if (tz == 'Z' || tz == 'z') {
+            if (pos + 1 != n) throw new ParseException("Unparseable date: \"" + s + "\"", pos + 1);
+            offsetMinutes = 0;
+        } else if (tz == '+' || tz == '-') {
+            final int rest = n - pos - 1;
+            if (rest == 2) {
+                offsetMinutes = parseDigits(s, pos + 1, 2) * 60;
+            } else if (rest == 4) {
+                offsetMinutes = parseDigits(s, pos + 1, 2) * 60 + parseDigits(s, pos + 3, 2);
+            } else if (rest == 5 && s.charAt(pos + 3) == ':') {
+                offsetMinutes = parseDigits(s, pos + 1, 2) * 60 + parseDigits(s, pos + 4, 2);
+            } else {
+                throw new ParseException("Invalid time zone: \"" + s + "\"", pos);
+            }
+            if (tz == '-') offsetMinutes = -offsetMinutes;
+        } else {
+            throw new ParseException("Invalid time zone: \"" + s + "\"", pos);
+        }
+        final long days = daysFromCivil(year, month, day);
+        return days * MS_PER_DAY + ((hour * 60L + minute - offsetMinutes) * 60L + second) * 1000L + millis;
+    }
+}
@@ -111,6 +111,12 @@ public abstract class Downloader extends AsyncTask<Downloader.Order, Float, Down
         public final long contentLength;
         /** the uri that supplied the data (not necessarily the uri that the user had requested; there might have been a redirect) */
         public final String sourceUri;
+        /** the "ETag" response header */
+        @Nullable
+        public final String etag;
+        /** the "Last-Modified" response header */
+        @Nullable
+        public final String lastModified;
         final String contentType;
         @Nullable
         private DownloaderListener listener;
@@ -131,6 +137,8 @@ public abstract class Downloader extends AsyncTask<Downloader.Order, Float, Down
             this.file = null;
             this.contentType = null;
             this.contentLength = 0L;
+            this.etag = null;
+            this.lastModified = null;
         }
 
         /**
@@ -144,6 +152,22 @@ public abstract class Downloader extends AsyncTask<Downloader.Order, Float, Down
          * @param listener optional DownloaderListener
          */
         Result(String sourceUri, int rc, @Nullable String msg, @Nullable File file, @Nullable String contentType, long contentLength, @Nullable DownloaderListener listener) {
+            this(sourceUri, rc, msg, file, contentType, contentLength, null, null, listener);
+        }
+
+        /**
+         * Constructor.
+         * @param sourceUri the uri that supplied the data (not necessarily the uri that the user had requested; there might have been a redirect)
+         * @param rc HTTP status code
+         * @param msg HTTP status message
+         * @param file the file
+         * @param contentType the content type
+         * @param contentLength content length
+         * @param etag "ETag" response header
+         * @param lastModified "Last-Modified" response header
+         * @param listener optional DownloaderListener
+         */
+        Result(String sourceUri, int rc, @Nullable String msg, @Nullable File file, @Nullable String contentType, long contentLength, @Nullable String etag, @Nullable String lastModified, @Nullable DownloaderListener listener) {
             super();
             this.sourceUri = sourceUri;
             this.rc = rc;
@@ -151,6 +175,8 @@ public abstract class Downloader extends AsyncTask<Downloader.Order, Float, Down
             this.file = file;
             this.contentType = contentType;
             this.contentLength = contentLength;
+            this.etag = etag;
+            this.lastModified = lastModified;
             this.listener = listener;
         }
 
@@ -184,6 +210,12 @@ public abstract class Downloader extends AsyncTask<Downloader.Order, Float, Down
         final long mostRecentUpdate;
         /** if this is {@code true} then a "Transfer-Encoding: identity" request header will be added */
         final boolean preventChunky;
+        /** the "ETag" that had been received together with the local data; will set the "If-None-Match" header */
+        @Nullable
+        final String etag;
+        /** the "Last-Modified" value that had been received together with the local data; preferred over {@link #mostRecentUpdate} */
+        @Nullable
+        final String lastModified;
 
         /**
          * Constructor.
@@ -196,6 +228,21 @@ public abstract class Downloader extends AsyncTask<Downloader.Order, Float, Down
          * @throws NullPointerException if {@code url} is {@code null}
          */
         public Order(@NonNull String url, @NonNull String localPath, @IntRange(from = 0) long mostRecentUpdate, boolean preventChunky, @NonNull DownloaderListener listener) {
+            this(url, localPath, mostRecentUpdate, null, preventChunky, listener);
+        }
+
+        /**
+         * Constructor.
+         * @param url       URL to download from (non-null)
+         * @param localPath local path for the data to be stored in (non-null)
+         * @param mostRecentUpdate timestamp of most recent update of the data (0 if not known)
+         * @param validators optional "ETag" and "Last-Modified" values that had been received together with the local data (elements may be {@code null})
+         * @param preventChunky {@code true} to add a "Transfer-Encoding: identity" request header
+         * @param listener  the listener to receive a notification upon completion
+         * @throws IllegalArgumentException if {@code url} does not start with 'http'
+         * @throws NullPointerException if {@code url} is {@code null}
+         */
+        public Order(@NonNull String url, @NonNull String localPath, @IntRange(from = 0) long mostRecentUpdate, @Nullable @Size(2) String[] validators, boolean preventChunky, @NonNull DownloaderListener listener) {
             super();
             // as okhttp3.HttpUrl.Builder.parse() checks the url for http (and throws an IllegalArgumentException if it's not http), we might as well do it here…
             if (!url.toLowerCase(java.util.Locale.US).startsWith("http")) throw new IllegalArgumentException("Not a http(s) URL: " + url);
@@ -203,6 +250,8 @@ public abstract class Downloader extends AsyncTask<Downloader.Order, Float, Down
             this.localPath = localPath;
             this.mostRecentUpdate = mostRecentUpdate;
             this.preventChunky = preventChunky;
+            this.etag = validators != null ? validators[0] : null;
+            this.lastModified = validators != null ? validators[1] : null;
             this.listener = listener;
         }
     }
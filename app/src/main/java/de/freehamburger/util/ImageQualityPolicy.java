@@ -0,0 +1,213 @@
+package de.freehamburger.util;
+
+import android.Manifest;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.SystemClock;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.freehamburger.BuildConfig;
+import de.freehamburger.model.TeaserImage;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Decides which {@link TeaserImage} variants to load, based on the type of the network connection and on the measured throughput.<br>
+ * On metered or slow connections, the smallest variants are preferred;
+ * otherwise the variants that fit the screen best are used.<br>
+ * The throughput is measured while pictures are downloaded (see {@link OkHttpDownloaderForPicasso}),
+ * but only while there is just one download, because parallel downloads share the bandwidth.<br>
+ * All methods are thread-safe.
+ */
+public final class ImageQualityPolicy {
+
+    private static final String TAG = "ImageQualityPolicy";
+    /** connections with a lower throughput [bytes/s] are considered slow (about 1.5 MBit/s) */
+    private static final long SLOW = 192_000L;
+    /** downloads of fewer bytes are not used to measure the throughput because they are dominated by latency */
+    private static final long MIN_SAMPLE_SIZE = 8_192L;
+    /** the weight of the most recent throughput sample */
+    private static final float SMOOTHING = 0.25f;
+    /** the network type is re-evaluated after this period [ms] */
+    private static final long NETWORK_CHECK_INTERVAL = 2_000L;
+
+    /** the number of {@link MeteredResponseBody MeteredResponseBodies} that have not been closed yet */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** smoothed throughput in bytes/s; 0 if not known yet */
+    private float throughput;
+    private boolean metered;
+    /** the point in time when {@link #metered} has been evaluated most recently */
+    private long meteredChecked;
+
+    /**
+     * Constructor.
+     */
+    public ImageQualityPolicy() {
+        super();
+    }
+
+    /**
+     * Adds a throughput sample.
+     * @param bytes number of bytes received
+     * @param ms duration of the download in ms
+     */
+    @AnyThread
+    public synchronized void addSample(long bytes, long ms) {
+        if (bytes < MIN_SAMPLE_SIZE || ms <= 0L) return;
+        float sample = bytes * 1_000f / ms;
+        if (this.throughput <= 0f) this.throughput = sample;
+        else this.throughput += SMOOTHING * (sample - this.throughput);
+        if (BuildConfig.DEBUG) Log.i(TAG, "Throughput: " + Math.round(this.throughput / 1_000f) + " kB/s (latest sample: " + Math.round(sample / 1_000f) + " kB/s)");
+    }
+
+    /**
+     * Returns the smoothed throughput.
+     * @return bytes/s or 0 if not known
+     */
+    @AnyThread
+    @IntRange(from = 0)
+    public synchronized long getThroughput() {
+        return Math.round(this.throughput);
+    }
+
+    /**
+     * Selects the variant of a TeaserImage that should be loaded.
+     * @param ctx Context
+     * @param image TeaserImage
+     * @param width width of the View that the image will be displayed in
+     * @param preferredFormat format
+     * @return MeasuredImage
+     * @throws NullPointerException if {@code ctx} or {@code image} are {@code null}
+     */
+    @Nullable
+    @RequiresPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+    public TeaserImage.MeasuredImage getImage(@NonNull Context ctx, @NonNull TeaserImage image, int width, @TeaserImage.Format int preferredFormat) {
+        if (preferSmall(ctx)) return image.getSmallestImage(preferredFormat);
+        return image.getBestImageForWidth(width, preferredFormat);
+    }
+
+    /**
+     * Determines whether the connection is fast enough to replace small image variants by better ones.
+     * @param ctx Context
+     * @return {@code true} if the connection is not metered and is not known to be slow
+     * @throws NullPointerException if {@code ctx} is {@code null}
+     */
+    @RequiresPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+    public boolean isUpgradeAllowed(@NonNull Context ctx) {
+        return !preferSmall(ctx);
+    }
+
+    /**
+     * Determines whether small image variants should be preferred.
+     * @param ctx Context
+     * @return {@code true} if the connection is metered or known to be slow
+     * @throws NullPointerException if {@code ctx} is {@code null}
+     */
+    @RequiresPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+    private synchronized boolean preferSmall(@NonNull Context ctx) {
+        final long now = SystemClock.elapsedRealtime();
+        if (now - this.meteredChecked > NETWORK_CHECK_INTERVAL || this.meteredChecked == 0L) {
+            ConnectivityManager connMgr = (ConnectivityManager) ctx.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+            this.metered = connMgr != null && connMgr.isActiveNetworkMetered();
+            this.meteredChecked = now;
+        }
+        return this.metered || (this.throughput > 0f && this.throughput < SLOW);
+    }
+
+    /**
+     * Wraps a ResponseBody to measure the throughput while it is being read.
+     */
+    static final class MeteredResponseBody extends ResponseBody {
+
+        @NonNull private final ResponseBody body;
+        @NonNull private final ImageQualityPolicy policy;
+        private BufferedSource source;
+
+        /**
+         * Constructor.
+         * @param body ResponseBody to wrap
+         * @param policy ImageQualityPolicy to report to
+         */
+        MeteredResponseBody(@NonNull ResponseBody body, @NonNull ImageQualityPolicy policy) {
+            super();
+            this.body = body;
+            this.policy = policy;
+            policy.inFlight.incrementAndGet();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long contentLength() {
+            return this.body.contentLength();
+        }
+
+        /** {@inheritDoc} */
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return this.body.contentType();
+        }
+
+        /** {@inheritDoc} */
+        @NonNull
+        @Override
+        public BufferedSource source() {
+            if (this.source == null) {
+                final ImageQualityPolicy policy = this.policy;
+                this.source = Okio.buffer(new ForwardingSource(this.body.source()) {
+                    /** the number of bytes received after the first chunk */
+                    private long received;
+                    /** the point in time when the first chunk has been received; the time before that is latency, not throughput */
+                    private long firstReceived;
+                    /** the point in time when data has been received most recently */
+                    private long lastReceived;
+                    /** {@code true} if another download has been running at the same time */
+                    private boolean overlapped;
+                    private boolean reported;
+
+                    @Override
+                    public void close() throws IOException {
+                        // the decoder might not have read up to the end
+                        report(this.lastReceived);
+                        super.close();
+                    }
+
+                    @Override
+                    public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                        long n = super.read(sink, byteCount);
+                        if (policy.inFlight.get() > 1) this.overlapped = true;
+                        if (n > 0L) {
+                            if (this.firstReceived == 0L) this.firstReceived = SystemClock.elapsedRealtime();
+                            else this.received += n;
+                            this.lastReceived = SystemClock.elapsedRealtime();
+                        } else if (n < 0L) {
+                            report(SystemClock.elapsedRealtime());
+                        }
+                        return n;
+                    }
+
+                    private void report(long finished) {
+                        if (this.reported) return;
+                        this.reported = true;
+                        policy.inFlight.decrementAndGet();
+                        if (this.overlapped || this.received <= 0L) return;
+                        policy.addSample(this.received, finished - this.firstReceived);
+                    }
+                });
+            }
+            return this.source;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import androidx.annotation.VisibleForTesting;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -22,6 +23,7 @@ import java.security.cert.CertPathValidatorException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
+import java.util.concurrent.locks.Lock;
 import java.util.zip.GZIPInputStream;
 
 import javax.net.ssl.SSLHandshakeException;
@@ -29,6 +31,9 @@ import javax.net.ssl.SSLHandshakeException;
 import de.freehamburger.App;
 import de.freehamburger.BuildConfig;
 import de.freehamburger.R;
+import de.freehamburger.model.Blob;
+import de.freehamburger.model.BlobParser;
+import de.freehamburger.model.Source;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -42,13 +47,16 @@ import okhttp3.ResponseBody;
 public class OkHttpDownloader extends Downloader {
 
     private static final String TAG = "OkHttpDownloader";
+    /** suffix of temporary files that downloads are written to */
+    public static final String TMP_SUFFIX = ".part";
     /** read buffer size; during tests, the maximum number of bytes read was 7786, even with READ_BUFFER set to 16834 */
     private static final int READ_BUFFER = 8192;
 
     /**
      * HTTP Date format<br>
      * e.g.: If-Modified-Since: Sat, 29 Oct 1994 19:43:31 GMT<br>
-     * See <a href="https://tools.ietf.org/html/rfc2616#section-14.25">here</a>
+     * See <a href="https://tools.ietf.org/html/rfc2616#section-14.25">here</a><br>
+     * Not used for requests anymore; see {@link DateUtil#formatHttpDate(long)}.
      */
     @SuppressLint("SimpleDateFormat")
     @VisibleForTesting
@@ -60,6 +68,8 @@ public class OkHttpDownloader extends Downloader {
     /** "has not been found" */
     private final String errorUnknownHost;
     private final OkHttpClient client;
+    /** application Context; needed to parse the data of a {@link Source} while it is being downloaded */
+    private final Context ctx;
     private Reference<DownloaderListener> listener;
 
     /**
@@ -68,7 +78,8 @@ public class OkHttpDownloader extends Downloader {
      */
     public OkHttpDownloader(@NonNull Context ctx) {
         super();
-        this.client = ((App)ctx.getApplicationContext()).getOkHttpClient();
+        this.ctx = ctx.getApplicationContext();
+        this.client = ((App)this.ctx).getOkHttpClient();
         this.errorUnknownHost = ctx.getString(R.string.error_unknown_host);
     }
 
@@ -93,19 +104,25 @@ public class OkHttpDownloader extends Downloader {
         }
 
         if (f.length() > 0L) {
+            if (order.etag != null) requestBuilder.addHeader("If-None-Match", order.etag);
             // don't use lastModified() for .source files which indicates the newest article in that file; instead use App.getMostRecentUpdate(Source)
             final String ifModifiedSince;
-            if (order.mostRecentUpdate > 0L) {
-                ifModifiedSince = Util.formatTs(DF, order.mostRecentUpdate, null);
+            if (order.lastModified != null) {
+                ifModifiedSince = order.lastModified;
+            } else if (order.mostRecentUpdate > 0L) {
+                ifModifiedSince = DateUtil.formatHttpDate(order.mostRecentUpdate);
             } else {
-                ifModifiedSince = Util.formatTs(DF, f.lastModified(), null);
+                ifModifiedSince = DateUtil.formatHttpDate(f.lastModified());
             }
             if (ifModifiedSince != null) requestBuilder.addHeader("If-Modified-Since", ifModifiedSince);
         }
         //
         Request request = requestBuilder.build();
+        // the data is written to a temporary file first which replaces the local file only after the download has succeeded
+        final File tmp = new File(f.getParentFile(), f.getName() + '.' + Thread.currentThread().getId() + TMP_SUFFIX);
         Response response;
         ResponseBody body = null;
+        FileOutputStream fout = null;
         OutputStream out = null;
         InputStream in = null;
         try {
@@ -117,6 +134,9 @@ public class OkHttpDownloader extends Downloader {
                     if (response.code() >= 400) Log.w(TAG, "Failed to load from " + order.url + ": HTTP " + response.code() + " " + response.message());
                 }
                 publishProgress(1f);
+                if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return new Result(order.url, response.code(), response.message(), f, null, 0L, response.header("ETag"), response.header("Last-Modified"), order.listener);
+                }
                 return new Result(order.url, response.code(), response.message(), f, null, 0L, order.listener);
             }
             MediaType mediaType = body.contentType();
@@ -124,7 +144,8 @@ public class OkHttpDownloader extends Downloader {
             // Whether a content-length value is returned or not apparently does not depend on the request headers;
             // instead, it seems that all requests except the ones for Source.HOME return a content length
             final long contentLength = body.contentLength();
-            out = new BufferedOutputStream(new FileOutputStream(f));
+            fout = new FileOutputStream(tmp);
+            out = new BufferedOutputStream(fout);
             final boolean gzip = "gzip".equals(response.header("Content-Encoding"));
             if (gzip) {
                 in = new CountingGZIPInputStream(body.byteStream());
@@ -132,29 +153,30 @@ public class OkHttpDownloader extends Downloader {
                 in = body.byteStream();
             }
 
-            long totalBytes = 0L;
-            long latestTotal = 0L;
-            // call publishProgress() only if progress has increased by at least 1 %
-            final long minAmountForProgressReporting = contentLength / 100L;
-            //
-            for (byte[] buffer = new byte[READ_BUFFER]; ; ) {
-                int read = in.read(buffer);
-                if (read <= 0) break;
-                out.write(buffer, 0, read);
-                if (contentLength <= 0L) continue;
-                // publish progress
-                if (!gzip) totalBytes += read;
-                long total = gzip ? ((CountingGZIPInputStream)in).getTotal() : totalBytes;
-                if (total - latestTotal > minAmountForProgressReporting) publishProgress((float)total / (float)contentLength);
-                latestTotal = total;
+            final TeeInputStream tee = new TeeInputStream(in, out, contentLength);
+            final Source source = Source.getSourceFromFile(f);
+            final Blob blob;
+            if (source != null) {
+                // parse the data while it is being downloaded; the resulting Blob will be passed on via the BlobCache
+                blob = BlobParser.parseStream(this.ctx, source, tee);
+            } else {
+                blob = null;
             }
+            // copy whatever has not been read yet (everything if the data has not been parsed)
+            tee.drain();
+            out.flush();
+            // make sure that the data has reached the disk before the local file is replaced
+            fout.getFD().sync();
             Util.close(out, in, body);
+            out = null;
+            replace(tmp, f);
+            if (blob != null) BlobParser.parsedWhileDownloading(this.ctx, blob, f);
             publishProgress(1f);
-            return new Result(order.url, response.code(), null, f, mediaType != null ? mediaType.toString() : null, contentLength, order.listener);
+            return new Result(order.url, response.code(), null, f, mediaType != null ? mediaType.toString() : null, contentLength, response.header("ETag"), response.header("Last-Modified"), order.listener);
         } catch (UnknownHostException e) {
             if (BuildConfig.DEBUG) Log.e(TAG, e.toString());
             Util.close(in, body, out);
-            Util.deleteFile(f);
+            Util.deleteFile(tmp);
             int doubleSlash = order.url.indexOf("//");
             int singleSlash = order.url.indexOf('/', doubleSlash + 2);
             String msg;
@@ -168,7 +190,7 @@ public class OkHttpDownloader extends Downloader {
         } catch (SSLHandshakeException e) {
             if (BuildConfig.DEBUG) Log.e(TAG, e.toString(), e);
             Util.close(in, body, out);
-            Util.deleteFile(f);
+            Util.deleteFile(tmp);
             CertPathValidatorException cpve = Util.getSpecificCause(e, CertPathValidatorException.class);
             StringBuilder msg = new StringBuilder();
             if (cpve != null) {
@@ -185,7 +207,7 @@ public class OkHttpDownloader extends Downloader {
         } catch (Exception e) {
             if (BuildConfig.DEBUG) Log.e(TAG, e.toString());
             Util.close(in, body, out);
-            Util.deleteFile(f);
+            Util.deleteFile(tmp);
             String msg = e.getMessage();
             if (TextUtils.isEmpty(msg)) msg = e.toString();
             publishProgress(1f);
@@ -193,6 +215,25 @@ public class OkHttpDownloader extends Downloader {
         }
     }
 
+    /**
+     * Replaces a file with another one.<br>
+     * If the file to replace is the local file of a {@link Source}, this happens while holding the Source's write lock.
+     * @param tmp file to rename
+     * @param f file to replace
+     * @throws IOException if the file could not be replaced
+     */
+    private static void replace(@NonNull File tmp, @NonNull File f) throws IOException {
+        final Source source = Source.getSourceFromFile(f);
+        final Lock writeLock = source != null ? source.getLock().writeLock() : null;
+        if (writeLock != null) writeLock.lock();
+        try {
+            // renaming within the same directory is atomic
+            if (!tmp.renameTo(f)) throw new IOException("Failed to rename " + tmp + " to " + f);
+        } finally {
+            if (writeLock != null) writeLock.unlock();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void onProgressUpdate(Float... values) {
@@ -202,6 +243,99 @@ public class OkHttpDownloader extends Downloader {
         l.downloadProgressed(values[0]);
     }
 
+    /**
+     * An InputStream that copies all data read to an OutputStream and publishes the download progress.
+     */
+    private final class TeeInputStream extends FilterInputStream {
+
+        @NonNull private final OutputStream out;
+        private final long contentLength;
+        /** call publishProgress() only if progress has increased by at least 1 % */
+        private final long minAmountForProgressReporting;
+        private long totalBytes;
+        private long latestTotal;
+
+        /**
+         * Constructor.
+         * @param in InputStream to read from
+         * @param out OutputStream to copy to
+         * @param contentLength number of bytes that will be transmitted (may be &lt;= 0 if not known)
+         */
+        private TeeInputStream(@NonNull InputStream in, @NonNull OutputStream out, long contentLength) {
+            super(in);
+            this.out = out;
+            this.contentLength = contentLength;
+            this.minAmountForProgressReporting = contentLength / 100L;
+        }
+
+        /**
+         * Reads the remaining data.
+         * @throws IOException if an I/O error occurs
+         */
+        private void drain() throws IOException {
+            for (byte[] buffer = new byte[READ_BUFFER]; ; ) {
+                if (read(buffer, 0, buffer.length) < 0) break;
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Publishes the progress.
+         * @param read number of bytes that have just been read
+         */
+        private void progressed(int read) {
+            if (this.contentLength <= 0L) return;
+            // contentLength refers to the transmitted (possibly compressed) data
+            this.totalBytes += read;
+            long total = super.in instanceof CountingGZIPInputStream ? ((CountingGZIPInputStream)super.in).getTotal() : this.totalBytes;
+            if (total - this.latestTotal > this.minAmountForProgressReporting) {
+                publishProgress((float)total / (float)this.contentLength);
+                this.latestTotal = total;
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                this.out.write(b);
+                progressed(1);
+            }
+            return b;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                this.out.write(b, off, read);
+                progressed(read);
+            }
+            return read;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0L) return 0L;
+            // skipped data must be copied, too
+            final byte[] buffer = new byte[(int)Math.min(n, READ_BUFFER)];
+            long skipped = 0L;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+                if (read < 0) break;
+                skipped += read;
+            }
+            return skipped;
+        }
+    }
 
     /**
      * A GZIPInputStream that keeps track of the number of bytes read.
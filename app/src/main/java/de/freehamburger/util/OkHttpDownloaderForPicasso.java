@@ -11,6 +11,7 @@ import de.freehamburger.BuildConfig;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * Simple synchronuous Downloader to be used by Picasso.
@@ -18,6 +19,8 @@ import okhttp3.Response;
 public class OkHttpDownloaderForPicasso implements com.squareup.picasso.Downloader {
 
     private OkHttpClient client;
+    /** receives the throughput of the downloads */
+    @NonNull private final ImageQualityPolicy imageQualityPolicy;
 
     /**
      * Constructor.
@@ -26,7 +29,9 @@ public class OkHttpDownloaderForPicasso implements com.squareup.picasso.Download
      */
     public OkHttpDownloaderForPicasso(@NonNull Context ctx) {
         super();
-        this.client = ((App)ctx.getApplicationContext()).getOkHttpClient();
+        App app = (App)ctx.getApplicationContext();
+        this.client = app.getOkHttpClient();
+        this.imageQualityPolicy = app.getImageQualityPolicy();
     }
 
 
@@ -38,7 +43,11 @@ public class OkHttpDownloaderForPicasso implements com.squareup.picasso.Download
             // on an emulator instance (API 31) with exoplayer 2.18.2 there once was
             // E/HamburgerService: Loading image from 'https://www.tagesschau.de/…/….jpg' failed: java.lang.IllegalStateException: cache is closed
             // but this could not be reproduced
-            return this.client.newCall(request).execute();
+            final Response response = this.client.newCall(request).execute();
+            // measure the throughput only if the data actually comes from the network
+            final ResponseBody body = response.body();
+            if (body == null || response.networkResponse() == null || response.cacheResponse() != null) return response;
+            return response.newBuilder().body(new ImageQualityPolicy.MeteredResponseBody(body, this.imageQualityPolicy)).build();
         } catch (IllegalStateException ise) {
             if (BuildConfig.DEBUG) Log.e(getClass().getSimpleName(), ise.toString(), ise);
             return new Response.Builder().code(HttpURLConnection.HTTP_INTERNAL_ERROR).message(ise.toString()).request(request).build();
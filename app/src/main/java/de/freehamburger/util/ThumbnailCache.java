@@ -0,0 +1,381 @@
+package de.freehamburger.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Request;
+import com.squareup.picasso.RequestHandler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.freehamburger.BuildConfig;
+
+/**
+ * Stores pictures on disk in the size they have been displayed in, so that they can be shown again without
+ * having to decode the original files.<br>
+ * The entries are keyed by url plus size. Their order of use is recorded in a journal file;
+ * the least recently used entries are removed once the size of the cache exceeds its quota.<br>
+ * The cache directory is not trimmed by {@link Util#deleteOldestCacheFiles(android.content.Context, long)}
+ * unless all cache files are to be deleted.<br>
+ * All public methods are thread-safe.
+ */
+public final class ThumbnailCache {
+
+    private static final String TAG = "ThumbnailCache";
+    private static final String JOURNAL = "journal";
+    private static final String SUFFIX = ".jpg";
+    private static final String SUFFIX_TEMP = ".tmp";
+    private static final char OP_WRITE = 'W';
+    private static final char OP_READ = 'R';
+    private static final char OP_DELETE = 'D';
+    private static final int JPEG_QUALITY = 85;
+    /** the journal will be rewritten if it contains more than this many lines per entry */
+    private static final int MAX_JOURNAL_LINES_PER_ENTRY = 4;
+    /** writes the thumbnails */
+    private static final ThreadPoolExecutor WRITER = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private static final BitmapFactory.Options OPTS = new BitmapFactory.Options();
+
+    static {
+        WRITER.allowCoreThreadTimeOut(true);
+        OPTS.inPreferredConfig = Bitmap.Config.RGB_565;
+    }
+
+    @NonNull private final File dir;
+    @NonNull private final File journal;
+    @IntRange(from = 1) private final long maxSize;
+    /** file names mapped to file sizes, least recently used first */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /** the sum of the sizes in {@link #entries} */
+    private long size;
+    /** the number of lines in the {@link #journal} */
+    private int journalLines;
+    private boolean opened;
+
+    /**
+     * Constructor.
+     * @param dir directory to store the thumbnails in
+     * @param maxSize max. size in bytes
+     * @throws NullPointerException if {@code dir} is {@code null}
+     */
+    public ThumbnailCache(@NonNull File dir, @IntRange(from = 1) long maxSize) {
+        super();
+        this.dir = dir;
+        this.journal = new File(dir, JOURNAL);
+        this.maxSize = Math.max(1L, maxSize);
+    }
+
+    /**
+     * Generates the file name for a picture.
+     * @param url picture url
+     * @param width picture width
+     * @param height picture height
+     * @return file name without suffix
+     * @throws NullPointerException if {@code url} is {@code null}
+     */
+    @NonNull
+    @VisibleForTesting
+    static String makeName(@NonNull String url, int width, int height) {
+        final String key = url + '@' + width + 'x' + height;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder(digest.length << 1);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode()) + '_' + Integer.toHexString(key.length());
+        }
+    }
+
+    /**
+     * Appends a line to the {@link #journal}.<br>
+     * The file is opened anew each time so that the journal survives the deletion of the cache directory.
+     * @param op operation
+     * @param name file name
+     * @param size file size (only relevant for {@link #OP_WRITE})
+     */
+    private void appendToJournal(char op, @NonNull String name, long size) {
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) return;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(this.journal, true))) {
+            writer.write(op);
+            writer.write(' ');
+            writer.write(name);
+            if (op == OP_WRITE) {
+                writer.write(' ');
+                writer.write(Long.toString(size));
+            }
+            writer.write('\n');
+            this.journalLines++;
+        } catch (IOException e) {
+            if (BuildConfig.DEBUG) Log.e(TAG, "While writing to journal: " + e);
+        }
+    }
+
+    /**
+     * Tells whether a thumbnail of the given picture in the given size exists.
+     * @param url picture url
+     * @param width picture width
+     * @param height picture height
+     * @return {@code true} / {@code false}
+     */
+    @AnyThread
+    public synchronized boolean contains(@NonNull String url, int width, int height) {
+        open();
+        return this.entries.containsKey(makeName(url, width, height));
+    }
+
+    /**
+     * Loads a thumbnail.
+     * @param url picture url
+     * @param width picture width
+     * @param height picture height
+     * @return Bitmap or {@code null}
+     */
+    @Nullable
+    @WorkerThread
+    public Bitmap get(@NonNull String url, int width, int height) {
+        final String name = makeName(url, width, height);
+        synchronized (this) {
+            open();
+            if (this.entries.get(name) == null) return null;
+            appendToJournal(OP_READ, name, 0L);
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(new File(this.dir, name + SUFFIX).getAbsolutePath(), OPTS);
+        if (bitmap == null) {
+            if (BuildConfig.DEBUG) Log.w(TAG, "Failed to decode thumbnail of " + url);
+            remove(name);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Reads the {@link #journal} if that has not happened yet.<br>
+     * Files that are not listed in the journal are deleted, as are entries whose files do not exist.
+     */
+    private void open() {
+        if (this.opened) return;
+        this.opened = true;
+        this.entries.clear();
+        this.size = 0L;
+        this.journalLines = 0;
+        if (this.journal.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(this.journal))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    this.journalLines++;
+                    if (line.length() < 3 || line.charAt(1) != ' ') continue;
+                    char op = line.charAt(0);
+                    if (op == OP_WRITE) {
+                        int space = line.indexOf(' ', 2);
+                        if (space < 0) continue;
+                        try {
+                            this.entries.put(line.substring(2, space), Long.parseLong(line.substring(space + 1)));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    } else if (op == OP_READ) {
+                        this.entries.get(line.substring(2));
+                    } else if (op == OP_DELETE) {
+                        this.entries.remove(line.substring(2));
+                    }
+                }
+            } catch (IOException e) {
+                if (BuildConfig.DEBUG) Log.e(TAG, "While reading journal: " + e);
+            }
+        }
+        // remove the entries whose files have gone, and the files that have no entries
+        final Set<String> names = new HashSet<>(this.entries.size());
+        for (Iterator<Map.Entry<String, Long>> i = this.entries.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Long> entry = i.next();
+            if (new File(this.dir, entry.getKey() + SUFFIX).isFile()) {
+                names.add(entry.getKey() + SUFFIX);
+                this.size += entry.getValue();
+            } else {
+                i.remove();
+            }
+        }
+        for (File file : Util.listFiles(this.dir)) {
+            if (file.isFile() && !JOURNAL.equals(file.getName()) && !names.contains(file.getName())) Util.deleteFile(file);
+        }
+        if (this.journalLines > this.entries.size() << 1) {
+            rewriteJournal();
+        }
+    }
+
+    /**
+     * Stores a thumbnail asynchronously.<br>
+     * Does nothing if the thumbnail exists already or if the Bitmap does not have the given size.<br>
+     * <em>The Bitmap must not be {@link Bitmap#recycle() recycled} afterwards.</em>
+     * @param url picture url
+     * @param width width that the picture has been requested in
+     * @param height height that the picture has been requested in
+     * @param bitmap Bitmap
+     */
+    @AnyThread
+    public void put(@NonNull final String url, final int width, final int height, @NonNull final Bitmap bitmap) {
+        if (width <= 0 || height <= 0 || bitmap.getWidth() != width || bitmap.getHeight() != height) return;
+        WRITER.submit(() -> {
+            final String name = makeName(url, width, height);
+            synchronized (this) {
+                open();
+                if (this.entries.containsKey(name)) return;
+            }
+            if (!this.dir.isDirectory() && !this.dir.mkdirs()) return;
+            final File temp = new File(this.dir, name + SUFFIX_TEMP);
+            final File file = new File(this.dir, name + SUFFIX);
+            boolean ok;
+            try (OutputStream out = new FileOutputStream(temp)) {
+                ok = !bitmap.isRecycled() && bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            } catch (Exception e) {
+                if (BuildConfig.DEBUG) Log.e(TAG, "While storing thumbnail of " + url + ": " + e);
+                ok = false;
+            }
+            if (!ok || !temp.renameTo(file)) {
+                Util.deleteFile(temp);
+                return;
+            }
+            stored(name, file.length());
+        });
+    }
+
+    /**
+     * Removes an entry.
+     * @param name file name
+     */
+    private synchronized void remove(@NonNull String name) {
+        Long length = this.entries.remove(name);
+        if (length == null) return;
+        this.size -= length;
+        Util.deleteFile(new File(this.dir, name + SUFFIX));
+        appendToJournal(OP_DELETE, name, 0L);
+    }
+
+    /**
+     * Replaces the {@link #journal} with one that contains exactly one line per entry.
+     */
+    private void rewriteJournal() {
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) return;
+        final File temp = new File(this.dir, JOURNAL + SUFFIX_TEMP);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp, false))) {
+            for (Map.Entry<String, Long> entry : this.entries.entrySet()) {
+                writer.write(OP_WRITE);
+                writer.write(' ');
+                writer.write(entry.getKey());
+                writer.write(' ');
+                writer.write(Long.toString(entry.getValue()));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            if (BuildConfig.DEBUG) Log.e(TAG, "While rewriting journal: " + e);
+            Util.deleteFile(temp);
+            return;
+        }
+        if (temp.renameTo(this.journal)) {
+            this.journalLines = this.entries.size();
+        } else {
+            Util.deleteFile(temp);
+        }
+    }
+
+    /**
+     * Records a file that has been stored in the cache directory and trims the cache.
+     * @param name file name without suffix
+     * @param length file size
+     */
+    @VisibleForTesting
+    synchronized void stored(@NonNull String name, long length) {
+        open();
+        Long previous = this.entries.put(name, length);
+        if (previous != null) this.size -= previous;
+        this.size += length;
+        appendToJournal(OP_WRITE, name, length);
+        trim();
+    }
+
+    /**
+     * Removes the least recently used entries until the size is within the quota.
+     * Compacts the {@link #journal} if it has grown too long.
+     */
+    private void trim() {
+        if (this.size > this.maxSize) {
+            final List<String> eldest = new ArrayList<>();
+            long remaining = this.size;
+            for (Map.Entry<String, Long> entry : this.entries.entrySet()) {
+                if (remaining <= this.maxSize) break;
+                eldest.add(entry.getKey());
+                remaining -= entry.getValue();
+            }
+            for (String name : eldest) {
+                remove(name);
+            }
+        }
+        if (this.journalLines > MAX_JOURNAL_LINES_PER_ENTRY * Math.max(16, this.entries.size())) {
+            rewriteJournal();
+        }
+    }
+
+    /**
+     * Lets Picasso load pictures from the {@link ThumbnailCache} if they are requested in a size that has been stored before.<br>
+     * Applies only to requests that have been made with {@link com.squareup.picasso.RequestCreator#resize(int, int) resize(w, h)}
+     * and {@link com.squareup.picasso.RequestCreator#centerCrop() centerCrop()}.
+     */
+    public static final class ThumbnailRequestHandler extends RequestHandler {
+
+        @NonNull private final ThumbnailCache cache;
+
+        /**
+         * Constructor.
+         * @param cache ThumbnailCache
+         */
+        public ThumbnailRequestHandler(@NonNull ThumbnailCache cache) {
+            super();
+            this.cache = cache;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean canHandleRequest(Request data) {
+            if (data.uri == null || !data.centerCrop || data.targetWidth <= 0 || data.targetHeight <= 0) return false;
+            String scheme = data.uri.getScheme();
+            if (!"https".equals(scheme) && !"http".equals(scheme)) return false;
+            return this.cache.contains(data.uri.toString(), data.targetWidth, data.targetHeight);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Result load(Request request, int networkPolicy) throws IOException {
+            final Uri uri = request.uri;
+            Bitmap bitmap = this.cache.get(uri.toString(), request.targetWidth, request.targetHeight);
+            if (bitmap == null) throw new IOException("No thumbnail of " + uri);
+            return new Result(bitmap, Picasso.LoadedFrom.DISK);
+        }
+    }
+}
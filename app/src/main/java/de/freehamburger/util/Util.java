@@ -19,6 +19,7 @@ import android.content.pm.ShortcutManager;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
@@ -111,6 +112,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -169,6 +171,24 @@ public class Util {
         TEST = found;
     }
 
+    /**
+     * Calculates the largest power of 2 that the dimensions of a picture can be divided by while remaining at least as large as the required dimensions.
+     * @param width picture width
+     * @param height picture height
+     * @param reqWidth required width (0 if not relevant)
+     * @param reqHeight required height (0 if not relevant)
+     * @return sample size to be used as {@link BitmapFactory.Options#inSampleSize}
+     */
+    @IntRange(from = 1)
+    private static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 && reqHeight <= 0) return inSampleSize;
+        while ((reqWidth <= 0 || width / (inSampleSize << 1) >= reqWidth) && (reqHeight <= 0 || height / (inSampleSize << 1) >= reqHeight)) {
+            inSampleSize <<= 1;
+        }
+        return inSampleSize;
+    }
+
     /**
      * Returns true if the characters following {@code array[pos]} are those given in {@code chars}.
      * @param array char array
@@ -406,6 +426,31 @@ public class Util {
         return false;
     }
 
+    /**
+     * Decodes a picture file.<br>
+     * The picture is subsampled so that it is not much larger than the required dimensions.
+     * @param path file path
+     * @param reqWidth required width (0 if not relevant)
+     * @param reqHeight required height (0 if not relevant)
+     * @param template Options to copy the {@link BitmapFactory.Options#inPreferredConfig config} from (optional)
+     * @return Bitmap or {@code null}
+     * @throws NullPointerException if {@code path} is {@code null}
+     */
+    @Nullable
+    public static Bitmap decodeSampledFile(@NonNull String path, int reqWidth, int reqHeight, @Nullable BitmapFactory.Options template) {
+        final BitmapFactory.Options opts = new BitmapFactory.Options();
+        if (template != null) {
+            opts.inPreferredConfig = template.inPreferredConfig;
+            opts.inDither = template.inDither;
+        }
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, opts);
+        if (opts.outWidth <= 0 || opts.outHeight <= 0) return null;
+        opts.inJustDecodeBounds = false;
+        opts.inSampleSize = calculateInSampleSize(opts.outWidth, opts.outHeight, reqWidth, reqHeight);
+        return BitmapFactory.decodeFile(path, opts);
+    }
+
     /**
      * Displays the menu items' alphabetic shortcuts by underlining the matching character in the menu item title.<br>
      * See also <a href="https://en.wikipedia.org/wiki/Combining_Diacritical_Marks">here</a>.
@@ -445,16 +490,17 @@ public class Util {
     }
 
     /**
-     * Deletes old files in the cache directory.
+     * Deletes old files in the cache directory.<br>
+     * The {@link App#THUMBNAILS_DIR thumbnails} are deleted only if {@code maxSize} is 0.
      * @param ctx Context
      * @param maxSize maximum cache size in bytes
      * @throws NullPointerException if {@code ctx} is {@code null}
      */
     @AnyThread
     public static void deleteOldestCacheFiles(@NonNull Context ctx, @IntRange(from = 0) final long maxSize) {
-        // get all cache files and directories
+        // get all cache files and directories; the thumbnails have got a quota of their own
         File cacheDir = ctx.getCacheDir();
-        final List<File> c = listFiles(cacheDir);
+        final List<File> c = listCacheFiles(ctx, maxSize <= 0L);
         // put them into a map with key = file, value = timestamp and sum up the sizes
         final Map<File, Long> lm = new HashMap<>(c.size());
         // initialise total with the size for the cache directory itself
@@ -1299,6 +1345,27 @@ public class Util {
         return latest.getReason() == ApplicationExitInfo.REASON_USER_REQUESTED && subReason == 23;
     }
 
+    /**
+     * Lists the files and directories in the cache directory.
+     * @param ctx Context
+     * @param includeThumbnails {@code true} to include the {@link App#THUMBNAILS_DIR thumbnails directory} and its contents
+     * @return List of files and directories
+     * @throws NullPointerException if {@code ctx} is {@code null}
+     */
+    @NonNull
+    public static List<File> listCacheFiles(@NonNull Context ctx, boolean includeThumbnails) {
+        final File cacheDir = ctx.getCacheDir();
+        final List<File> list = listFiles(cacheDir);
+        if (includeThumbnails) return list;
+        final File thumbnails = new File(cacheDir, App.THUMBNAILS_DIR);
+        final String thumbnailsPath = thumbnails.getAbsolutePath() + File.separatorChar;
+        for (Iterator<File> i = list.iterator(); i.hasNext(); ) {
+            File file = i.next();
+            if (file.equals(thumbnails) || file.getAbsolutePath().startsWith(thumbnailsPath)) i.remove();
+        }
+        return list;
+    }
+
     /**
      * Lists the files in a directory.<br>
      * Includes sub-directories and their contents.
@@ -34,8 +34,6 @@ import java.security.MessageDigest;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -44,6 +42,7 @@ import java.util.concurrent.TimeUnit;
 
 import de.freehamburger.App;
 import de.freehamburger.BuildConfig;
+import de.freehamburger.util.DateUtil;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.Util;
 import okhttp3.Call;
@@ -59,7 +58,6 @@ public final class ReleaseChecker {
     @VisibleForTesting public static final String DIGEST_SHA256_GITHUB_RELEASE = "08f0b35bc523a3d06984bdb582aebb53e40236a90c33ee611c9d44f53f1970f9";
     private static final String BROWSER_URL_FDROID = "https://f-droid.org/en/packages/de.freehamburger/";
     private static final String BROWSER_URL_TAG_PREFIX_GITHUB = "https://github.com/livodeu/FreeHamburger/releases/tag/";
-    @SuppressLint("SimpleDateFormat") private static final DateFormat DF_GITHUB = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'"); // 2023-01-30T13:48:48Z
     private static final long MIN_CHECK_INTERVAL = BuildConfig.DEBUG ? 60_000L : 86_400_000L;
     private static final String PREF_LATEST_RELEASE_CHECK_FDROID = "pref_latest_release_check_fdroid";
     private static final String PREF_LATEST_RELEASE_CHECK_GITHUB = "pref_latest_release_check";
@@ -453,7 +451,7 @@ public final class ReleaseChecker {
                 }
                 if ("published_at".equals(name)) {
                     try {
-                        release.setPublishedAt(Objects.requireNonNull(DF_GITHUB.parse(reader.nextString())).getTime());
+                        release.setPublishedAt(DateUtil.parseIso8601(reader.nextString())); // 2023-01-30T13:48:48Z
                     } catch (Exception pe) {
                     }
                     continue;
@@ -24,8 +24,10 @@ import com.google.android.material.snackbar.Snackbar;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.text.ParseException;
 
 import de.freehamburger.R;
+import de.freehamburger.model.ExpressionFilter;
 import de.freehamburger.model.Filter;
 import de.freehamburger.model.TextFilter;
 import de.freehamburger.util.Util;
@@ -101,6 +103,12 @@ public class FilterView extends ConstraintLayout implements TextWatcher, Compoun
                 ensureHandler();
                 this.textSetter.text = sb;
                 this.handler.postDelayed(this.textSetter, 5_000L);
+            } else if (ExpressionFilter.isExpression(s)) {
+                try {
+                    ExpressionFilter.compile(s);
+                } catch (ParseException e) {
+                    this.editTextPhrase.setError(getContext().getString(R.string.error_filter_expression, e.getErrorOffset() + 1));
+                }
             }
         }
         // lint says: there is a ic_clear_black_24dp marked as private in com.google.android.material:material
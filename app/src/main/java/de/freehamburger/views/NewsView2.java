@@ -81,6 +81,27 @@ public class NewsView2 extends ConstraintLayout {
         super(context, attrs, defStyleAttr);
     }
 
+    /**
+     * Selects the variant of the given TeaserImage that this view would display.<br>
+     * Depending on the network connection, this might be a smaller variant than the one that would fit best - see {@link de.freehamburger.util.ImageQualityPolicy ImageQualityPolicy}.
+     * @param image TeaserImage
+     * @return MeasuredImage
+     * @throws NullPointerException if {@code image} is {@code null}
+     */
+    @Nullable
+    public TeaserImage.MeasuredImage getMeasuredImage(@NonNull TeaserImage image) {
+        int imageViewMaxWidth;
+        if (this.imageView.getMaxWidth() > 0) {
+            imageViewMaxWidth = this.imageView.getMaxWidth();   // should be the same as getResources().getDimensionPixelSize(R.dimen.image_width_normal)
+        } else {
+            imageViewMaxWidth = Util.getDisplaySize(getContext()).x;
+        }
+        // get the image url; if there is no text in the right-hand part of the view (title or firstSentence), then preferrably in landscape orientation
+        boolean landscapePreferred = this.textViewTitle == null && this.textViewFirstSentence == null;
+        final Context ctx = getContext();
+        return ((App)ctx.getApplicationContext()).getImageQualityPolicy().getImage(ctx, image, imageViewMaxWidth, landscapePreferred ? TeaserImage.FORMAT_LANDSCAPE : TeaserImage.FORMAT_PORTRAIT);
+    }
+
     /**
      * Returns the url of the image to be displayed.
      * @return image url
@@ -254,15 +275,7 @@ public class NewsView2 extends ConstraintLayout {
         }
         this.imageView.setVisibility(View.VISIBLE);
         //
-        int imageViewMaxWidth;
-        if (this.imageView.getMaxWidth() > 0) {
-            imageViewMaxWidth = this.imageView.getMaxWidth();   // should be the same as getResources().getDimensionPixelSize(R.dimen.image_width_normal)
-        } else {
-            imageViewMaxWidth = Util.getDisplaySize(ctx).x;
-        }
-        // get the image url; if there is no text in the right-hand part of the view (title or firstSentence), then preferrably in landscape orientation
-        boolean landscapePreferred = this.textViewTitle == null && this.textViewFirstSentence == null;
-        final TeaserImage.MeasuredImage measuredImage = image.getBestImageForWidth(imageViewMaxWidth, landscapePreferred ? TeaserImage.FORMAT_LANDSCAPE : TeaserImage.FORMAT_PORTRAIT);
+        final TeaserImage.MeasuredImage measuredImage = getMeasuredImage(image);
         if (measuredImage == null || measuredImage.url == null || bitmapGetter == null) {
             this.imageView.setImageBitmap(null);
             this.imageView.setElevation(0f);
@@ -284,6 +297,19 @@ public class NewsView2 extends ConstraintLayout {
         return new Size(measuredImage.width, measuredImage.height);
     }
 
+    /**
+     * Replaces the displayed image by another variant once that has been loaded.
+     * @param image image variant to display
+     * @param bitmapGetter BitmapGetter implementation
+     * @throws NullPointerException if any parameter is {@code null}
+     */
+    @UiThread
+    public void upgradeImage(@NonNull TeaserImage.MeasuredImage image, @NonNull BitmapGetter bitmapGetter) {
+        if (image.url == null || image.url.equals(getImageUrl())) return;
+        this.imageView.setTag(image.url);
+        bitmapGetter.upgradeImageInImageView(image.url, this.imageView, image.width, image.height);
+    }
+
     /** {@inheritDoc} */
     @Override
     @NonNull
@@ -305,5 +331,16 @@ public class NewsView2 extends ConstraintLayout {
          * @param imageHeight expected height of the image
          */
         void loadImageIntoImageView(@NonNull String url, @Nullable ImageView imageView, int imageWidth, int imageHeight);
+
+        /**
+         * Loads a picture into the given ImageView, keeping the current picture until the new one is available.
+         * @param url image uri
+         * @param imageView ImageView to load the bitmap into
+         * @param imageWidth expected width of the image
+         * @param imageHeight expected height of the image
+         */
+        default void upgradeImageInImageView(@NonNull String url, @NonNull ImageView imageView, int imageWidth, int imageHeight) {
+            loadImageIntoImageView(url, imageView, imageWidth, imageHeight);
+        }
     }
 }
@@ -41,7 +41,6 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -53,11 +52,13 @@ import de.freehamburger.R;
 import de.freehamburger.UpdateJobService;
 import de.freehamburger.WidgetActivity;
 import de.freehamburger.model.Blob;
+import de.freehamburger.model.BlobCache;
 import de.freehamburger.model.BlobParser;
 import de.freehamburger.model.Filter;
 import de.freehamburger.model.News;
 import de.freehamburger.model.Source;
 import de.freehamburger.model.TextFilter;
+import de.freehamburger.model.TextFilterMatcher;
 import de.freehamburger.util.Log;
 import de.freehamburger.util.Util;
 
@@ -385,16 +386,19 @@ public class WidgetProvider extends AppWidgetProvider {
         final int[] widgetIds = aw.getAppWidgetIds(new ComponentName(app, WidgetProvider.class));
         if (widgetIds == null || widgetIds.length == 0) return;
         boolean filtersEnabled = PreferenceManager.getDefaultSharedPreferences(ctx).getBoolean(App.PREF_FILTERS_APPLY, App.PREF_FILTERS_APPLY_DEFAULT);
-        final List<Filter> filters = filtersEnabled ? TextFilter.createTextFiltersFromPreferences(ctx) : null;
-        final Map<Source, Blob> blobsCache = new HashMap<>();
+        final List<Filter> filters = filtersEnabled ? TextFilterMatcher.compile(TextFilter.createTextFiltersFromPreferences(ctx)) : null;
+        final BlobCache blobCache = app.getBlobCache();
         final AtomicBoolean needsNetworkRefresh = new AtomicBoolean(false);
         final Handler handler = new Handler(Looper.getMainLooper());
         final long now = System.currentTimeMillis();
         for (int widgetId : widgetIds) {
             Source source = widgetSources.indexOfKey(widgetId) >= 0 ? widgetSources.get(widgetId) : DEFAULT_SOURCE;
-            Blob blob = blobsCache.get(source);
+            File file = app.getLocalFile(source);
+            Blob blob = file.isFile() ? blobCache.get(app, source, file) : null;
             if (blob != null) {
-                // the source has been parsed before (for a different widget)
+                // initiate a network refresh if the data is a bit old
+                if (now - app.getMostRecentUpdate(source) > ACCEPTABLE_AGE) needsNetworkRefresh.set(true);
+                // the source has been parsed before (for a different widget or by another component of the app)
                 final List<News> sortedJointList = blob.getAllNews();
                 News latest = null;
                 for (News news : sortedJointList) {
@@ -413,7 +417,6 @@ public class WidgetProvider extends AppWidgetProvider {
                 //
                 fillWidget(app, aw, widgetId, latest, null);
             } else {
-                File file = app.getLocalFile(source);
                 if (!file.isFile()) {
                     needsNetworkRefresh.set(true);
                     if (BuildConfig.DEBUG) Log.i(TAG, "Local file for " + source + " for widget " + widgetId + " does not exist - clearing that widget");
@@ -434,7 +437,6 @@ public class WidgetProvider extends AppWidgetProvider {
                         if (oops instanceof java.io.EOFException) needsNetworkRefresh.set(true);
                         return;
                     }
-                    blobsCache.put(source, parsedBlob);
                     final List<News> sortedJointList = parsedBlob.getAllNews();
                     News latest = null;
                     for (News news : sortedJointList) {
@@ -0,0 +1,212 @@
+package de.freehamburger.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests writing and reading {@link BlobSnapshot BlobSnapshots}.
+ */
+public class BlobSnapshotTest {
+
+    private static final String CONFIG = "HAMBURG|true|false";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @param externalId external id
+     * @param regional {@code true} / {@code false}
+     * @return News with most fields set
+     */
+    private static News createNews(String externalId, boolean regional) {
+        final News news = new News(regional);
+        news.externalId = externalId;
+        news.title = "Title of " + externalId;
+        news.topline = "Topline\nwith a line break";
+        news.firstSentence = "Ümläute, € and 🔗 survive.";
+        news.type = News.NEWS_TYPE_STORY;
+        news.breakingNews = true;
+        news.date = new Date(1_510_829_643_882L);
+        news.ts = news.date.getTime();
+        news.details = "https://www.example.com/" + externalId + ".json";
+        news.shareUrl = null;
+        news.streams.put(StreamQuality.H264S, "https://www.example.com/s.mp4");
+        news.getTags().add("tag");
+        news.getGeotags().add("Hamburg");
+        news.getRegions().add(Region.HAMBURG);
+        final TeaserImage teaserImage = new TeaserImage();
+        teaserImage.images.put(TeaserImage.Quality.M, "https://www.example.com/m.jpg");
+        teaserImage.title = "Image";
+        news.teaserImage = teaserImage;
+        return news;
+    }
+
+    /**
+     * @param news News
+     * @return the data that {@link News#writeTo(java.io.DataOutput)} writes
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] toBytes(News news) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        news.writeTo(out);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Creates a json file and writes a snapshot for it.
+     * @param newsList News
+     * @param regionalNewsList regional News
+     * @return json file
+     * @throws IOException if an I/O error occurs
+     */
+    private File writeSnapshot(List<News> newsList, List<News> regionalNewsList) throws IOException {
+        final File jsonFile = this.folder.newFile("homepage.source");
+        try (FileOutputStream out = new FileOutputStream(jsonFile)) {
+            out.write("{\"news\":[]}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertTrue(jsonFile.setLastModified(System.currentTimeMillis() - 60_000L));
+        final Blob blob = Blob.restore(Source.HOME, newsList, regionalNewsList, "https://www.example.com/count");
+        assertTrue(BlobSnapshot.write(CONFIG, blob, jsonFile));
+        assertTrue(BlobSnapshot.getSnapshotFile(jsonFile).isFile());
+        return jsonFile;
+    }
+
+    /** A News is read back exactly as it has been written */
+    @Test
+    public void testNewsRoundTrip() throws IOException {
+        final News news = createNews("n1", true);
+        news.setRecommendations(Collections.singletonList(createNews("r1", false)));
+        final byte[] written = toBytes(news);
+        final News read = News.readFrom(new DataInputStream(new ByteArrayInputStream(written)));
+        assertEquals(news.getExternalId(), read.getExternalId());
+        assertEquals(news.getTitle(), read.getTitle());
+        assertEquals(news.getTopline(), read.getTopline());
+        assertEquals(news.getFirstSentence(), read.getFirstSentence());
+        assertEquals(news.getDate(), read.getDate());
+        assertEquals(news.getTags(), read.getTags());
+        assertEquals(news.getRegions(), read.getRegions());
+        assertNull(read.getShareUrl());
+        assertNotNull(read.getTeaserImage());
+        assertEquals("https://www.example.com/m.jpg", read.getTeaserImage().getBestImage());
+        assertNotNull(read.getRecommendations());
+        assertEquals("r1", read.getRecommendations().get(0).getExternalId());
+        // ids are not persisted
+        assertFalse(news.getId() == read.getId());
+        assertArrayEquals(written, toBytes(read));
+    }
+
+    /** A Content is read back exactly as it has been written */
+    @Test
+    public void testContentRoundTrip() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        // one element
+        out.writeInt(1);
+        out.writeInt(Content.ContentElement.MIN_ORDER);
+        BlobSnapshot.writeString(out, null);
+        BlobSnapshot.writeString(out, Content.ContentElement.TYPE_TEXT);
+        BlobSnapshot.writeString(out, "<b>Hello</b> world");
+        BlobSnapshot.writeString(out, null);
+        BlobSnapshot.writeString(out, null);
+        // no video, gallery, box, list, related or htmlEmbed
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        out.writeInt(-1);
+        out.writeBoolean(false);
+        // not materialized
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        BlobSnapshot.writeStringArray(out, new String[] {"world"});
+        BlobSnapshot.writeStringArray(out, new String[] {"Welt"});
+        out.close();
+        final byte[] written = baos.toByteArray();
+        final Content content = Content.readFrom(new DataInputStream(new ByteArrayInputStream(written)));
+        assertEquals(1, content.getElementList().size());
+        assertEquals("<b>Hello</b> world", content.getElementList().get(0).getValue());
+        final ByteArrayOutputStream baos2 = new ByteArrayOutputStream();
+        final DataOutputStream out2 = new DataOutputStream(baos2);
+        content.writeTo(out2);
+        out2.close();
+        assertArrayEquals(written, baos2.toByteArray());
+    }
+
+    /** A snapshot is loaded only with the parse configuration that it has been written with */
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        final List<News> newsList = new ArrayList<>();
+        for (int i = 0; i < 20; i++) newsList.add(createNews("n" + i, false));
+        final File jsonFile = writeSnapshot(newsList, Collections.singletonList(createNews("r", true)));
+        final Blob blob = BlobSnapshot.load(CONFIG, Source.HOME, jsonFile);
+        assertNotNull(blob);
+        assertEquals(Source.HOME, blob.getSource());
+        assertEquals("https://www.example.com/count", blob.getNewStoriesCountLink());
+        assertEquals(20, blob.getNewsList().size());
+        assertEquals(1, blob.getRegionalNewsList().size());
+        for (int i = 0; i < 20; i++) assertEquals("n" + i, blob.getNewsList().get(i).getExternalId());
+        assertEquals("r", blob.getRegionalNewsList().get(0).getExternalId());
+        // a different parse configuration requires the json file to be parsed again
+        assertNull(BlobSnapshot.load(CONFIG + "x", Source.HOME, jsonFile));
+    }
+
+    /** A snapshot whose payload has been modified is refused and deleted */
+    @Test
+    public void testCorruptChecksum() throws IOException {
+        final File jsonFile = writeSnapshot(Collections.singletonList(createNews("n", false)), Collections.emptyList());
+        final File snapshotFile = BlobSnapshot.getSnapshotFile(jsonFile);
+        try (RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw")) {
+            // the last byte of the payload precedes the 8-byte checksum
+            final long pos = raf.length() - 9L;
+            raf.seek(pos);
+            final int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0xff);
+        }
+        assertNull(BlobSnapshot.load(CONFIG, Source.HOME, jsonFile));
+        assertFalse(snapshotFile.exists());
+    }
+
+    /** A truncated snapshot is refused */
+    @Test
+    public void testTruncated() throws IOException {
+        final File jsonFile = writeSnapshot(Collections.singletonList(createNews("n", false)), Collections.emptyList());
+        final File snapshotFile = BlobSnapshot.getSnapshotFile(jsonFile);
+        try (RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        assertNull(BlobSnapshot.load(CONFIG, Source.HOME, jsonFile));
+    }
+
+    /** A snapshot that is older than its json file is ignored */
+    @Test
+    public void testOutdated() throws IOException {
+        final File jsonFile = writeSnapshot(Collections.singletonList(createNews("n", false)), Collections.emptyList());
+        assertTrue(jsonFile.setLastModified(BlobSnapshot.getSnapshotFile(jsonFile).lastModified() + 60_000L));
+        assertNull(BlobSnapshot.load(CONFIG, Source.HOME, jsonFile));
+    }
+}
@@ -0,0 +1,141 @@
+package de.freehamburger.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+
+/**
+ * Tests the parsing and the evaluation of {@link ExpressionFilter ExpressionFilters}.
+ */
+public class ExpressionFilterTest {
+
+    /**
+     * @param title title
+     * @return News of type story with the given title
+     */
+    private static News news(String title) {
+        News news = new News(false);
+        news.title = title;
+        news.type = News.NEWS_TYPE_STORY;
+        return news;
+    }
+
+    /**
+     * @param expression expression
+     * @param title title of a News
+     * @return {@code true} if the expression matches (and therefore refuses) a News with the given title
+     * @throws ParseException if the expression is not valid
+     */
+    private static boolean matches(String expression, String title) throws ParseException {
+        return !ExpressionFilter.compile(expression).accept(news(title));
+    }
+
+    /**
+     * Asserts that the given expression cannot be compiled.
+     * @param expression expression
+     * @param expectedOffset the expected error offset
+     */
+    private static void assertInvalid(String expression, int expectedOffset) {
+        try {
+            ExpressionFilter.compile(expression);
+            fail("Not refused: \"" + expression + "\"");
+        } catch (ParseException e) {
+            assertEquals("Error offset for \"" + expression + "\"", expectedOffset, e.getErrorOffset());
+        }
+    }
+
+    /** NOT binds tighter than AND, which binds tighter than OR */
+    @Test
+    public void testPrecedence() throws ParseException {
+        // a OR (b AND c)
+        assertTrue(matches("=a OR b c", "a"));
+        assertFalse(matches("=a OR b c", "b"));
+        assertTrue(matches("=a OR b c", "b c"));
+        // (NOT a) AND b
+        assertTrue(matches("=NOT a b", "b"));
+        assertFalse(matches("=NOT a b", "a b"));
+        assertFalse(matches("=NOT a b", "x"));
+        // (a AND b) OR c
+        assertTrue(matches("=a & b | c", "c"));
+        assertTrue(matches("=a & b | c", "a b"));
+        assertFalse(matches("=a & b | c", "a"));
+        // parentheses
+        assertFalse(matches("=(a OR b) c", "a"));
+        assertTrue(matches("=(a OR b) c", "b c"));
+        assertTrue(matches("=!(a | b)", "x"));
+        assertFalse(matches("=!(a | b)", "b"));
+    }
+
+    /** Adjacent terms are joined by AND */
+    @Test
+    public void testImplicitAnd() throws ParseException {
+        final String[] titles = new String[] {"foo", "bar", "foo bar", "bar foo", "foobar", "x"};
+        for (String title : titles) {
+            final boolean expected = matches("=foo AND bar", title);
+            assertEquals(title, expected, matches("=foo bar", title));
+            assertEquals(title, expected, matches("=foo & bar", title));
+            assertEquals(title, expected, matches("=foo&bar", title));
+        }
+        assertTrue(matches("=foo bar", "bar and foo"));
+        assertFalse(matches("=foo bar", "foo"));
+    }
+
+    /** Operators are recognized regardless of case; quoted, they are terms */
+    @Test
+    public void testKeywordCase() throws ParseException {
+        assertTrue(matches("=a or b", "b"));
+        assertTrue(matches("=a Or b", "b"));
+        assertFalse(matches("=a and b", "b"));
+        assertTrue(matches("=not a", "b"));
+        assertTrue(matches("=a \"or\" b", "a or b"));
+        assertFalse(matches("=a \"or\" b", "a b"));
+        // keywords must be separate words
+        assertTrue(matches("=order", "order"));
+        assertFalse(matches("=order", "der"));
+    }
+
+    /** Terms can be restricted to fields */
+    @Test
+    public void testFields() throws ParseException {
+        final News news = news("Foo");
+        news.firstSentence = "Bar";
+        assertFalse(ExpressionFilter.compile("=title:foo").accept(news));
+        assertTrue(ExpressionFilter.compile("=title:bar").accept(news));
+        assertFalse(ExpressionFilter.compile("=bar").accept(news));
+        assertFalse(ExpressionFilter.compile("=title:\"fo\"").accept(news));
+        assertFalse(ExpressionFilter.compile("=title:/^f.o$/").accept(news));
+        // an unknown field name is part of the word
+        assertTrue(ExpressionFilter.compile("=foo:bar").accept(news));
+    }
+
+    /** Videos are never refused */
+    @Test
+    public void testVideo() throws ParseException {
+        final News news = news("Foo");
+        news.type = News.NEWS_TYPE_VIDEO;
+        assertTrue(ExpressionFilter.compile("=foo").accept(news));
+        assertTrue(ExpressionFilter.compile("=NOT bar").accept(news));
+    }
+
+    /** Invalid expressions are refused with the position of the error */
+    @Test
+    public void testErrorOffsets() {
+        assertInvalid("=", 0);
+        assertInvalid("a", 0);
+        assertInvalid("=a AND", 6);
+        assertInvalid("=a OR", 5);
+        assertInvalid("=NOT", 4);
+        assertInvalid("=(a OR b", 8);
+        assertInvalid("=a )", 3);
+        assertInvalid("=\"abc", 1);
+        assertInvalid("=title:\"\"", 7);
+        assertInvalid("=/abc", 1);
+        assertInvalid("=//", 1);
+        assertInvalid("=/a(/", 4);
+    }
+}
@@ -0,0 +1,117 @@
+package de.freehamburger.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks that a {@link TextFilterMatcher} gives the same results as the {@link TextFilter TextFilters} that it has been compiled from.
+ */
+public class TextFilterMatcherTest {
+
+    private static final String[] TEXTS = new String[] {
+            "Trumpet player", "Strumpet", "Trumpeting the news", "A pet", "Carpet cleaning",
+            "Die U-Bahn in Hamburg", "C++ ist eine Programmiersprache", "Sonnenuntergang über der Elbe", "Keine Nachricht", "_under_score"
+    };
+    private static final String[] PHRASES = new String[] {
+            "trump", "pet", "pet cl", "u-bahn", "-bahn", "c++", "unter", "über", "nachricht", "under", "e", "score"
+    };
+
+    /**
+     * @param topline top line
+     * @param title title
+     * @param type News type
+     * @return News
+     */
+    private static News news(String topline, String title, @News.NewsType String type) {
+        News news = new News(false);
+        news.topline = topline;
+        news.title = title;
+        news.type = type;
+        return news;
+    }
+
+    /**
+     * @param filter TextFilter
+     * @return TextFilterMatcher compiled from the given TextFilter only
+     */
+    private static Filter compileOne(TextFilter filter) {
+        List<Filter> compiled = TextFilterMatcher.compile(Collections.singletonList(filter));
+        assertEquals(1, compiled.size());
+        assertTrue(compiled.get(0) instanceof TextFilterMatcher);
+        return compiled.get(0);
+    }
+
+    /** Tests anchored and unanchored phrases, including phrases with non-word chars, one at a time */
+    @Test
+    public void testSinglePhrases() {
+        for (String phrase : PHRASES) {
+            for (int anchor = 0; anchor < 3; anchor++) {
+                final TextFilter filter = new TextFilter(phrase, anchor == 1, anchor == 2, false, false);
+                final Filter matcher = compileOne(filter);
+                for (String text : TEXTS) {
+                    News news = news(null, text, News.NEWS_TYPE_STORY);
+                    assertEquals(filter + " vs. \"" + text + "\"", filter.accept(news), matcher.accept(news));
+                    // the same text in a different part of the search text
+                    news = news(text, "Zzz", News.NEWS_TYPE_STORY);
+                    assertEquals(filter + " vs. \"" + text + "\" (top line)", filter.accept(news), matcher.accept(news));
+                }
+            }
+        }
+    }
+
+    /** Tests all phrases compiled into one TextFilterMatcher */
+    @Test
+    public void testAllPhrases() {
+        final List<Filter> filters = new ArrayList<>();
+        for (int i = 0; i < PHRASES.length; i++) {
+            // "e" would refuse nearly everything
+            if ("e".equals(PHRASES[i])) continue;
+            filters.add(new TextFilter(PHRASES[i], i % 3 == 1, i % 3 == 2, false, false));
+        }
+        final List<Filter> compiled = TextFilterMatcher.compile(filters);
+        assertEquals(1, compiled.size());
+        final Filter matcher = compiled.get(0);
+        for (String text : TEXTS) {
+            News news = news(null, text, News.NEWS_TYPE_STORY);
+            assertEquals(text, !Filter.refusedByAny(filters, news), matcher.accept(news));
+        }
+    }
+
+    /** Tests the examples given in {@link TextFilter} */
+    @Test
+    public void testAnchors() {
+        final Filter atStart = compileOne(new TextFilter("trump", true, false, false, false));
+        assertFalse(atStart.accept(news(null, "Trumpet", News.NEWS_TYPE_STORY)));
+        assertTrue(atStart.accept(news(null, "Strumpet", News.NEWS_TYPE_STORY)));
+        final Filter atEnd = compileOne(new TextFilter("pet", false, true, false, false));
+        assertFalse(atEnd.accept(news(null, "Trumpet", News.NEWS_TYPE_STORY)));
+        assertTrue(atEnd.accept(news(null, "Trumpeting", News.NEWS_TYPE_STORY)));
+        // a phrase with a non-word char never matches at a word start or end
+        final Filter nonWord = compileOne(new TextFilter("u-bahn", true, false, false, false));
+        assertTrue(nonWord.accept(news(null, "U-Bahn", News.NEWS_TYPE_STORY)));
+    }
+
+    /** Tests the empty phrase which refuses everything but videos */
+    @Test
+    public void testEmptyPhrase() {
+        for (int anchor = 0; anchor < 3; anchor++) {
+            final TextFilter filter = new TextFilter("", anchor == 1, anchor == 2, false, false);
+            final Filter matcher = compileOne(filter);
+            for (String text : TEXTS) {
+                News news = news(null, text, News.NEWS_TYPE_STORY);
+                assertFalse(filter.accept(news));
+                assertFalse(matcher.accept(news));
+                news = news(null, text, News.NEWS_TYPE_VIDEO);
+                assertTrue(filter.accept(news));
+                assertTrue(matcher.accept(news));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.freehamburger.supp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the encoding and decoding of the words that are stored along with the News in the {@link SearchContentProvider}.
+ */
+public class SearchContentProviderTest {
+
+    /**
+     * @param encoded encoded words
+     * @return decoded words
+     */
+    private static Map<String, Integer> decode(String encoded) {
+        final Map<String, Integer> words = new HashMap<>();
+        SearchContentProvider.decodeWords(encoded, words);
+        return words;
+    }
+
+    /** Words are decoded exactly as they have been encoded */
+    @Test
+    public void testRoundTrip() {
+        final Map<String, Integer> words = new HashMap<>();
+        words.put("Hamburg", 1);
+        words.put("Elbphilharmonie", 12);
+        words.put("Müll", 3);
+        words.put("C++", 2);
+        words.put("a:b=c,d|e;f", 4);
+        words.put("x", Integer.MAX_VALUE);
+        assertEquals(words, decode(SearchContentProvider.encodeWords(words)));
+    }
+
+    /** No words are encoded into an empty String */
+    @Test
+    public void testEmpty() {
+        final String encoded = SearchContentProvider.encodeWords(new HashMap<>());
+        assertEquals("", encoded);
+        assertTrue(decode(encoded).isEmpty());
+        assertTrue(decode(null).isEmpty());
+    }
+
+    /** Decoded words are added to those that exist already */
+    @Test
+    public void testAddToExisting() {
+        final Map<String, Integer> words = new HashMap<>();
+        words.put("alt", 1);
+        SearchContentProvider.decodeWords(SearchContentProvider.encodeWords(Collections.singletonMap("neu", 2)), words);
+        assertEquals(2, words.size());
+        assertEquals(Integer.valueOf(1), words.get("alt"));
+        assertEquals(Integer.valueOf(2), words.get("neu"));
+    }
+
+    /** Entries with invalid counts or without counts are skipped, the others are kept */
+    @Test
+    public void testInvalid() {
+        final Map<String, Integer> words = decode("eins\u001f1\u001ezwei\u001fx\u001edrei\u001e\u001e\u001f4\u001evier\u001f\u001efünf\u001f5");
+        assertEquals(2, words.size());
+        assertEquals(Integer.valueOf(1), words.get("eins"));
+        assertEquals(Integer.valueOf(5), words.get("fünf"));
+    }
+}
@@ -0,0 +1,86 @@
+package de.freehamburger.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Compares {@link DateUtil} with {@link SimpleDateFormat}.
+ */
+public class DateUtilTest {
+
+    /** 1970-01-01 to 2100-01-01 */
+    private static final long MAX_TS = 4_102_444_800_000L;
+    private static final String[] TIME_ZONES = new String[] {"UTC", "Europe/Berlin", "America/St_Johns", "Asia/Kolkata", "Pacific/Kiritimati"};
+
+    /** Dates in the various time zone formats are parsed like SimpleDateFormat does */
+    @Test
+    public void testParseIso8601() throws ParseException {
+        final Random random = new Random(8601L);
+        final String[] patterns = new String[] {"yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy-MM-dd'T'HH:mm:ss.SSSXX", "yyyy-MM-dd'T'HH:mm:ssXXX"};
+        for (String pattern : patterns) {
+            for (String tz : TIME_ZONES) {
+                final DateFormat df = new SimpleDateFormat(pattern, Locale.US);
+                df.setTimeZone(TimeZone.getTimeZone(tz));
+                for (int i = 0; i < 1000; i++) {
+                    final String s = df.format(new Date((long)(random.nextDouble() * MAX_TS)));
+                    assertEquals(s, df.parse(s).getTime(), DateUtil.parseIso8601(s));
+                }
+            }
+        }
+    }
+
+    /** Examples with fractions of varying lengths and with hour-only offsets */
+    @Test
+    public void testParseIso8601Examples() throws ParseException {
+        assertEquals(1510829643882L, DateUtil.parseIso8601("2017-11-16T11:54:03.882+01:00"));
+        assertEquals(1510829643882L, DateUtil.parseIso8601("2017-11-16T10:54:03.882Z"));
+        assertEquals(1510829643882L, DateUtil.parseIso8601("2017-11-16T10:54:03.882123z"));
+        assertEquals(1510829643800L, DateUtil.parseIso8601("2017-11-16T11:54:03.8+01"));
+        assertEquals(1510829643000L, DateUtil.parseIso8601("2017-11-16T06:24:03,0-0430"));
+        assertEquals(0L, DateUtil.parseIso8601("1970-01-01T00:00:00Z"));
+        assertEquals(951782400000L, DateUtil.parseIso8601("2000-02-29T00:00:00Z"));
+    }
+
+    /** Invalid dates are refused */
+    @Test
+    public void testParseIso8601Invalid() {
+        final String[] invalid = new String[] {
+                null, "", "2017-11-16", "2017-11-16T11:54:03", "2017-11-16 11:54:03Z", "2017-11-16T11:54:03.Z",
+                "2017-13-16T11:54:03Z", "2017-11-32T11:54:03Z", "2017-11-16T24:54:03Z", "2017-11-16T11:54:03+1",
+                "2017-11-16T11:54:03+01:0", "2017-11-16T11:54:03Zulu", "2017-1x-16T11:54:03Z"
+        };
+        for (String s : invalid) {
+            try {
+                DateUtil.parseIso8601(s);
+                fail("Not refused: \"" + s + "\"");
+            } catch (ParseException expected) {
+                // fine
+            }
+        }
+    }
+
+    /** HTTP dates are formatted like SimpleDateFormat does */
+    @Test
+    public void testFormatHttpDate() {
+        final DateFormat df = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        df.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final Random random = new Random(9110L);
+        for (int i = 0; i < 10_000; i++) {
+            final long ts = (long)(random.nextDouble() * MAX_TS);
+            assertEquals(df.format(new Date(ts)), DateUtil.formatHttpDate(ts));
+        }
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", DateUtil.formatHttpDate(0L));
+        assertEquals("Sat, 29 Oct 1994 19:43:31 GMT", DateUtil.formatHttpDate(783_459_811_000L));
+        assertEquals("Tue, 29 Feb 2000 23:59:59 GMT", DateUtil.formatHttpDate(951_868_799_999L));
+    }
+}
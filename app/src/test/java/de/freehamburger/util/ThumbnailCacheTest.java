@@ -0,0 +1,149 @@
+package de.freehamburger.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Tests the journal and the trimming of the {@link ThumbnailCache}.
+ */
+public class ThumbnailCacheTest {
+
+    private static final int SIZE = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @param i number
+     * @return url of a picture
+     */
+    private static String url(int i) {
+        return "https://www.example.com/picture" + i + ".jpg";
+    }
+
+    /**
+     * @param i number
+     * @return file name of the thumbnail of {@link #url(int) url(i)}
+     */
+    private static String name(int i) {
+        return ThumbnailCache.makeName(url(i), SIZE, SIZE);
+    }
+
+    /**
+     * Creates a thumbnail file.
+     * @param dir cache directory
+     * @param i number
+     * @param length file size
+     * @return File
+     * @throws IOException if an I/O error occurs
+     */
+    private static File createFile(File dir, int i, int length) throws IOException {
+        final File file = new File(dir, name(i) + ".jpg");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[length]);
+        }
+        return file;
+    }
+
+    /**
+     * @param dir cache directory
+     * @return lines of the journal
+     * @throws IOException if an I/O error occurs
+     */
+    private static List<String> readJournal(File dir) throws IOException {
+        return Files.readAllLines(new File(dir, "journal").toPath(), StandardCharsets.UTF_8);
+    }
+
+    /** The journal is replayed, then files without entries and entries without files are removed */
+    @Test
+    public void testJournalReplay() throws IOException {
+        final File dir = this.folder.newFolder("thumbnails");
+        final File file1 = createFile(dir, 1, 10);
+        final File file2 = createFile(dir, 2, 10);
+        // no file for #3
+        final File file4 = createFile(dir, 4, 10);
+        final File stray = new File(dir, "stray.jpg");
+        assertTrue(stray.createNewFile());
+        try (FileWriter writer = new FileWriter(new File(dir, "journal"))) {
+            writer.write("W " + name(1) + " 10\n");
+            writer.write("W " + name(2) + " 10\n");
+            writer.write("W " + name(3) + " 10\n");
+            writer.write("W " + name(4) + " 10\n");
+            writer.write("R " + name(1) + "\n");
+            writer.write("D " + name(2) + "\n");
+            writer.write("garbage\n");
+            writer.write("W " + name(5) + " notanumber\n");
+        }
+        final ThumbnailCache cache = new ThumbnailCache(dir, 1_000L);
+        assertTrue(cache.contains(url(1), SIZE, SIZE));
+        assertFalse(cache.contains(url(2), SIZE, SIZE));
+        assertFalse(cache.contains(url(3), SIZE, SIZE));
+        assertTrue(cache.contains(url(4), SIZE, SIZE));
+        assertFalse(cache.contains(url(5), SIZE, SIZE));
+        assertFalse(cache.contains(url(1), SIZE + 1, SIZE));
+        assertTrue(file1.isFile());
+        assertFalse(file2.exists());
+        assertTrue(file4.isFile());
+        assertFalse(stray.exists());
+        // the journal has been compacted, least recently used first
+        final List<String> journal = readJournal(dir);
+        assertEquals(2, journal.size());
+        assertEquals("W " + name(4) + " 10", journal.get(0));
+        assertEquals("W " + name(1) + " 10", journal.get(1));
+    }
+
+    /** The least recently used entries are removed once the quota has been exceeded */
+    @Test
+    public void testTrim() throws IOException {
+        final File dir = this.folder.newFolder("thumbnails");
+        final ThumbnailCache cache = new ThumbnailCache(dir, 100L);
+        for (int i = 1; i <= 5; i++) {
+            createFile(dir, i, 30);
+            cache.stored(name(i), 30L);
+        }
+        assertFalse(cache.contains(url(1), SIZE, SIZE));
+        assertFalse(cache.contains(url(2), SIZE, SIZE));
+        for (int i = 3; i <= 5; i++) assertTrue(cache.contains(url(i), SIZE, SIZE));
+        assertFalse(new File(dir, name(1) + ".jpg").exists());
+        assertFalse(new File(dir, name(2) + ".jpg").exists());
+        // another instance replays the deletions
+        final ThumbnailCache reopened = new ThumbnailCache(dir, 100L);
+        assertFalse(reopened.contains(url(1), SIZE, SIZE));
+        assertFalse(reopened.contains(url(2), SIZE, SIZE));
+        for (int i = 3; i <= 5; i++) assertTrue(reopened.contains(url(i), SIZE, SIZE));
+    }
+
+    /** A read recorded in the journal protects an entry from being trimmed */
+    @Test
+    public void testTrimAfterRead() throws IOException {
+        final File dir = this.folder.newFolder("thumbnails");
+        createFile(dir, 1, 40);
+        createFile(dir, 2, 40);
+        try (FileWriter writer = new FileWriter(new File(dir, "journal"))) {
+            writer.write("W " + name(1) + " 40\n");
+            writer.write("W " + name(2) + " 40\n");
+            writer.write("R " + name(1) + "\n");
+        }
+        final ThumbnailCache cache = new ThumbnailCache(dir, 100L);
+        createFile(dir, 3, 40);
+        cache.stored(name(3), 40L);
+        assertTrue(cache.contains(url(1), SIZE, SIZE));
+        assertFalse(cache.contains(url(2), SIZE, SIZE));
+        assertTrue(cache.contains(url(3), SIZE, SIZE));
+        final List<String> journal = readJournal(dir);
+        assertEquals("D " + name(2), journal.get(journal.size() - 1));
+    }
+}